@@ -0,0 +1,2 @@
+#!/bin/bash
+java -Xmx5000m -cp target/assignment4-jabeja-1.0-jar-with-dependencies.jar se.kth.jabeja.io.GraphConverter $@
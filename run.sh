@@ -1,2 +1,2 @@
 #!/bin/bash
-java -Xmx5000m -jar target/assignment4-jabeja-1.0-jar-with-dependencies.jar $@
+java -Xmx5000m --add-modules jdk.incubator.vector -jar target/assignment4-jabeja-1.0-jar-with-dependencies.jar $@
@@ -0,0 +1,168 @@
+package se.kth.jabeja;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * State of a run after a round, from which {@link Jabeja} continues exactly as if it had not been
+ * stopped. The arrays of the vertices are allocated once and refilled by every checkpoint.
+ *
+ * Layout (big endian):
+ * <pre>
+ *   header   magic "JBJCHKPT", int version, int numVertices, long numTargets, int numColors
+ *   state    int round, double T, int swaps, int frozenRounds, long random state, long vertex seed
+ *   workers  int count, long[count] random states of the concurrent workers
+ *   vertices int[numVertices] colors, int[numVertices] initial colors, int[numVertices] visit order
+ *   active   int count, -1 without active set, int[count] vertices queued for the next round
+ *   result   double[round + 1] edge cuts, migrations and swaps
+ * </pre>
+ */
+class Checkpoint {
+
+  private static final byte[] MAGIC = {'J', 'B', 'J', 'C', 'H', 'K', 'P', 'T'};
+  private static final int VERSION = 1;
+
+  final int numVertices;
+  long numTargets;
+  int numColors;
+  /**
+   * last round that was run
+   */
+  int round;
+  double temperature;
+  int numberOfSwaps;
+  int frozenRounds;
+  long randomState;
+  long vertexSeed;
+  long[] workerStates;
+  final int[] colors;
+  final int[] initColors;
+  final int[] visitOrder;
+  /**
+   * vertices queued for the next round in active[0, numActive), numActive -1 without active set
+   */
+  final int[] active;
+  int numActive;
+  double[] edgeCut;
+  double[] migrations;
+  double[] swaps;
+
+  Checkpoint(int numVertices) {
+    this.numVertices = numVertices;
+    this.colors = new int[numVertices];
+    this.initColors = new int[numVertices];
+    this.visitOrder = new int[numVertices];
+    this.active = new int[numVertices];
+  }
+
+  /**
+   * Writes next to the path first and then moves the file over it, so a run killed while writing
+   * leaves the previous checkpoint.
+   */
+  void write(String path) throws IOException {
+    Path target = Paths.get(path);
+    Path temp = Paths.get(path + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numVertices);
+      out.writeLong(numTargets);
+      out.writeInt(numColors);
+
+      out.writeInt(round);
+      out.writeDouble(temperature);
+      out.writeInt(numberOfSwaps);
+      out.writeInt(frozenRounds);
+      out.writeLong(randomState);
+      out.writeLong(vertexSeed);
+      out.writeInt(workerStates.length);
+      for (long state : workerStates) {
+        out.writeLong(state);
+      }
+
+      writeInts(out, colors, numVertices);
+      writeInts(out, initColors, numVertices);
+      writeInts(out, visitOrder, numVertices);
+      out.writeInt(numActive);
+      writeInts(out, active, numActive);
+
+      writeDoubles(out, edgeCut, round + 1);
+      writeDoubles(out, migrations, round + 1);
+      writeDoubles(out, swaps, round + 1);
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  static Checkpoint read(String path) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(path)), 1 << 16))) {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException(path + " is not a checkpoint file");
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException(path + " has checkpoint version " + version + ", expected " + VERSION);
+      }
+      Checkpoint checkpoint = new Checkpoint(in.readInt());
+      checkpoint.numTargets = in.readLong();
+      checkpoint.numColors = in.readInt();
+
+      checkpoint.round = in.readInt();
+      checkpoint.temperature = in.readDouble();
+      checkpoint.numberOfSwaps = in.readInt();
+      checkpoint.frozenRounds = in.readInt();
+      checkpoint.randomState = in.readLong();
+      checkpoint.vertexSeed = in.readLong();
+      checkpoint.workerStates = new long[in.readInt()];
+      for (int w = 0; w < checkpoint.workerStates.length; w++) {
+        checkpoint.workerStates[w] = in.readLong();
+      }
+
+      readInts(in, checkpoint.colors, checkpoint.numVertices);
+      readInts(in, checkpoint.initColors, checkpoint.numVertices);
+      readInts(in, checkpoint.visitOrder, checkpoint.numVertices);
+      checkpoint.numActive = in.readInt();
+      readInts(in, checkpoint.active, checkpoint.numActive);
+
+      checkpoint.edgeCut = readDoubles(in, checkpoint.round + 1);
+      checkpoint.migrations = readDoubles(in, checkpoint.round + 1);
+      checkpoint.swaps = readDoubles(in, checkpoint.round + 1);
+      return checkpoint;
+    }
+  }
+
+  private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      out.writeInt(values[i]);
+    }
+  }
+
+  private static void readInts(DataInputStream in, int[] values, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      values[i] = in.readInt();
+    }
+  }
+
+  private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      out.writeDouble(values[i]);
+    }
+  }
+
+  private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+    double[] values = new double[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = in.readDouble();
+    }
+    return values;
+  }
+}
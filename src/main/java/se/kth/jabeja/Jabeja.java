@@ -7,26 +7,118 @@ import org.knowm.xchart.XYChart;
 import org.knowm.xchart.XYChartBuilder;
 import org.knowm.xchart.style.Styler;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.ExecutionMode;
 import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.VisitOrder;
+import se.kth.jabeja.graph.ActiveSet;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.GainBuckets;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.IndependentSets;
+import se.kth.jabeja.graph.Reordering;
 import se.kth.jabeja.io.FileIO;
-import se.kth.jabeja.rand.RandNoGenerator;
+import se.kth.jabeja.rand.Floyd;
+import se.kth.jabeja.rand.SplitMix64;
+import se.kth.jabeja.shard.ShardedEngine;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
 
 import static se.kth.jabeja.AnnealingType.EXPONENTIAL;
 import static se.kth.jabeja.AnnealingType.LINEAR;
 
 public class Jabeja {
   final static Logger logger = Logger.getLogger(Jabeja.class);
+  /**
+   * Vertices per task when BSP proposals are computed in parallel
+   */
+  private static final int BSP_CHUNK = 1024;
   private final Config config;
-  private final HashMap<Integer/*id*/, Node/*neighbors*/> entireGraph;
-  private final List<Integer> nodeIds;
+  /**
+   * the graph of the coloring, only replaced by {@link #refine(int[], int)} after the graph changed
+   */
+  private Graph entireGraph;
+  private final Coloring coloring;
+  private final int[] visitOrder;
+  /**
+   * only swap vertices of the same weight, so the total weight of every color never changes
+   */
+  private final boolean equalWeightSwaps;
+  /**
+   * subtracted from the benefit of a swap for every vertex it moves away from its initial color
+   */
+  private final double migrationPenalty;
+  /**
+   * random numbers of this run; workers get streams split from it
+   */
+  private final SplitMix64 random;
+  /**
+   * seed of the per (round, vertex) generators of the BSP and SHARDED modes, drawn from random
+   */
+  private long vertexSeed;
+  /**
+   * committed[v] == commitStamp if v already swapped in the current BSP phase
+   */
+  private final int[] committed;
+  private int commitStamp = 1;
+  /**
+   * proposals of the current BSP phase and the workers computing them, one per chunk, reused by all phases
+   */
+  private int[] bspPartners;
+  private long[] bspKeys;
+  private Worker[] bspWorkers;
+  /**
+   * the shards of a SHARDED run while it runs
+   */
+  private ShardedEngine sharded;
+  /**
+   * vertices to visit in the next round of a sequential run with -activeSet, null to visit all
+   */
+  private ActiveSet activeSet;
+  /**
+   * candidates of the uniform sample of a sequential run with -gainBuckets, null to sample uniformly
+   */
+  private GainBuckets gainBuckets;
+  /**
+   * vertices swapped by the current {@link #refine(int[], int)}, null otherwise
+   */
+  private int[] moved;
+  private int numMoved;
+  /**
+   * double buffer of checkpoints: one is filled by the rounds while the other may still be written
+   * by checkpointWriter, checkpointWrites[i] is the pending write of checkpoints[i]
+   */
+  private final Checkpoint[] checkpoints = new Checkpoint[2];
+  private final Future<?>[] checkpointWrites = new Future<?>[2];
+  private ExecutorService checkpointWriter;
+  private int numCheckpoints;
+  /**
+   * the checkpoint this run continues from, until its rounds start
+   */
+  private Checkpoint resumed;
   private int numberOfSwaps;
   private int round;
   private double T;
+  /**
+   * consecutive rounds without a swap at the floor temperature
+   */
+  private int frozenRounds;
   private boolean resultFileCreated = false;
+  /**
+   * called with the round once it is reported, null for none
+   */
+  private IntConsumer roundListener;
 
   // New
   private Result result;
@@ -36,9 +128,20 @@ public class Jabeja {
   private int chartIdx;
 
   //-------------------------------------------------------------------
-  public Jabeja(HashMap<Integer, Node> graph, Config config, int chartIdx) {
-    this.entireGraph = graph;
-    this.nodeIds = new ArrayList(entireGraph.keySet());
+  /**
+   * @param coloring colors of this run over the shared, read-only graph
+   */
+  public Jabeja(Coloring coloring, Config config, int chartIdx) {
+    this(coloring, config, chartIdx, new SplitMix64(config.getSeed()));
+  }
+
+  /**
+   * @param coloring colors of this run over the shared, read-only graph
+   * @param random   random numbers of this run, not shared with any other run
+   */
+  public Jabeja(Coloring coloring, Config config, int chartIdx, SplitMix64 random) {
+    this.entireGraph = coloring.getGraph();
+    this.coloring = coloring;
     this.round = 0;
     this.numberOfSwaps = 0;
     this.config = config;
@@ -46,6 +149,14 @@ public class Jabeja {
     this.result = new Result(config);
     this.liveData = new Result[config.getRounds()];
     this.chartIdx = chartIdx;
+    this.equalWeightSwaps = entireGraph.hasVertexWeights();
+    this.migrationPenalty = config.getMigrationPenalty();
+    this.random = random;
+    this.vertexSeed = random.nextLong();
+    this.committed = config.getExecutionMode() == ExecutionMode.BSP ? new int[entireGraph.size()] : null;
+    this.visitOrder = config.getVisitOrder() == VisitOrder.DEGREE_DESC
+            ? Reordering.byDegree(entireGraph.getAdjacency())
+            : identity(entireGraph.size());
 
     Result initResult = new Result(config);
     initResult.edgeCut[round] = 0;
@@ -54,6 +165,18 @@ public class Jabeja {
     realtime.getStyler().setLegendPosition(Styler.LegendPosition.InsideNE);
   }
 
+  private static int[] identity(int size) {
+    int[] order = new int[size];
+    for (int v = 0; v < size; v++) {
+      order[v] = v;
+    }
+    return order;
+  }
+
+  public Coloring getColoring() {
+    return this.coloring;
+  }
+
   public XYChart getRealtime() {
     return this.realtime;
   }
@@ -62,12 +185,131 @@ public class Jabeja {
     return this.chartIdx;
   }
 
+  /**
+   * @param roundListener called on the thread of the run after every round is reported, before
+   *                      the stopping criteria are checked; null for none
+   */
+  void setRoundListener(IntConsumer roundListener) {
+    this.roundListener = roundListener;
+  }
+
   //-------------------------------------------------------------------
+  /**
+   * @param realTimeDisplay display of the real-time charts, or null to run without charts
+   */
   public Result startJabeja(SwingWrapper<XYChart> realTimeDisplay) throws IOException {
+    if (config.getMultilevel()) {
+      Result result = new Multilevel(coloring, config, random).run();
+      if (realTimeDisplay != null) {
+        realtime.updateXYSeries(result.getIdentifier(), result.xRange(), result.getEdgeCut(), null);
+        realTimeDisplay.repaintChart(chartIdx);
+      }
+      return result;
+    }
+    if (config.getResume()) {
+      resume();
+    }
+    if (config.getExecutionMode() == ExecutionMode.SHARDED) {
+      try (ShardedEngine engine = new ShardedEngine(coloring, config, vertexSeed, this::acceptance)) {
+        sharded = engine;
+        Result result = startJabeja(realTimeDisplay, null);
+        engine.copyColorsTo(coloring);
+        logger.info(String.format("%d shards exchanged %d messages in %d batches, %d bytes (%.1f bytes/round/vertex)",
+                config.getShards(), engine.getMessages(), engine.getBatches(), engine.getBytes(),
+                (double) engine.getBytes() / config.getRounds() / entireGraph.size()));
+        return result;
+      } finally {
+        sharded = null;
+      }
+    }
+
+    int threads = config.getThreads();
+    ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    try {
+      return startJabeja(realTimeDisplay, pool);
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private Result startJabeja(SwingWrapper<XYChart> realTimeDisplay, ForkJoinPool pool) throws IOException {
+    boolean bsp = config.getExecutionMode() == ExecutionMode.BSP;
+    Worker sequential = newWorker(random, false);
+    Worker[] workers = new Worker[pool == null || bsp ? 0 : pool.getParallelism()];
+    Coloring.Counters[] counters = new Coloring.Counters[workers.length];
+    for (int w = 0; w < workers.length; w++) {
+      workers[w] = newWorker(random.split(), true);
+      counters[w] = workers[w].counters;
+    }
+    int[] colorSizes = config.getVerifyCounters() ? coloring.colorSizes() : null;
+    int[][] phases = bsp ? IndependentSets.greedy(entireGraph.getAdjacency()) : null;
+    if (bsp) {
+      logger.info("BSP rounds in " + phases.length + " phases of independent vertices");
+      int maxPhase = 0;
+      for (int[] phase : phases) {
+        maxPhase = Math.max(maxPhase, phase.length);
+      }
+      bspPartners = new int[maxPhase];
+      bspKeys = new long[maxPhase];
+      bspWorkers = new Worker[Math.max(1, (maxPhase + BSP_CHUNK - 1) / BSP_CHUNK)];
+      for (int c = 0; c < bspWorkers.length; c++) {
+        bspWorkers[c] = newWorker(new SplitMix64(0), false);
+      }
+    }
+
+    if (config.getActiveSet()) {
+      if (pool == null && !bsp && sharded == null) {
+        activeSet = new ActiveSet(entireGraph.getAdjacency());
+      } else {
+        logger.warn("The active set only applies to sequential ASYNCHRONOUS runs, visiting all vertices");
+      }
+    }
+    if (config.getGainBuckets()) {
+      if (pool == null && !bsp && sharded == null) {
+        long start = System.nanoTime();
+        gainBuckets = new GainBuckets(coloring);
+        logger.info("built the gain buckets in " + (System.nanoTime() - start) / 1000000 + " ms");
+      } else {
+        logger.warn("The gain buckets only apply to sequential ASYNCHRONOUS runs, sampling uniformly");
+      }
+    }
 
-    for (round = 0; round < config.getRounds(); round++) {
-      for (int id : entireGraph.keySet()) {
-        sampleAndSwap(id);
+    int firstRound = 0;
+    if (resumed != null) {
+      firstRound = resumeRounds(workers);
+      resumed = null;
+    }
+
+    for (round = firstRound; round < config.getRounds(); round++) {
+      int swapsBefore = numberOfSwaps;
+      boolean fullSweep = activeSet == null || isFullSweep();
+      if (config.getVisitOrder() == VisitOrder.SHUFFLED && !bsp && sharded == null && fullSweep) {
+        shuffleVisitOrder();
+      }
+      if (activeSet != null) {
+        if (fullSweep) {
+          activeSet.activateAll(visitOrder);
+        }
+        for (int i = 0, size = activeSet.advance(); i < size; i++) {
+          sampleAndSwap(activeSet.get(i), sequential);
+        }
+      } else if (sharded != null) {
+        numberOfSwaps += sharded.round(round);
+      } else if (bsp) {
+        for (int[] phase : phases) {
+          bspPhase(pool, phase);
+        }
+      } else if (pool == null) {
+        for (int v : visitOrder) {
+          sampleAndSwap(v, sequential);
+        }
+      } else {
+        parallelRound(pool, workers, counters);
+        if (config.getVerifyCounters()) {
+          checkBalance(colorSizes);
+        }
       }
 
       //one cycle for all nodes have completed.
@@ -82,13 +324,410 @@ public class Jabeja {
 
       // Update stats and redraw graph
       report();
-      realtime.updateXYSeries(this.result.getIdentifier(), liveData[round].xRange(), liveData[round].getEdgeCut(), null);
-      realTimeDisplay.repaintChart(chartIdx);
+      if (roundListener != null) {
+        roundListener.accept(round);
+      }
+      if (realTimeDisplay != null) {
+        realtime.updateXYSeries(this.result.getIdentifier(), liveData[round].xRange(), liveData[round].getEdgeCut(), null);
+        realTimeDisplay.repaintChart(chartIdx);
+      }
+
+      StopReason stop = checkStop(numberOfSwaps - swapsBefore);
+      if (stop != null) {
+        logger.info("stopped at round " + round + " by " + stop);
+        result.stop(round, stop);
+        break;
+      }
+      int every = config.getCheckpointEvery();
+      if (every > 0 && (round + 1) % every == 0 && round + 1 < config.getRounds()) {
+        checkpoint(workers);
+      }
     }
 
+    finishCheckpoints();
     return result;
   }
 
+  private String checkpointPath() {
+    return config.getOutputDir() + File.separator + new File(config.getGraphFilePath()).getName() + "_"
+            + result.getIdentifier() + ".checkpoint";
+  }
+
+  /**
+   * Restores the colors and the vertex seed from the checkpoint of this run, if there is one, before
+   * any engine reads them. The rest of the state follows in {@link #resumeRounds(Worker[])}.
+   */
+  private void resume() throws IOException {
+    String path = checkpointPath();
+    if (!new File(path).isFile()) {
+      logger.info("No checkpoint at " + path + ", starting from round 0");
+      return;
+    }
+    Checkpoint checkpoint = Checkpoint.read(path);
+    if (checkpoint.numVertices != entireGraph.size() || checkpoint.numTargets != entireGraph.numTargets()
+            || checkpoint.numColors != coloring.getNumColors()) {
+      throw new IOException(path + " is a checkpoint of " + checkpoint.numVertices + " vertices, "
+              + checkpoint.numTargets / 2 + " edges and " + checkpoint.numColors + " colors, not of this run");
+    }
+    if (checkpoint.round + 1 >= config.getRounds()) {
+      throw new IOException(path + " is a checkpoint after round " + checkpoint.round + ", past the last round");
+    }
+    coloring.restore(checkpoint.colors, checkpoint.initColors);
+    System.arraycopy(checkpoint.visitOrder, 0, visitOrder, 0, visitOrder.length);
+    vertexSeed = checkpoint.vertexSeed;
+    resumed = checkpoint;
+  }
+
+  /**
+   * Restores the rest of the resumed checkpoint once the workers of the run exist.
+   *
+   * @return the first round to run
+   */
+  private int resumeRounds(Worker[] workers) {
+    Checkpoint checkpoint = resumed;
+    random.setSeed(checkpoint.randomState);
+    if (checkpoint.workerStates.length == workers.length) {
+      for (int w = 0; w < workers.length; w++) {
+        workers[w].random.setSeed(checkpoint.workerStates[w]);
+      }
+    } else {
+      logger.warn("The checkpoint has " + checkpoint.workerStates.length + " concurrent workers, this run "
+              + workers.length + "; their random numbers start over");
+    }
+    T = checkpoint.temperature;
+    numberOfSwaps = checkpoint.numberOfSwaps;
+    frozenRounds = checkpoint.frozenRounds;
+    for (int r = 0; r <= checkpoint.round; r++) {
+      result.edgeCut[r] = checkpoint.edgeCut[r];
+      result.migrations[r] = checkpoint.migrations[r];
+      result.swaps[r] = checkpoint.swaps[r];
+      liveData[r] = result;
+    }
+    if (activeSet != null) {
+      if (checkpoint.numActive == -1) {
+        activeSet.activateAll(visitOrder);
+      }
+      for (int i = 0; i < checkpoint.numActive; i++) {
+        activeSet.queue(checkpoint.active[i]);
+      }
+    }
+    logger.info("resumed after round " + checkpoint.round + ", edge cut: " + coloring.getEdgeCut());
+    return checkpoint.round + 1;
+  }
+
+  /**
+   * Snapshots the state after the current round into the free checkpoint buffer and writes it on
+   * the checkpoint thread, so the rounds only wait for the copy and, if checkpoints come faster than
+   * they are written, for the write before the previous one.
+   */
+  private void checkpoint(Worker[] workers) throws IOException {
+    int buffer = numCheckpoints++ & 1;
+    awaitCheckpoint(buffer);
+    if (checkpoints[buffer] == null) {
+      checkpoints[buffer] = new Checkpoint(entireGraph.size());
+    }
+    if (checkpointWriter == null) {
+      File outputDir = new File(config.getOutputDir());
+      if (!outputDir.exists() && !outputDir.mkdirs()) {
+        throw new IOException("Unable to create the output directory");
+      }
+      checkpointWriter = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "checkpoint-" + result.getIdentifier());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if (sharded != null) {
+      sharded.copyColorsTo(coloring);
+    }
+
+    Checkpoint checkpoint = checkpoints[buffer];
+    checkpoint.numTargets = entireGraph.numTargets();
+    checkpoint.numColors = coloring.getNumColors();
+    checkpoint.round = round;
+    checkpoint.temperature = T;
+    checkpoint.numberOfSwaps = numberOfSwaps;
+    checkpoint.frozenRounds = frozenRounds;
+    checkpoint.randomState = random.getState();
+    checkpoint.vertexSeed = vertexSeed;
+    checkpoint.workerStates = new long[workers.length];
+    for (int w = 0; w < workers.length; w++) {
+      checkpoint.workerStates[w] = workers[w].random.getState();
+    }
+    for (int v = 0; v < checkpoint.numVertices; v++) {
+      checkpoint.colors[v] = coloring.getColor(v);
+      checkpoint.initColors[v] = coloring.getInitColor(v);
+    }
+    System.arraycopy(visitOrder, 0, checkpoint.visitOrder, 0, visitOrder.length);
+    checkpoint.numActive = activeSet == null ? -1 : activeSet.copyQueued(checkpoint.active);
+    checkpoint.edgeCut = Arrays.copyOf(result.edgeCut, round + 1);
+    checkpoint.migrations = Arrays.copyOf(result.migrations, round + 1);
+    checkpoint.swaps = Arrays.copyOf(result.swaps, round + 1);
+
+    String path = checkpointPath();
+    checkpointWrites[buffer] = checkpointWriter.submit(() -> {
+      checkpoint.write(path);
+      return null;
+    });
+  }
+
+  private void awaitCheckpoint(int buffer) throws IOException {
+    Future<?> write = checkpointWrites[buffer];
+    checkpointWrites[buffer] = null;
+    if (write == null) {
+      return;
+    }
+    try {
+      write.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing a checkpoint", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Unable to write the checkpoint " + checkpointPath(), e.getCause());
+    }
+  }
+
+  /**
+   * Waits for the pending checkpoints of the completed run and deletes them.
+   */
+  private void finishCheckpoints() throws IOException {
+    if (checkpointWriter == null && !config.getResume()) {
+      return;
+    }
+    try {
+      awaitCheckpoint(0);
+      awaitCheckpoint(1);
+    } finally {
+      if (checkpointWriter != null) {
+        checkpointWriter.shutdown();
+        checkpointWriter = null;
+      }
+    }
+    if (new File(checkpointPath()).delete()) {
+      logger.info("run completed, deleted its checkpoint");
+    }
+  }
+
+  /**
+   * Refines the colors after the graph of the coloring changed, see {@link se.kth.jabeja.graph.DynamicGraph}.
+   * Runs at the floor temperature from the given vertices and their neighbours, then like -activeSet only
+   * revisits vertices whose neighbourhood changed, for at most the given rounds. Costs time in the number
+   * of visited vertices, not in the size of the graph. Afterwards the swapped vertices are rebased, so the
+   * migrations of the next refinement are counted against the colors this one leaves.
+   *
+   * @param affected vertices whose own color or a neighbour's color may be wrong
+   * @return number of swaps
+   */
+  public int refine(int[] affected, int rounds) {
+    entireGraph = coloring.getGraph();
+    int n = entireGraph.size();
+    if (activeSet == null || activeSet.capacity() < n) {
+      activeSet = new ActiveSet(entireGraph.getAdjacency(), Math.max(n, 2 * (activeSet == null ? 0 : activeSet.capacity())));
+    }
+    double temperature = T;
+    T = config.getAnnealingType() == LINEAR ? 1 : T_min;
+    Worker worker = newWorker(random, false);
+    moved = new int[16];
+    numMoved = 0;
+    int swapsBefore = numberOfSwaps;
+    int[] colorSizes = config.getVerifyCounters() ? coloring.colorSizes() : null;
+    try {
+      for (int v : affected) {
+        activeSet.touch(v);
+      }
+      for (int r = 0; r < rounds; r++) {
+        int size = activeSet.advance();
+        if (size == 0) {
+          break;
+        }
+        for (int i = 0; i < size; i++) {
+          sampleAndSwap(activeSet.get(i), worker);
+        }
+      }
+      logger.info("refined: edge cut: " + coloring.getEdgeCut() + ", swaps: " + (numberOfSwaps - swapsBefore)
+              + ", migrations: " + coloring.getMigrations());
+      if (config.getVerifyCounters()) {
+        int[] infos = coloring.recount();
+        if (infos[0] != coloring.getEdgeCut() || infos[1] != coloring.getMigrations()) {
+          throw new IllegalStateException("refinement: incremental edge cut " + coloring.getEdgeCut()
+                  + " and migrations " + coloring.getMigrations() + " differ from the recount " + Arrays.toString(infos));
+        }
+        // swaps never change the number of vertices of a color in the graph, removed vertices have none
+        int[] sizes = coloring.colorSizes();
+        if (!Arrays.equals(colorSizes, sizes)) {
+          throw new IllegalStateException("refinement: color sizes " + Arrays.toString(sizes)
+                  + " differ from those before " + Arrays.toString(colorSizes));
+        }
+      }
+      for (int i = 0; i < numMoved; i++) {
+        coloring.rebase(moved[i]);
+      }
+    } finally {
+      T = temperature;
+      moved = null;
+    }
+    return numberOfSwaps - swapsBefore;
+  }
+
+  /**
+   * With an active set, all vertices are visited in the first round, every -fullSweepEvery rounds and
+   * after the temperature is restarted; in between, a vertex is visited again only once its own color or
+   * a neighbour's color changed. A vertex that found no swap is not hopeless though: its next visit draws
+   * new candidates and, with EXPONENTIAL or CUSTOM annealing, new acceptance numbers. The full sweeps give
+   * every vertex these chances; the rounds in between trade them for visiting fewer vertices.
+   */
+  private boolean isFullSweep() {
+    int every = config.getFullSweepEvery();
+    return round == 0 || (every > 0 && round % every == 0) || round == config.getRestartAtRound() + 1;
+  }
+
+  /**
+   * Checks the stopping criteria after a round. None fires up to the round the temperature is restarted at.
+   *
+   * @param swaps swaps made in the round
+   * @return the criterion that fired, null to run the next round
+   */
+  private StopReason checkStop(int swaps) {
+    double floor = config.getAnnealingType() == LINEAR ? 1 : T_min;
+    frozenRounds = swaps == 0 && T <= floor ? frozenRounds + 1 : 0;
+    if (round <= config.getRestartAtRound()) {
+      return null;
+    }
+    if (config.getStopSwaps() >= 0 && swaps <= config.getStopSwaps()) {
+      return StopReason.SWAPS;
+    }
+    int window = config.getStopWindow();
+    if (config.getStopEpsilon() >= 0 && round >= window) {
+      double before = result.edgeCut[round - window];
+      if (before - result.edgeCut[round] <= config.getStopEpsilon() * before) {
+        return StopReason.EPSILON;
+      }
+    }
+    if (config.getStopFrozen() > 0 && frozenRounds >= config.getStopFrozen()) {
+      return StopReason.FROZEN;
+    }
+    return null;
+  }
+
+  /**
+   * One round by concurrent workers, each on its own contiguous range of the visit order.
+   * Swaps are applied with {@link Coloring#swap(int, int, int, int, Coloring.Counters)}, the
+   * changes of the edge cut and migrations the workers collected are committed once all are done.
+   *
+   * @param counters the counters of the workers
+   */
+  private void parallelRound(ForkJoinPool pool, Worker[] workers, Coloring.Counters[] counters) {
+    int chunk = (visitOrder.length + workers.length - 1) / workers.length;
+    ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers.length];
+    for (int w = 0; w < workers.length; w++) {
+      Worker worker = workers[w];
+      int from = Math.min(visitOrder.length, w * chunk);
+      int to = Math.min(visitOrder.length, from + chunk);
+      tasks[w] = pool.submit(() -> {
+        for (int i = from; i < to; i++) {
+          sampleAndSwap(visitOrder[i], worker);
+        }
+      });
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    for (Worker worker : workers) {
+      numberOfSwaps += worker.swaps;
+      worker.swaps = 0;
+    }
+    coloring.commit(counters);
+  }
+
+  /**
+   * One bulk-synchronous phase over independent vertices. First every vertex of the phase proposes
+   * a partner, in parallel, while the colors are frozen. The random numbers of a vertex are drawn
+   * from a generator seeded by (seed, round, vertex), so the proposals do not depend on the threads.
+   * Then the proposals are committed on the calling thread by decreasing benefit, ties by vertex,
+   * skipping any that shares a vertex with an already committed swap.
+   *
+   * @param pool  threads computing the proposals, or null to compute them on the calling thread
+   * @param phase vertices of the phase, no two of them adjacent
+   */
+  private void bspPhase(ForkJoinPool pool, int[] phase) {
+    int[] partners = bspPartners;
+    long[] keys = bspKeys;
+    if (pool == null) {
+      propose(phase, 0, phase.length, bspWorkers[0]);
+    } else {
+      int chunks = (phase.length + BSP_CHUNK - 1) / BSP_CHUNK;
+      ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+      for (int c = 0; c < chunks; c++) {
+        int from = c * BSP_CHUNK;
+        int to = Math.min(phase.length, from + BSP_CHUNK);
+        Worker worker = bspWorkers[c];
+        tasks[c] = pool.submit(() -> propose(phase, from, to, worker));
+      }
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    }
+
+    Arrays.sort(keys, 0, phase.length);
+    for (int k = 0; k < phase.length && keys[k] != Long.MAX_VALUE; k++) {
+      int i = (int) keys[k];
+      int p = phase[i];
+      int q = partners[i];
+      if (committed[p] == commitStamp || committed[q] == commitStamp) {
+        continue;
+      }
+      committed[p] = commitStamp;
+      committed[q] = commitStamp;
+      numberOfSwaps++;
+      int colorp = coloring.getColor(p);
+      coloring.setColor(p, coloring.getColor(q));
+      coloring.setColor(q, colorp);
+    }
+    commitStamp++;
+  }
+
+  /**
+   * Computes the proposals of phase[from, to) against the current colors, without changing them.
+   * bspKeys[i] orders the proposal of phase[i] by decreasing benefit and then i, Long.MAX_VALUE if none.
+   */
+  private void propose(int[] phase, int from, int to, Worker worker) {
+    int[] partners = bspPartners;
+    long[] keys = bspKeys;
+    long seed = SplitMix64.mix(vertexSeed + SplitMix64.mix(round));
+    for (int i = from; i < to; i++) {
+      int p = phase[i];
+      worker.random.setSeed(SplitMix64.mix(seed + p));
+      int partner = choosePartner(p, worker);
+      partners[i] = partner;
+      keys[i] = partner == -1 ? Long.MAX_VALUE
+              : ((long) (Integer.MAX_VALUE - (int) worker.benefit) << 32) | i;
+    }
+  }
+
+  /**
+   * Swaps never change the number of vertices of a color, check that concurrent swaps did not either.
+   * A full pass over the vertices, only with -verifyCounters.
+   */
+  private void checkBalance(int[] expected) {
+    int[] sizes = coloring.colorSizes();
+    if (!Arrays.equals(expected, sizes)) {
+      throw new IllegalStateException("round: " + round + ", color sizes " + Arrays.toString(sizes)
+              + " differ from the initial " + Arrays.toString(expected));
+    }
+  }
+
+  /**
+   * Fisher-Yates shuffle of the vertices visited in the next round
+   */
+  private void shuffleVisitOrder() {
+    for (int i = visitOrder.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = visitOrder[i];
+      visitOrder[i] = visitOrder[j];
+      visitOrder[j] = tmp;
+    }
+  }
+
   /**
    * Simulated analealing cooling function
    */
@@ -122,208 +761,245 @@ public class Jabeja {
     }
   }
 
-  private boolean acceptance(double oldBenefit, double newBenefit) {
+  /**
+   * @param uniform source of uniform random numbers in [0, 1), only drawn from by the probabilistic annealings
+   */
+  private boolean acceptance(double oldBenefit, double newBenefit, DoubleSupplier uniform) {
     switch (config.getAnnealingType()) {
       case EXPONENTIAL:
         // Non-linear: If newBenefit better than oldBenefit -> always 100% probability, otherwise lowers with T and diff
         // NOTE: On the webpage they use the cost. In that case the formula would have been needed to be switched.
         double probability = Math.exp((newBenefit-oldBenefit)/T);
-        return probability > Math.random();
+        return probability > uniform.getAsDouble();
       // Current Temperature T biases towards selecting new states (in the initial rounds)
       case LINEAR: return newBenefit * T > oldBenefit;
       // TODO: Improve with custom annealing function
-      case CUSTOM: return Math.exp((newBenefit-oldBenefit)/T) > Math.random();
+      case CUSTOM: return Math.exp((newBenefit-oldBenefit)/T) > uniform.getAsDouble();
       default: return false;
     }
   }
 
   /**
    * Sample and swap algorith at node p
-   * @param nodeId
+   * @param p dense vertex index
+   * @param worker random numbers of the calling thread
    */
-  private void sampleAndSwap(int nodeId) {
-    Node partner = null;
-    Node nodep = entireGraph.get(nodeId);
+  private void sampleAndSwap(int p, Worker worker) {
+    if (coloring.getColor(p) == -1) {
+      // removed from a dynamic graph while still queued by the active set of the last refinement
+      return;
+    }
+    int partner = choosePartner(p, worker);
+
+    // swap the colors
+    if (partner != -1) {
+      int colorp = coloring.getColor(p);
+      if (!worker.concurrent) {
+        numberOfSwaps++;
+        coloring.setColor(p, coloring.getColor(partner));
+        coloring.setColor(partner, colorp);
+        if (activeSet != null) {
+          activeSet.touch(p);
+          activeSet.touch(partner);
+        }
+        if (gainBuckets != null) {
+          gainBuckets.recolored(p);
+          gainBuckets.recolored(partner);
+        }
+        if (moved != null) {
+          if (numMoved + 2 > moved.length) {
+            moved = Arrays.copyOf(moved, 2 * moved.length);
+          }
+          moved[numMoved++] = p;
+          moved[numMoved++] = partner;
+        }
+      } else if (coloring.swap(p, partner, colorp, coloring.getColor(partner), worker.counters)) {
+        worker.swaps++;
+      }
+    }
+
+    // NOTE: Paper suggests cool down after each swap -> code suggests global cool down instead (after all node-swaps).
+    // saCoolDown();
+  }
+
+  /**
+   * Samples the swap candidates of p according to the node selection policy and picks the best
+   * @param p dense vertex index
+   * @param worker random numbers of the calling thread, receives the benefit of the partner
+   * @return dense index of the partner or -1 if none is accepted
+   */
+  private int choosePartner(int p, Worker worker) {
+    int partner = -1;
 
     if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
             || config.getNodeSelectionPolicy() == NodeSelectionPolicy.LOCAL) {
       // swap with random neighbors
-      partner = findPartner(nodeId, getNeighbors(nodep));
+      int count = getNeighbors(p, worker);
+      partner = findPartner(p, worker.neighbourSample, count, worker);
     }
 
     if (config.getNodeSelectionPolicy() == NodeSelectionPolicy.HYBRID
             || config.getNodeSelectionPolicy() == NodeSelectionPolicy.RANDOM) {
       // if local policy fails then randomly sample the entire graph
-      partner = findPartner(nodeId, getSample(nodeId));
+      int count = getSample(p, worker);
+      if (gainBuckets != null) {
+        // half of the sample are the vertices that gain most from the color of p, the rest keeps exploring
+        gainBuckets.candidates(coloring.getColor(p), worker.uniformSample, count / 2);
+      }
+      partner = findPartner(p, worker.uniformSample, count, worker);
     }
 
-    // swap the colors
-    if (partner != null) {
-      numberOfSwaps++;
-      int colorp = nodep.getColor();
-      nodep.setColor(partner.getColor());
-      partner.setColor(colorp);
-    }
+    return partner;
+  }
 
-    // NOTE: Paper suggests cool down after each swap -> code suggests global cool down instead (after all node-swaps).
-    // saCoolDown();
+  /**
+   * @param p     dense vertex index
+   * @param nodes dense vertex indices of the candidates
+   * @return dense index of the best partner or -1 if none is accepted
+   */
+  public int findPartner(int p, Integer[] nodes){
+    int[] candidates = new int[nodes.length];
+    for (int i = 0; i < nodes.length; i++) {
+      candidates[i] = nodes[i];
+    }
+    return findPartner(p, candidates, candidates.length, newWorker(random, false));
   }
 
-  public Node findPartner(int nodeId, Integer[] nodes){
+  /**
+   * @param nodes dense vertex indices of the candidates in nodes[0, count)
+   */
+  private int findPartner(int p, int[] nodes, int count, Worker worker){
 
-    Node nodep = entireGraph.get(nodeId);
+    int colorp = coloring.getColor(p);
+    // the same for every candidate
+    double nodepDegree = getDegree(p, colorp);
+    int weightp = entireGraph.vertexWeight(p);
 
-    Node bestPartner = null;
+    int bestPartner = -1;
     double highestBenefit = 0;
 
     // Iterate over possible swap-partners and calculate cost/benefit
-    for (Integer n : nodes){
-      Node potentialPartner = entireGraph.get(n);
+    for (int i = 0; i < count; i++){
+      int potentialPartner = nodes[i];
+      if (equalWeightSwaps && entireGraph.vertexWeight(potentialPartner) != weightp) {
+        continue;
+      }
+      int colorq = coloring.getColor(potentialPartner);
+      if (colorq == -1) {
+        // removed from a dynamic graph
+        continue;
+      }
       // Calculate current benefit -> Sum of neighbours with same color for both nodes
-      double nodepDegree = getDegree(nodep, nodep.getColor());
-      double ppDegree = getDegree(potentialPartner, potentialPartner.getColor());
+      double ppDegree = getDegree(potentialPartner, colorq);
       double previousBenefit = nodepDegree + ppDegree;
 
       // Calculate potential benefit -> Sum of neighbours with same color for both nodes when color is switched
       // NOTE: This does not account for the node itself being a neighbour, as it would have an updated color.
       //       But follows the algorithm from the paper.
-      double nodepSwitchDegree = getDegree(nodep, potentialPartner.getColor());
-      double ppSwitchDegree = getDegree(potentialPartner, nodep.getColor());
+      double nodepSwitchDegree = getDegree(p, colorq);
+      double ppSwitchDegree = getDegree(potentialPartner, colorp);
       double potentialBenefit = nodepSwitchDegree + ppSwitchDegree;
+      if (migrationPenalty != 0) {
+        int initp = coloring.getInitColor(p);
+        int initq = coloring.getInitColor(potentialPartner);
+        int migrated = (colorq != initp ? 1 : 0) + (colorp != initq ? 1 : 0)
+                - (colorp != initp ? 1 : 0) - (colorq != initq ? 1 : 0);
+        potentialBenefit -= migrationPenalty * migrated;
+      }
 
-      if (acceptance(previousBenefit, potentialBenefit) && potentialBenefit > highestBenefit) {
+      if (acceptance(previousBenefit, potentialBenefit, worker) && potentialBenefit > highestBenefit) {
         bestPartner = potentialPartner;
         highestBenefit = potentialBenefit;
       }
     }
 
+    worker.benefit = highestBenefit;
     return bestPartner;
   }
 
   /**
-   * The the degreee on the node based on color
-   * @param node
+   * The the degreee on the node based on color, looked up in the color histogram
+   * @param v dense vertex index
    * @param colorId
    * @return how many neighbors of the node have color == colorId
    */
-  private int getDegree(Node node, int colorId){
-    int degree = 0;
-    for(int neighborId : node.getNeighbours()){
-      Node neighbor = entireGraph.get(neighborId);
-      if(neighbor.getColor() == colorId){
-        degree++;
-      }
-    }
-    return degree;
+  private int getDegree(int v, int colorId){
+    return coloring.countColor(v, colorId);
   }
 
   /**
-   * Returns a uniformly random sample of the graph
+   * Returns a uniformly random sample of the graph, without the current node, in worker.uniformSample
    * @param currentNodeId
-   * @return Returns a uniformly random sample of the graph
+   * @param worker random numbers and scratch buffers of the calling thread
+   * @return size of the sample
    */
-  private Integer[] getSample(int currentNodeId) {
-    int count = config.getUniformRandomSampleSize();
-    int rndId;
+  private int getSample(int currentNodeId, Worker worker) {
     int size = entireGraph.size();
-    ArrayList<Integer> rndIds = new ArrayList<Integer>();
+    int count = Math.min(config.getUniformRandomSampleSize(), size - 1);
+    int[] sample = worker.uniformSample;
 
-    while (true) {
-      rndId = nodeIds.get(RandNoGenerator.nextInt(size));
-      if (rndId != currentNodeId && !rndIds.contains(rndId)) {
-        rndIds.add(rndId);
-        count--;
+    // sample [0, size - 1) and skip over the current node
+    Floyd.sample(worker, size - 1, count, sample, 0);
+    for (int i = 0; i < count; i++) {
+      if (sample[i] >= currentNodeId) {
+        sample[i]++;
       }
-
-      if (count == 0)
-        break;
     }
-
-    Integer[] ids = new Integer[rndIds.size()];
-    return rndIds.toArray(ids);
+    return count;
   }
 
   /**
    * Get random neighbors. The number of random neighbors is controlled using
    * -closeByNeighbors command line argument which can be obtained from the config
    * using {@link Config#getRandomNeighborSampleSize()}
-   * @param node
-   * @return
+   * @param v dense vertex index
+   * @param worker random numbers and scratch buffers of the calling thread, receives the neighbors in worker.neighbourSample
+   * @return number of neighbors
    */
-  private Integer[] getNeighbors(Node node) {
-    ArrayList<Integer> list = node.getNeighbours();
+  private int getNeighbors(int v, Worker worker) {
     int count = config.getRandomNeighborSampleSize();
-    int rndId;
-    int index;
-    int size = list.size();
-    ArrayList<Integer> rndIds = new ArrayList<Integer>();
-
-    if (size <= count)
-      rndIds.addAll(list);
-    else {
-      while (true) {
-        index = RandNoGenerator.nextInt(size);
-        rndId = list.get(index);
-        if (!rndIds.contains(rndId)) {
-          rndIds.add(rndId);
-          count--;
-        }
+    Adjacency adjacency = entireGraph.getAdjacency();
+    int size = adjacency.degree(v);
+    int[] sample = worker.neighbourSample;
 
-        if (count == 0)
-          break;
-      }
+    if (size <= count) {
+      return adjacency.neighbours(v, sample);
     }
 
-    Integer[] arr = new Integer[rndIds.size()];
-    return rndIds.toArray(arr);
+    // sample positions in the neighbour list
+    Floyd.sample(worker, size, count, sample, 0);
+    adjacency.neighboursAt(v, sample, 0, count);
+    return count;
   }
 
 
-  private int[] getEdgeCutAndMigrations() {
-    int grayLinks = 0;
-    int migrations = 0; // number of nodes that have changed the initial color
-    int size = entireGraph.size();
-
-    for (int i : entireGraph.keySet()) {
-      Node node = entireGraph.get(i);
-      int nodeColor = node.getColor();
-      ArrayList<Integer> nodeNeighbours = node.getNeighbours();
-
-      if (nodeColor != node.getInitColor()) {
-        migrations++;
-      }
-
-      if (nodeNeighbours != null) {
-        for (int n : nodeNeighbours) {
-          Node p = entireGraph.get(n);
-          int pColor = p.getColor();
-
-          if (nodeColor != pColor)
-            grayLinks++;
-        }
-      }
-    }
-
-    int edgeCut = grayLinks / 2;
-
-    return new int[]{edgeCut, migrations};
-  }
-
   /**
    * Generate a report which is stored in a file in the output dir.
    *
    * @throws IOException
    */
   private void report() throws IOException {
-    int[] infos = getEdgeCutAndMigrations();
-    int edgeCut = infos[0];
-    int migrations = infos[1];
+    int edgeCut = sharded == null ? coloring.getEdgeCut() : sharded.getEdgeCut();
+    int migrations = sharded == null ? coloring.getMigrations() : sharded.getMigrations();
+
+    if (config.getVerifyCounters()) {
+      if (sharded != null) {
+        sharded.copyColorsTo(coloring);
+      }
+      int[] infos = coloring.recount();
+      if (infos[0] != edgeCut || infos[1] != migrations) {
+        throw new IllegalStateException("round: " + round + ", incremental edge cut " + edgeCut
+                + " and migrations " + migrations + " differ from the recount " + Arrays.toString(infos));
+      }
+    }
 
-    logger.info("round: " + round +
-            ", edge cut:" + edgeCut +
-            ", swaps: " + numberOfSwaps +
-            ", migrations: " + migrations +
-            ", T: " + T);
+    if (logger.isInfoEnabled()) {
+      logger.info("round: " + round +
+              ", edge cut:" + edgeCut +
+              ", swaps: " + numberOfSwaps +
+              ", migrations: " + migrations +
+              ", T: " + T);
+    }
 
     save(edgeCut, migrations);
     //saveToFile(edgeCut, migrations);
@@ -374,4 +1050,57 @@ public class Jabeja {
 
     FileIO.append(round + delimiter + (edgeCuts) + delimiter + numberOfSwaps + delimiter + migrations + "\n", outputFilePath);
   }
+
+  private Worker newWorker(SplitMix64 random, boolean concurrent) {
+    return new Worker(random, concurrent ? coloring.newCounters() : null, config.getRandomNeighborSampleSize(),
+            config.getUniformRandomSampleSize());
+  }
+
+  /**
+   * Random numbers, sampling buffers and swap count of a thread working on this run, reused for
+   * every vertex so the round loop does not allocate. The sequential engine uses the generator
+   * of the run, every concurrent worker a stream of its own.
+   */
+  private static class Worker implements DoubleSupplier, IntUnaryOperator {
+    private final SplitMix64 random;
+    /**
+     * whether the worker shares the coloring with other workers and swaps under its locks
+     */
+    private final boolean concurrent;
+    /**
+     * changes of the edge cut and migrations by the swaps of a concurrent worker, null otherwise
+     */
+    private final Coloring.Counters counters;
+    private final int[] neighbourSample;
+    private final int[] uniformSample;
+    private int swaps;
+    /**
+     * benefit of the partner last returned by findPartner
+     */
+    private double benefit;
+
+    /**
+     * @param counters of a concurrent worker, null for a worker that recolors with setColor
+     */
+    Worker(SplitMix64 random, Coloring.Counters counters, int neighbourSampleSize, int uniformSampleSize) {
+      this.random = random;
+      this.concurrent = counters != null;
+      this.counters = counters;
+      this.neighbourSample = new int[neighbourSampleSize];
+      this.uniformSample = new int[uniformSampleSize];
+    }
+
+    /**
+     * @return uniform int in [0, bound)
+     */
+    @Override
+    public int applyAsInt(int bound) {
+      return random.nextInt(bound);
+    }
+
+    @Override
+    public double getAsDouble() {
+      return random.nextDouble();
+    }
+  }
 }
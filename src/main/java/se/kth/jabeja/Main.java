@@ -6,9 +6,13 @@ import org.knowm.xchart.style.Styler;
 import org.knowm.xchart.style.markers.SeriesMarkers;
 import se.kth.jabeja.io.CLI;
 import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.PartitionFile;
 import se.kth.jabeja.config.Config;
-import se.kth.jabeja.rand.RandNoGenerator;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.SplitMix64;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,7 +28,15 @@ public class Main {
      */
     private Config config;
 
-    HashMap<Integer, Node> graph;
+    /**
+     * The topology is read once and shared by all runs.
+     */
+    Graph graph;
+
+    /**
+     * Seeded once; every run gets a generator split from it, so the results only depend on the seed.
+     */
+    private SplitMix64 random;
 
     List<XYChart> realtimeCharts = new ArrayList<XYChart>();
     SwingWrapper<XYChart> realTimeDisplay;
@@ -37,9 +49,9 @@ public class Main {
         config = (new CLI()).parseArgs(args);
 
         //set seed for the application
-        //Note for the results to be deterministic use
-        //only one random generator.
-        RandNoGenerator.setSeed(config.getSeed());
+        random = new SplitMix64(config.getSeed());
+
+        readGraph();
 
         //start JaBeJa
         runJabejas(true);
@@ -67,12 +79,23 @@ public class Main {
      *
      * @return
      */
-    private HashMap<Integer, Node> readGraph() {
+    private Graph readGraph() {
         GraphReader graphReader = new GraphReader();
-        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphInitialColorPolicy(), config.getNumPartitions());
+        graph = graphReader.readGraph(config.getGraphFilePath(), config.getGraphFormat(), config.getVertexOrdering(),
+                config.getAdjacencyLayout());
         return graph;
     }
 
+    /**
+     * colors the shared graph with the initial coloring
+     *
+     * @return
+     */
+    private Coloring colorGraph(SplitMix64 random) {
+        return new GraphReader().colorGraph(graph, config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+                random, config.getInitPartition());
+    }
+
     /**
      * start the jabeja algorithm
      *
@@ -84,14 +107,15 @@ public class Main {
 
 
     private Jabeja initJabeja(AnnealingType annealingType, Double delta, Double alpha, int chartIdx) {
-        //read the input graph -> reset to default coloring/partitioning
-        HashMap<Integer, Node> graph = readGraph();
+        //reset to default coloring/partitioning, the graph itself is shared
+        SplitMix64 random = this.random.split();
+        Coloring coloring = colorGraph(random);
         Config newConfig = config.copy();
         newConfig.setAnnealingType(annealingType);
         newConfig.setDelta(delta);
         newConfig.setAlpha(alpha);
 
-        Jabeja host = new Jabeja(graph, newConfig, chartIdx);
+        Jabeja host = new Jabeja(coloring, newConfig, chartIdx, random);
         this.realtimeCharts.add(host.getRealtime());
 
         return host;
@@ -135,12 +159,29 @@ public class Main {
 
         if (displayCharts) {
             printResults(results);
+            savePartitions(hosts, results);
         }
 
         return results;
     }
 
 
+    /**
+     * writes the final partition of every host, by original vertex id
+     */
+    private void savePartitions(Jabeja[] hosts, Result[] results) throws IOException {
+        File outputDir = new File(config.getOutputDir());
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create the output directory");
+        }
+        String graphName = new File(config.getGraphFilePath()).getName();
+        for (Jabeja host : hosts) {
+            String path = outputDir + File.separator + graphName + "_" + results[host.getChartIdx()].getIdentifier()
+                    + ".part." + config.getNumPartitions();
+            PartitionFile.write(host.getColoring(), path);
+        }
+    }
+
     private void printResults(Result[] results) throws IOException {
         XYChart edgeCut = new XYChartBuilder().title("Edge cuts").xAxisTitle("Rounds").yAxisTitle("Edge cuts").build();
         XYChart migrations = new XYChartBuilder().title("Migrations").xAxisTitle("Rounds").yAxisTitle("Migrations").build();
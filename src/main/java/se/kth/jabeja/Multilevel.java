@@ -0,0 +1,233 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Coarsening;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Multilevel run: the graph is coarsened by heavy-edge matching until it has at most -coarsenTo
+ * vertices, Jabeja runs -rounds rounds on the coarsest graph, and the colors are projected back
+ * level by level with -refineRounds rounds of Jabeja at every finer level.
+ *
+ * Coarse vertices are weighted and only swap with vertices of the same weight, so the weight of
+ * every color is that of the coarsest initial coloring at every level. That coloring is balanced
+ * by weight as well as the weights allow, the few vertices it is off by are moved once the colors
+ * are projected on the input graph.
+ */
+public class Multilevel {
+  final static Logger logger = Logger.getLogger(Multilevel.class);
+
+  /**
+   * Coarsening stops once a level shrinks the graph by less than this factor
+   */
+  private static final double MIN_SHRINK = 0.95;
+
+  private final Coloring coloring;
+  private final Config config;
+  private final SplitMix64 random;
+
+  /**
+   * @param coloring initial colors of the input graph, receives the result
+   * @param random   random numbers of the run
+   */
+  public Multilevel(Coloring coloring, Config config, SplitMix64 random) {
+    this.coloring = coloring;
+    this.config = config;
+    this.random = random;
+  }
+
+  public Result run() throws IOException {
+    Graph graph = coloring.getGraph();
+    int[] targets = coloring.colorSizes();
+    long totalWeight = 0;
+    for (int v = 0; v < graph.size(); v++) {
+      totalWeight += graph.vertexWeight(v);
+    }
+    int maxVertexWeight = (int) Math.max(1, Math.min(Integer.MAX_VALUE, 3 * totalWeight / (2 * config.getCoarsenTo())));
+
+    List<Coarsening> levels = new ArrayList<>();
+    Graph coarsest = graph;
+    while (coarsest.size() > config.getCoarsenTo()) {
+      Coarsening level = Coarsening.heavyEdgeMatching(coarsest, permutation(coarsest.size()), maxVertexWeight);
+      if (level.getCoarse().size() > MIN_SHRINK * coarsest.size()) {
+        break;
+      }
+      levels.add(level);
+      coarsest = level.getCoarse();
+      logger.info("level " + levels.size() + ": " + coarsest.size() + " vertices, "
+              + coarsest.numTargets() / 2 + " edges");
+    }
+
+    List<Result> results = new ArrayList<>();
+    long visits = 0;
+    Coloring current = levels.isEmpty() ? coloring
+            : new Coloring(coarsest, initialColors(coarsest, targets), coloring.getNumColors());
+    Config levelConfig = config.copy().setMultilevel(false).setCheckpointEvery(0).setResume(false);
+    results.add(new Jabeja(current, levelConfig, 0, random.split()).startJabeja(null));
+    visits += (long) results.get(0).getRuns() * current.size();
+
+    Config refineConfig = levelConfig.copy().setRounds(config.getRefineRounds());
+    if (config.getAnnealingType() == AnnealingType.LINEAR) {
+      refineConfig.setTemperature(1.0);
+    }
+    for (int l = levels.size() - 1; l >= 0; l--) {
+      Coarsening level = levels.get(l);
+      int[] colors = level.project(current);
+      if (l == 0) {
+        for (int v = 0; v < colors.length; v++) {
+          coloring.setColor(v, colors[v]);
+        }
+        int moved = rebalance(coloring, targets);
+        logger.info("moved " + moved + " vertices to restore the initial color sizes");
+        current = coloring;
+      } else {
+        current = new Coloring(level.getFine(), colors, coloring.getNumColors());
+      }
+      Result result = new Jabeja(current, refineConfig, 0, random.split()).startJabeja(null);
+      results.add(result);
+      visits += (long) result.getRuns() * current.size();
+    }
+
+    logger.info(String.format("multilevel: %d levels, %d vertex visits, as many as %.1f rounds on the input graph",
+            levels.size(), visits, (double) visits / graph.size()));
+    return concat(results);
+  }
+
+  private int[] permutation(int size) {
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      int j = random.nextInt(i + 1);
+      order[i] = order[j];
+      order[j] = i;
+    }
+    return order;
+  }
+
+  /**
+   * Largest weight first, every vertex gets the color furthest below its target weight.
+   */
+  private int[] initialColors(Graph graph, int[] targets) {
+    int n = graph.size();
+    long[] keys = new long[n];
+    int[] order = permutation(n);
+    for (int i = 0; i < n; i++) {
+      keys[i] = ((long) (Integer.MAX_VALUE - graph.vertexWeight(order[i])) << 32) | i;
+    }
+    Arrays.sort(keys);
+    long[] remaining = new long[targets.length];
+    for (int c = 0; c < targets.length; c++) {
+      remaining[c] = targets[c];
+    }
+    int[] colors = new int[n];
+    for (long key : keys) {
+      int v = order[(int) key];
+      int best = 0;
+      for (int c = 1; c < remaining.length; c++) {
+        if (remaining[c] > remaining[best]) {
+          best = c;
+        }
+      }
+      colors[v] = best;
+      remaining[best] -= graph.vertexWeight(v);
+    }
+    return colors;
+  }
+
+  /**
+   * Moves vertices from the colors above their target weight to those below it, the vertices
+   * that cut the fewest additional edges first, as long as no color is pushed past its target.
+   *
+   * @return number of vertices moved
+   */
+  private static int rebalance(Coloring coloring, int[] targets) {
+    Graph graph = coloring.getGraph();
+    int n = graph.size();
+    int numColors = coloring.getNumColors();
+    long[] excess = new long[numColors];
+    long[] keys = new long[n];
+    int[] bestColor = new int[n];
+    int moved = 0;
+    while (true) {
+      Arrays.fill(excess, 0);
+      for (int v = 0; v < n; v++) {
+        excess[coloring.getColor(v)] += graph.vertexWeight(v);
+      }
+      for (int c = 0; c < numColors; c++) {
+        excess[c] -= targets[c];
+      }
+
+      int count = 0;
+      for (int v = 0; v < n; v++) {
+        int color = coloring.getColor(v);
+        if (excess[color] < graph.vertexWeight(v)) {
+          continue;
+        }
+        int best = -1;
+        for (int c = 0; c < numColors; c++) {
+          if (-excess[c] >= graph.vertexWeight(v)
+                  && (best == -1 || coloring.countColor(v, c) > coloring.countColor(v, best))) {
+            best = c;
+          }
+        }
+        if (best != -1) {
+          int loss = coloring.countColor(v, color) - coloring.countColor(v, best);
+          bestColor[v] = best;
+          keys[count++] = ((long) loss << 32) + v;
+        }
+      }
+      if (count == 0) {
+        return moved;
+      }
+
+      Arrays.sort(keys, 0, count);
+      int movedBefore = moved;
+      for (int i = 0; i < count; i++) {
+        int v = (int) keys[i];
+        int color = coloring.getColor(v);
+        int weight = graph.vertexWeight(v);
+        if (excess[color] >= weight && -excess[bestColor[v]] >= weight) {
+          coloring.setColor(v, bestColor[v]);
+          excess[color] -= weight;
+          excess[bestColor[v]] += weight;
+          moved++;
+        }
+      }
+      if (moved == movedBefore) {
+        return moved;
+      }
+    }
+  }
+
+  /**
+   * @return the rounds of all levels in one result; the swaps add up over the levels and the
+   * migrations of a level are counted against the colors it started with
+   */
+  private Result concat(List<Result> results) {
+    int rounds = 0;
+    for (Result result : results) {
+      rounds += result.getRuns();
+    }
+    Result all = new Result(config.copy().setRounds(rounds));
+    int offset = 0;
+    double swaps = 0;
+    for (Result result : results) {
+      for (int r = 0; r < result.getRuns(); r++) {
+        all.edgeCut[offset + r] = result.edgeCut[r];
+        all.migrations[offset + r] = result.migrations[r];
+        all.swaps[offset + r] = swaps + result.swaps[r];
+      }
+      offset += result.getRuns();
+      swaps += result.swaps[result.getRuns() - 1];
+    }
+    all.setStopReason(results.get(results.size() - 1).getStopReason());
+    return all;
+  }
+}
@@ -1,47 +1,57 @@
 package se.kth.jabeja;
 
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+
 import java.util.ArrayList;
 
+/**
+ * View of a single vertex of a {@link Graph} and its {@link Coloring}. All state lives
+ * in those, the view only remembers the dense vertex index.
+ */
 public class Node {
 
-	private int id;
-	private int color;
-	private int initColor;
-	private ArrayList<Integer> neighbours;
+	private final Coloring coloring;
+	private final Graph graph;
+	private final int vertex;
 
-	public Node(int id, int color) {
-		this.id = id;
-		this.color = color;
-		this.initColor = color;
-		this.neighbours = new ArrayList<Integer>();
+	public Node(Coloring coloring, int vertex) {
+		this.coloring = coloring;
+		this.graph = coloring.getGraph();
+		this.vertex = vertex;
 	}
 
 	public void setColor(int color) {
-		this.color = color;
+		coloring.setColor(vertex, color);
 	}
 
-	public void setNeighbours(ArrayList<Integer> neighbours) {
-		for (int id : neighbours)
-			this.neighbours.add(id);
+	public int getVertex() {
+		return this.vertex;
 	}
-	
 	public int getId() {
-		return this.id;
+		return graph.getId(vertex);
 	}
 	public int getColor() {
-		return this.color;
+		return coloring.getColor(vertex);
 	}
 	public int getDegree() {
-		return this.neighbours.size();
+		return graph.degree(vertex);
 	}
 	public int getInitColor() {
-		return this.initColor;
+		return coloring.getInitColor(vertex);
 	}
+	/**
+	 * @return original ids of the neighbours
+	 */
 	public ArrayList<Integer> getNeighbours() {
-		return this.neighbours;
+		ArrayList<Integer> neighbours = new ArrayList<Integer>(getDegree());
+		for (int i = 0; i < getDegree(); i++) {
+			neighbours.add(graph.getId(graph.neighbour(vertex, i)));
+		}
+		return neighbours;
 	}
 	@Override
 	public String toString() {
-		return "id: " + id + ", color: " + color + ", neighbours: " + neighbours + "\n";
+		return "id: " + getId() + ", color: " + getColor() + ", neighbours: " + getNeighbours() + "\n";
 	}
 }
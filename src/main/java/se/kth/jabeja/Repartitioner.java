@@ -0,0 +1,67 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.DynamicGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.GraphDelta;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.DeltaFile;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.io.PartitionFile;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Partitions a graph, then follows it through the -deltas files without starting over: every delta
+ * is applied to a {@link DynamicGraph}, which colors the added vertices greedily, and at most
+ * -deltaRounds rounds of {@link Jabeja#refine(int[], int)} visit the vertices near the changes.
+ * With -migrationPenalty, swaps that move vertices away from the colors before the delta have to
+ * gain that much more. The final colors are written by original vertex id, -1 for the removed vertices.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.Repartitioner -graph graphs/3elt.graph -deltas d1.delta,d2.delta
+ */
+public class Repartitioner {
+  final static Logger logger = Logger.getLogger(Repartitioner.class);
+
+  public static void main(String[] args) throws IOException {
+    Config config = new CLI().parseArgs(args);
+    GraphReader reader = new GraphReader();
+    Graph graph = reader.readGraph(config.getGraphFilePath(), config.getGraphFormat(), config.getVertexOrdering(),
+            config.getAdjacencyLayout());
+    SplitMix64 random = new SplitMix64(config.getSeed());
+    Coloring coloring = reader.colorGraph(graph, config.getGraphInitialColorPolicy(), config.getNumPartitions(), random,
+            config.getInitPartition());
+    // the initial colors are arbitrary, only later migrations are penalized
+    Result result = new Jabeja(coloring, config.copy().setMigrationPenalty(0.0), 0, random).startJabeja(null);
+    logger.info("initial edge cut: " + (int) result.getEdgeCut()[result.getRuns() - 1]);
+
+    DynamicGraph dynamic = new DynamicGraph(coloring);
+    Jabeja refiner = new Jabeja(dynamic.getColoring(), config, 0, random.split());
+    for (String path : config.getDeltas().split(",")) {
+      if (path.trim().isEmpty()) {
+        continue;
+      }
+      GraphDelta delta = DeltaFile.read(path.trim());
+      long start = System.nanoTime();
+      int[] affected = dynamic.apply(delta);
+      long applied = System.nanoTime();
+      int swaps = refiner.refine(affected, config.getDeltaRounds());
+      long refined = System.nanoTime();
+      logger.info(String.format("%s: %d changes, apply %.2f ms, refine %.2f ms, %d swaps, edge cut: %d",
+              path.trim(), delta.size(), (applied - start) / 1e6, (refined - applied) / 1e6, swaps,
+              dynamic.getColoring().getEdgeCut()));
+    }
+
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    String path = outputDir + File.separator + new File(config.getGraphFilePath()).getName() + "_dynamic.part."
+            + config.getNumPartitions();
+    PartitionFile.write(dynamic.getColoring(), path);
+  }
+}
@@ -3,6 +3,7 @@ package se.kth.jabeja;
 import lombok.Data;
 import se.kth.jabeja.config.Config;
 
+import java.util.Arrays;
 import java.util.stream.IntStream;
 
 @Data
@@ -13,15 +14,33 @@ public class Result {
     double[] swaps;
     int runs;
     String identifier;
+    StopReason stopReason = StopReason.ROUNDS;
+    /**
+     * last round that was run
+     */
+    int stopRound;
 
     public Result(Config config) {
         this.runs = config.getRounds();
+        this.stopRound = runs - 1;
         this.edgeCut = new double[runs];
         this.migrations = new double[runs];
         this.swaps = new double[runs];
         this.identifier = getIdentifier(config);
     }
 
+    /**
+     * Ends the result after the given round, in which a stopping criterion fired
+     */
+    public void stop(int round, StopReason reason) {
+        this.stopReason = reason;
+        this.stopRound = round;
+        this.runs = round + 1;
+        this.edgeCut = Arrays.copyOf(edgeCut, runs);
+        this.migrations = Arrays.copyOf(migrations, runs);
+        this.swaps = Arrays.copyOf(swaps, runs);
+    }
+
     public double[] xRange() {
         return IntStream.range(0, runs).asDoubleStream().toArray();
     }
@@ -0,0 +1,23 @@
+package se.kth.jabeja;
+
+/**
+ * Why a run stopped, recorded in its {@link Result}.
+ */
+public enum StopReason {
+    /**
+     * all the configured rounds were run
+     */
+    ROUNDS,
+    /**
+     * a round made at most -stopSwaps swaps
+     */
+    SWAPS,
+    /**
+     * the edge cut improved by at most -stopEpsilon over the last -stopWindow rounds
+     */
+    EPSILON,
+    /**
+     * the temperature reached its floor and no swap was made for -stopFrozen rounds
+     */
+    FROZEN,
+}
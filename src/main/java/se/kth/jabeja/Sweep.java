@@ -0,0 +1,378 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.ExecutionMode;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the cartesian grid of the parameter values in the -sweep file over one shared graph, at
+ * most -sweepThreads runs at a time on a work-stealing pool. Every run is independent: it starts
+ * from its own initial coloring and random stream, both seeded by its seed only, so its result
+ * does not depend on the order or the threads the runs were scheduled on. A result is appended to
+ * outputDir/&lt;graph&gt;_sweep.tsv as soon as its run finishes; a run that fails, or is cancelled
+ * because the process is stopped, gets a row of its own and the others carry on.
+ *
+ * The -sweep file is a properties file with a comma separated list of values per parameter:
+ * <pre>
+ *   annealingType = LINEAR, EXPONENTIAL
+ *   temperature = 2
+ *   delta = 0.002, 0.003
+ *   alpha = 0.9, 0.95
+ *   randNeighborsSampleSize = 3
+ *   uniformRandSampleSize = 6
+ *   seed = 0, 1, 2
+ * </pre>
+ * The parameters left out keep their command line value. With -checkpointEvery, run i checkpoints
+ * to outputDir/&lt;graph&gt;_sweep/run&lt;i&gt;, so -resume continues every unfinished run.
+ *
+ * With -race the grid is raced by successive halving: the first rung runs every configuration for
+ * -raceFirstRung rounds, and only the one in -raceEta of them with the lowest edge cuts goes on to
+ * the next rung, which has -raceEta times the rounds, up to a last rung of all the rounds. A rung
+ * compresses the annealing schedule of a configuration into its rounds, so the runs cool down as
+ * far as they would at the end and their edge cuts rank them much like complete runs do; part way
+ * through a complete schedule, the runs that are still hot look worst even when they end best.
+ *
+ * When fewer runs than -sweepThreads are left, as in the later rungs of a race, the ASYNCHRONOUS
+ * and BSP runs share the idle threads: each runs with -sweepThreads / runs threads, or its own
+ * -threads if that is more, so a race finishes sooner rather than only costing less CPU time. BSP
+ * runs are identical whatever their threads; ASYNCHRONOUS runs on several threads depend on the
+ * schedule, so rerunning such a configuration on its own does not reproduce its edge cut exactly.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.Sweep -graph graphs/3elt.graph -sweep sweep.properties
+ */
+public class Sweep {
+  final static Logger logger = Logger.getLogger(Sweep.class);
+
+  /**
+   * parameters of the grid, the last one varies fastest
+   */
+  private static final String[] PARAMETERS = {"annealingType", "temperature", "delta", "alpha",
+          "randNeighborsSampleSize", "uniformRandSampleSize", "seed"};
+
+  private final Config config;
+  private final Graph graph;
+  private final List<Config> grid;
+  private final ForkJoinPool pool;
+  private final Writer out;
+  /**
+   * runs of the current batch, cancelled on Ctrl-C
+   */
+  private volatile List<FutureTask<Result>> batch = new ArrayList<>();
+  private volatile boolean cancelled;
+  private int numRuns;
+  private int failed;
+  private long roundsRun;
+
+  private Sweep(Config config, Graph graph, List<Config> grid, ForkJoinPool pool, Writer out) {
+    this.config = config;
+    this.graph = graph;
+    this.grid = grid;
+    this.pool = pool;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Config config = new CLI().parseArgs(args);
+    if (config.getSweep().isEmpty()) {
+      throw new IllegalArgumentException("The Sweep runner needs a -sweep file");
+    }
+    List<Config> grid = grid(config, config.getSweep());
+    GraphReader reader = new GraphReader();
+    Graph graph = reader.readGraph(config.getGraphFilePath(), config.getGraphFormat(), config.getVertexOrdering(),
+            config.getAdjacencyLayout());
+
+    String graphName = new File(config.getGraphFilePath()).getName();
+    File outputDir = new File(config.getOutputDir());
+    if (!outputDir.exists() && !outputDir.mkdirs()) {
+      throw new IOException("Unable to create the output directory");
+    }
+    File runsDir = new File(outputDir, graphName + "_sweep");
+    for (int i = 0; i < grid.size(); i++) {
+      grid.get(i).setOutputDir(new File(runsDir, "run" + i).getPath());
+    }
+    int threads = config.getSweepThreads() > 0 ? config.getSweepThreads() : Runtime.getRuntime().availableProcessors();
+    logger.info("sweeping " + grid.size() + " configurations, " + threads + " runs at a time");
+
+    String path = config.getOutputDir() + File.separator + graphName + "_sweep.tsv";
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try (Writer out = new BufferedWriter(new FileWriter(path))) {
+      out.write("run\t" + String.join("\t", PARAMETERS)
+              + "\tstatus\tedgeCut\tmigrations\tswaps\trounds\tstopReason\tseconds\terror\n");
+      out.flush();
+      Sweep sweep = new Sweep(config, graph, grid, pool, out);
+
+      // on Ctrl-C the unfinished runs are cancelled, their rows written and the results file closed
+      Thread sweeper = Thread.currentThread();
+      Thread cancel = new Thread(() -> {
+        sweep.cancelled = true;
+        sweep.batch.forEach(run -> run.cancel(true));
+        try {
+          sweeper.join(10000);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }, "sweep-cancel");
+      Runtime.getRuntime().addShutdownHook(cancel);
+
+      int[] all = new int[grid.size()];
+      Arrays.setAll(all, i -> i);
+      Result[] results = config.getRace() ? sweep.race(all) : sweep.run(all, config.getRounds());
+      int best = -1;
+      for (int i : all) {
+        if (results[i] != null && (best == -1 || lastEdgeCut(results[i]) < lastEdgeCut(results[best]))) {
+          best = i;
+        }
+      }
+
+      try {
+        Runtime.getRuntime().removeShutdownHook(cancel);
+      } catch (IllegalStateException e) {
+        // already shutting down, the hook is waiting for this thread
+      }
+      logger.info("sweep done, " + sweep.failed + " of " + sweep.numRuns + " runs failed or were cancelled, "
+              + sweep.roundsRun + " rounds run of the " + (long) grid.size() * config.getRounds()
+              + " of the whole grid, results in " + path);
+      if (best != -1) {
+        logger.info("best edge cut " + (int) lastEdgeCut(results[best]) + " by run " + best + ", "
+                + values(grid.get(best), " "));
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Successive halving of the configurations.
+   *
+   * @return results of the configurations that reached the last rung, by grid index, null for the others
+   */
+  private Result[] race(int[] configs) throws IOException, InterruptedException {
+    int eta = config.getRaceEta();
+    int rounds = config.getRounds();
+    int first = config.getRaceFirstRung() > 0 ? config.getRaceFirstRung() : rounds / (eta * eta);
+    List<Integer> rungs = new ArrayList<>();
+    for (long rung = Math.max(1, first); rung <= rounds / eta; rung *= eta) {
+      rungs.add((int) rung);
+    }
+    rungs.add(rounds);
+    logger.info("racing in rungs of " + rungs + " rounds, one configuration in " + eta + " goes on");
+
+    for (int rung : rungs.subList(0, rungs.size() - 1)) {
+      if (configs.length == 1) {
+        break;
+      }
+      Result[] results = run(configs, rung);
+      if (cancelled) {
+        // no configuration reached the last rung
+        return new Result[grid.size()];
+      }
+      // the failed runs drop out, ties go to the lower index
+      Integer[] ranked = Arrays.stream(configs).filter(i -> results[i] != null).boxed()
+              .sorted(Comparator.<Integer>comparingDouble(i -> lastEdgeCut(results[i])).thenComparingInt(i -> i))
+              .toArray(Integer[]::new);
+      int keep = (ranked.length + eta - 1) / eta;
+      if (keep > 0) {
+        logger.info(String.format("rung of %d rounds: %d of %d configurations go on, edge cuts %d to %d", rung,
+                keep, configs.length, (int) lastEdgeCut(results[ranked[0]]),
+                (int) lastEdgeCut(results[ranked[keep - 1]])));
+      }
+      configs = Arrays.stream(ranked, 0, keep).mapToInt(Integer::intValue).sorted().toArray();
+    }
+    return run(configs, rounds);
+  }
+
+  /**
+   * Runs the configurations for the given rounds, their annealing compressed into them, and writes
+   * a row for each as soon as it finishes.
+   *
+   * @return results by grid index, null for the runs that failed or were cancelled
+   */
+  private Result[] run(int[] configs, int rounds) throws IOException, InterruptedException {
+    // indices of the finished runs, in the order they finished; a run cancelled before it started
+    // is finished as well
+    BlockingQueue<Integer> finished = new LinkedBlockingQueue<>();
+    List<FutureTask<Result>> runs = new ArrayList<>();
+    FutureTask<?>[] byIndex = new FutureTask<?>[grid.size()];
+    long[] started = new long[grid.size()];
+    int threads = Math.max(1, pool.getParallelism() / configs.length);
+    for (int i : configs) {
+      Config runConfig = share(rounds == config.getRounds() ? grid.get(i) : compress(grid.get(i), rounds), threads);
+      FutureTask<Result> run = new FutureTask<Result>(() -> {
+        started[i] = System.nanoTime();
+        SplitMix64 random = new SplitMix64(runConfig.getSeed());
+        Coloring coloring = new GraphReader().colorGraph(graph, runConfig.getGraphInitialColorPolicy(),
+                runConfig.getNumPartitions(), random, runConfig.getInitPartition());
+        return new Jabeja(coloring, runConfig, i, random).startJabeja(null);
+      }) {
+        @Override
+        protected void done() {
+          finished.add(i);
+        }
+      };
+      runs.add(run);
+      byIndex[i] = run;
+    }
+    batch = runs;
+    if (cancelled) {
+      runs.forEach(run -> run.cancel(true));
+    }
+    // the runs are only started once a thread is free, so at most threads colorings are alive
+    runs.forEach(pool::execute);
+
+    Result[] results = new Result[grid.size()];
+    for (int done = 1; done <= configs.length; done++) {
+      int index = finished.take();
+      Config runConfig = grid.get(index);
+      String row = index + "\t" + values(runConfig, "\t");
+      numRuns++;
+      try {
+        Result result = (Result) byIndex[index].get();
+        double seconds = (System.nanoTime() - started[index]) / 1e9;
+        int last = result.getRuns() - 1;
+        roundsRun += result.getRuns();
+        row += String.format("\tDONE\t%d\t%d\t%d\t%d\t%s\t%.3f\t", (int) result.getEdgeCut()[last],
+                (int) result.getMigrations()[last], (int) result.getSwaps()[last], result.getRuns(),
+                result.getStopReason(), seconds);
+        logger.info(String.format("run %d/%d of %d rounds on %d threads, %s: edge cut %d in %.2f s", done,
+                configs.length, rounds, share(runConfig, threads).getThreads(), values(runConfig, " "),
+                (int) result.getEdgeCut()[last], seconds));
+        results[index] = result;
+      } catch (CancellationException e) {
+        failed++;
+        row += "\tCANCELLED\t\t\t\t\t\t\t";
+      } catch (ExecutionException e) {
+        failed++;
+        Throwable cause = e.getCause();
+        row += "\tFAILED\t\t\t\t\t\t\t" + (cause + "").replace('\t', ' ').replace('\n', ' ');
+        logger.error("run " + index + ", " + values(runConfig, " ") + " failed", cause);
+      }
+      out.write(row + "\n");
+      out.flush();
+    }
+    return results;
+  }
+
+  /**
+   * @return the configuration, or a copy of it that runs on the given threads if it is an
+   * ASYNCHRONOUS or BSP run on fewer; the shards of a SHARDED run do not use threads
+   */
+  static Config share(Config config, int threads) {
+    if (threads <= config.getThreads() || config.getExecutionMode() == ExecutionMode.SHARDED) {
+      return config;
+    }
+    return config.copy().setThreads(threads);
+  }
+
+  /**
+   * @return a copy of the configuration whose annealing goes as far in the given rounds as the
+   * configuration's does in all of its rounds; the copy neither checkpoints nor resumes
+   */
+  static Config compress(Config config, int rounds) {
+    double factor = (double) config.getRounds() / rounds;
+    Config compressed = config.copy().setRounds(rounds).setCheckpointEvery(0).setResume(false);
+    switch (config.getAnnealingType()) {
+      case LINEAR:
+        compressed.setDelta(config.getDelta() * factor);
+        break;
+      case EXPONENTIAL:
+        compressed.setAlpha(Math.pow(config.getAlpha(), factor));
+        break;
+      case CUSTOM:
+        // T decreases by alpha * T^2 a round, so 1 / T grows by about alpha a round
+        compressed.setAlpha(config.getAlpha() * factor);
+        break;
+    }
+    if (config.getRestartAtRound() >= 0) {
+      compressed.setRestartAtRound((int) (config.getRestartAtRound() / factor));
+    }
+    return compressed;
+  }
+
+  private static double lastEdgeCut(Result result) {
+    return result.getEdgeCut()[result.getRuns() - 1];
+  }
+
+  /**
+   * @return a copy of the base configuration for every point of the grid in the file
+   */
+  static List<Config> grid(Config base, String path) throws IOException {
+    Properties properties = new Properties();
+    try (Reader in = new FileReader(path)) {
+      properties.load(in);
+    }
+    for (String name : properties.stringPropertyNames()) {
+      if (!List.of(PARAMETERS).contains(name)) {
+        throw new IllegalArgumentException("Unknown sweep parameter: " + name);
+      }
+    }
+    List<Config> grid = new ArrayList<>();
+    grid.add(base.copy());
+    for (String name : PARAMETERS) {
+      String values = properties.getProperty(name);
+      if (values == null) {
+        continue;
+      }
+      List<Config> expanded = new ArrayList<>();
+      for (Config config : grid) {
+        for (String value : values.split(",")) {
+          if (!value.trim().isEmpty()) {
+            expanded.add(set(config.copy(), name, value.trim()));
+          }
+        }
+      }
+      if (expanded.isEmpty()) {
+        throw new IllegalArgumentException("Sweep parameter " + name + " has no values");
+      }
+      grid = expanded;
+    }
+    return grid;
+  }
+
+  private static Config set(Config config, String name, String value) {
+    try {
+      switch (name) {
+        case "annealingType": return config.setAnnealingType(AnnealingType.valueOf(value.toUpperCase()));
+        case "temperature": return config.setTemperature(Double.parseDouble(value));
+        case "delta": return config.setDelta(Double.parseDouble(value));
+        case "alpha": return config.setAlpha(Double.parseDouble(value));
+        case "randNeighborsSampleSize": return config.setRandNeighborsSampleSize(Integer.parseInt(value));
+        case "uniformRandSampleSize": return config.setUniformRandSampleSize(Integer.parseInt(value));
+        case "seed": return config.setSeed(Integer.parseInt(value));
+        default: throw new IllegalArgumentException("Unknown sweep parameter: " + name);
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Invalid value " + value + " of sweep parameter " + name, e);
+    }
+  }
+
+  private static String values(Config config, String delimiter) {
+    return String.join(delimiter, config.getAnnealingType().toString(), config.getTemperature().toString(),
+            config.getDelta().toString(), config.getAlpha().toString(),
+            config.getRandomNeighborSampleSize().toString(), config.getUniformRandomSampleSize().toString(),
+            config.getSeed().toString());
+  }
+}
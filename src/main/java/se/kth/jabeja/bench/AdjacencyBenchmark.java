@@ -0,0 +1,117 @@
+package se.kth.jabeja.bench;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.CompressedAdjacency;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.GraphReader;
+
+import java.util.Random;
+
+/**
+ * Compares the plain CSR adjacency with the {@link CompressedAdjacency}: bytes per directed edge,
+ * the throughput of getDegree-style color counting over all vertices, and swaps per second, each
+ * swap two {@link Coloring#setColor(int, int)} calls that walk the neighbour lists of both vertices
+ * to update the color histogram.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.bench.AdjacencyBenchmark graphs/twitter.graph graphs/TwitterGraph.net
+ */
+public class AdjacencyBenchmark {
+  final static Logger logger = Logger.getLogger(AdjacencyBenchmark.class);
+
+  private static final int NUM_COLORS = 4;
+  private static final int WARMUP_SWEEPS = 20;
+  private static final int SWEEPS = 50;
+  private static final int SWAPS = 1 << 20;
+
+  public static void main(String[] args) {
+    for (String path : args) {
+      Graph graph = new GraphReader().readGraph(path);
+      Adjacency csr = graph.getAdjacency();
+      Adjacency compressed = CompressedAdjacency.of(csr);
+
+      int[] colors = new int[graph.size()];
+      Random random = new Random(0);
+      for (int v = 0; v < colors.length; v++) {
+        colors[v] = random.nextInt(NUM_COLORS);
+      }
+      for (int v = 0; v < colors.length; v++) {
+        for (int c = 0; c < NUM_COLORS; c++) {
+          if (csr.countColor(v, colors, c) != compressed.countColor(v, colors, c)) {
+            throw new IllegalStateException("Adjacencies differ at vertex " + v);
+          }
+        }
+      }
+
+      double csrRate = edgesPerSecond(csr, colors);
+      double compressedRate = edgesPerSecond(compressed, colors);
+      double csrSwaps = swapsPerSecond(graph, colors);
+      double compressedSwaps = swapsPerSecond(graph.withAdjacency(compressed), colors);
+      logger.info(String.format("%s: %d vertices, %d directed edges", path, graph.size(), graph.numTargets()));
+      logger.info(String.format("  CSR:        %.2f bytes/edge, %.1f M edges/s, %.2f M swaps/s",
+              bytesPerEdge(csr), csrRate / 1e6, csrSwaps / 1e6));
+      logger.info(String.format("  COMPRESSED: %.2f bytes/edge, %.1f M edges/s (%.0f%% of CSR), %.2f M swaps/s (%.0f%% of CSR)",
+              bytesPerEdge(compressed), compressedRate / 1e6, 100 * compressedRate / csrRate,
+              compressedSwaps / 1e6, 100 * compressedSwaps / csrSwaps));
+    }
+  }
+
+  private static double bytesPerEdge(Adjacency adjacency) {
+    return (double) adjacency.sizeInBytes() / adjacency.numTargets();
+  }
+
+  /**
+   * @return directed edges visited per second while counting the neighbours of each vertex with its own color
+   */
+  private static double edgesPerSecond(Adjacency adjacency, int[] colors) {
+    long sink = 0;
+    for (int s = 0; s < WARMUP_SWEEPS; s++) {
+      sink += sweep(adjacency, colors);
+    }
+    long start = System.nanoTime();
+    for (int s = 0; s < SWEEPS; s++) {
+      sink += sweep(adjacency, colors);
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) {
+      logger.trace(sink);
+    }
+    return (double) SWEEPS * adjacency.numTargets() / (elapsed / 1e9);
+  }
+
+  /**
+   * @return swaps per second between random pairs of vertices, the same pairs for every adjacency
+   */
+  private static double swapsPerSecond(Graph graph, int[] colors) {
+    Coloring coloring = new Coloring(graph, colors, NUM_COLORS);
+    int[] pairs = new int[2 * SWAPS];
+    Random random = new Random(1);
+    for (int i = 0; i < pairs.length; i++) {
+      pairs[i] = random.nextInt(graph.size());
+    }
+    swaps(coloring, pairs);
+    long start = System.nanoTime();
+    swaps(coloring, pairs);
+    long elapsed = System.nanoTime() - start;
+    return SWAPS / (elapsed / 1e9);
+  }
+
+  private static void swaps(Coloring coloring, int[] pairs) {
+    for (int i = 0; i < pairs.length; i += 2) {
+      int p = pairs[i];
+      int q = pairs[i + 1];
+      int colorp = coloring.getColor(p);
+      coloring.setColor(p, coloring.getColor(q));
+      coloring.setColor(q, colorp);
+    }
+  }
+
+  private static long sweep(Adjacency adjacency, int[] colors) {
+    long sum = 0;
+    for (int v = 0; v < adjacency.size(); v++) {
+      sum += adjacency.countColor(v, colors, colors[v]);
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,154 @@
+package se.kth.jabeja.bench;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.ColorCounter;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.GraphReader;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares the scalar and the vector {@link ColorCounter} on the neighbour lists of the vertices of
+ * degree at least 64: counting the neighbours of the vertex's own color, and counting all colors in
+ * one pass for 4 and 32 colors. Needs the JVM to run with --add-modules jdk.incubator.vector,
+ * otherwise only the scalar kernel is measured.
+ *
+ * Usage: java --add-modules jdk.incubator.vector -cp jabeja.jar se.kth.jabeja.bench.ColorCounterBenchmark graphs/twitter.graph
+ */
+public class ColorCounterBenchmark {
+  final static Logger logger = Logger.getLogger(ColorCounterBenchmark.class);
+
+  private static final int MIN_DEGREE = 64;
+  private static final int[] NUM_COLORS = {4, 32};
+  private static final int WARMUP_SWEEPS = 200;
+  private static final int SWEEPS = 500;
+
+  public static void main(String[] args) {
+    ColorCounter scalar = ColorCounter.scalar();
+    ColorCounter vector = ColorCounter.vector();
+    if (vector == null) {
+      logger.warn("jdk.incubator.vector is not present, run with --add-modules jdk.incubator.vector");
+    }
+    for (String path : args) {
+      Graph graph = new GraphReader().readGraph(path);
+      Adjacency adjacency = graph.getAdjacency();
+
+      // the lists of the high degree vertices, one after the other
+      int[] vertices = new int[graph.size()];
+      int[] offsets = new int[graph.size() + 1];
+      int found = 0;
+      for (int v = 0; v < graph.size(); v++) {
+        if (adjacency.degree(v) >= MIN_DEGREE) {
+          vertices[found] = v;
+          offsets[found + 1] = offsets[found] + adjacency.degree(v);
+          found++;
+        }
+      }
+      int count = found;
+      int[] targets = new int[offsets[count]];
+      for (int i = 0; i < count; i++) {
+        int v = vertices[i];
+        for (int j = 0, degree = adjacency.degree(v); j < degree; j++) {
+          targets[offsets[i] + j] = adjacency.neighbour(v, j);
+        }
+      }
+      logger.info(String.format("%s: %d of %d vertices have degree >= %d, %d directed edges (%.0f per vertex)",
+              path, count, graph.size(), MIN_DEGREE, targets.length, (double) targets.length / Math.max(1, count)));
+      if (count == 0) {
+        continue;
+      }
+
+      for (int numColors : NUM_COLORS) {
+        int[] colors = new int[graph.size()];
+        Random random = new Random(0);
+        for (int v = 0; v < colors.length; v++) {
+          colors[v] = random.nextInt(numColors);
+        }
+        Kernel[] kernels = vector == null ? new Kernel[]{new Kernel("scalar", scalar)}
+                : new Kernel[]{new Kernel("scalar", scalar), new Kernel("vector", vector)};
+        if (vector != null) {
+          check(scalar, vector, vertices, offsets, targets, count, colors, numColors);
+        }
+        for (Kernel kernel : kernels) {
+          kernel.countRate = edgesPerSecond(() -> countSweep(kernel.counter, vertices, offsets, targets, count, colors),
+                  targets.length);
+          int[] counts = new int[count * numColors];
+          kernel.countAllRate = edgesPerSecond(() -> countAllSweep(kernel.counter, offsets, targets, count, colors,
+                  numColors, counts), targets.length);
+          logger.info(String.format("  %d colors, %s: count %.1f M edges/s (x%.2f), countAll %.1f M edges/s (x%.2f)",
+                  numColors, kernel.name, kernel.countRate / 1e6, kernel.countRate / kernels[0].countRate,
+                  kernel.countAllRate / 1e6, kernel.countAllRate / kernels[0].countAllRate));
+        }
+      }
+    }
+  }
+
+  private static class Kernel {
+    final String name;
+    final ColorCounter counter;
+    double countRate;
+    double countAllRate;
+
+    Kernel(String name, ColorCounter counter) {
+      this.name = name;
+      this.counter = counter;
+    }
+  }
+
+  private static void check(ColorCounter scalar, ColorCounter vector, int[] vertices, int[] offsets, int[] targets,
+                            int count, int[] colors, int numColors) {
+    int[] expected = new int[numColors];
+    int[] actual = new int[numColors];
+    for (int i = 0; i < count; i++) {
+      Arrays.fill(expected, 0);
+      Arrays.fill(actual, 0);
+      scalar.countAll(targets, offsets[i], offsets[i + 1], colors, numColors, expected, 0);
+      vector.countAll(targets, offsets[i], offsets[i + 1], colors, numColors, actual, 0);
+      int color = colors[vertices[i]];
+      if (!Arrays.equals(expected, actual) || expected[color] != vector.count(targets, offsets[i], offsets[i + 1],
+              colors, color)) {
+        throw new IllegalStateException("Kernels differ at vertex " + vertices[i]);
+      }
+    }
+  }
+
+  /**
+   * @return directed edges visited per second by the sweep
+   */
+  private static double edgesPerSecond(LongSupplier sweep, long edges) {
+    long sink = 0;
+    for (int s = 0; s < WARMUP_SWEEPS; s++) {
+      sink += sweep.getAsLong();
+    }
+    long start = System.nanoTime();
+    for (int s = 0; s < SWEEPS; s++) {
+      sink += sweep.getAsLong();
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) {
+      logger.trace(sink);
+    }
+    return (double) SWEEPS * edges / (elapsed / 1e9);
+  }
+
+  private static long countSweep(ColorCounter counter, int[] vertices, int[] offsets, int[] targets, int count,
+                                 int[] colors) {
+    long sum = 0;
+    for (int i = 0; i < count; i++) {
+      sum += counter.count(targets, offsets[i], offsets[i + 1], colors, colors[vertices[i]]);
+    }
+    return sum;
+  }
+
+  private static long countAllSweep(ColorCounter counter, int[] offsets, int[] targets, int count, int[] colors,
+                                    int numColors, int[] counts) {
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < count; i++) {
+      counter.countAll(targets, offsets[i], offsets[i + 1], colors, numColors, counts, i * numColors);
+    }
+    return counts[0];
+  }
+}
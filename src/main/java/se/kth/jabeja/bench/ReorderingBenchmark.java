@@ -0,0 +1,87 @@
+package se.kth.jabeja.bench;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.VertexOrdering;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.CompressedAdjacency;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.Reordering;
+import se.kth.jabeja.io.GraphReader;
+
+import java.util.Random;
+
+/**
+ * Compares the vertex orderings: time to reorder, mean distance between the indices of
+ * neighbours (a proxy for the cache lines touched per neighbour), the size of the
+ * {@link CompressedAdjacency} and the throughput of getDegree-style color counting.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.bench.ReorderingBenchmark graphs/twitter.graph graphs/3elt.graph
+ */
+public class ReorderingBenchmark {
+  final static Logger logger = Logger.getLogger(ReorderingBenchmark.class);
+
+  private static final int NUM_COLORS = 4;
+  private static final int WARMUP_SWEEPS = 20;
+  private static final int SWEEPS = 50;
+
+  public static void main(String[] args) {
+    for (String path : args) {
+      Graph input = new GraphReader().readGraph(path);
+      logger.info(String.format("%s: %d vertices, %d directed edges", path, input.size(), input.numTargets()));
+
+      for (VertexOrdering ordering : VertexOrdering.values()) {
+        long start = System.nanoTime();
+        Graph graph = Reordering.apply(input, ordering);
+        long reorderMs = (System.nanoTime() - start) / 1000000;
+
+        Adjacency adjacency = graph.getAdjacency();
+        int[] colors = new int[graph.size()];
+        Random random = new Random(0);
+        for (int v = 0; v < colors.length; v++) {
+          colors[v] = random.nextInt(NUM_COLORS);
+        }
+        logger.info(String.format("  %-7s %6d ms, mean neighbour distance %10.1f, compressed %.2f bytes/edge, %.1f M edges/s",
+                ordering, reorderMs, meanDistance(adjacency),
+                (double) CompressedAdjacency.of(adjacency).sizeInBytes() / adjacency.numTargets(),
+                edgesPerSecond(adjacency, colors) / 1e6));
+      }
+    }
+  }
+
+  private static double meanDistance(Adjacency adjacency) {
+    double sum = 0;
+    for (int v = 0; v < adjacency.size(); v++) {
+      for (int i = 0, degree = adjacency.degree(v); i < degree; i++) {
+        sum += Math.abs(adjacency.neighbour(v, i) - v);
+      }
+    }
+    return sum / adjacency.numTargets();
+  }
+
+  /**
+   * @return directed edges visited per second while counting the neighbours of each vertex with its own color
+   */
+  private static double edgesPerSecond(Adjacency adjacency, int[] colors) {
+    long sink = 0;
+    for (int s = 0; s < WARMUP_SWEEPS; s++) {
+      sink += sweep(adjacency, colors);
+    }
+    long start = System.nanoTime();
+    for (int s = 0; s < SWEEPS; s++) {
+      sink += sweep(adjacency, colors);
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) {
+      logger.trace(sink);
+    }
+    return (double) SWEEPS * adjacency.numTargets() / (elapsed / 1e9);
+  }
+
+  private static long sweep(Adjacency adjacency, int[] colors) {
+    long sum = 0;
+    for (int v = 0; v < adjacency.size(); v++) {
+      sum += adjacency.countColor(v, colors, colors[v]);
+    }
+    return sum;
+  }
+}
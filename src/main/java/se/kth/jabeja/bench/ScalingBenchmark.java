@@ -0,0 +1,47 @@
+package se.kth.jabeja.bench;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.Jabeja;
+import se.kth.jabeja.Result;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.IOException;
+
+/**
+ * Rounds per second of a single run against the number of threads working on it, doubling
+ * from one thread up to -threads. Takes the same arguments as the main application; the
+ * balance invariant is checked by the engine after every parallel round.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.bench.ScalingBenchmark -graph graphs/twitter.graph -rounds 100 -threads 8
+ */
+public class ScalingBenchmark {
+  final static Logger logger = Logger.getLogger(ScalingBenchmark.class);
+
+  public static void main(String[] args) throws IOException {
+    Config config = new CLI().parseArgs(args);
+    GraphReader reader = new GraphReader();
+    Graph graph = reader.readGraph(config.getGraphFilePath(), config.getGraphFormat(), config.getVertexOrdering(),
+            config.getAdjacencyLayout());
+
+    double baseline = 0;
+    for (int threads = 1; threads <= config.getThreads(); threads *= 2) {
+      Config runConfig = config.copy().setThreads(threads);
+      // every thread count starts from the same coloring
+      SplitMix64 random = new SplitMix64(config.getSeed());
+      Jabeja host = new Jabeja(reader.colorGraph(graph, config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+              random, config.getInitPartition()), runConfig, 0, random);
+      long start = System.nanoTime();
+      Result result = host.startJabeja(null);
+      double roundsPerSecond = config.getRounds() / ((System.nanoTime() - start) / 1e9);
+      if (threads == 1) {
+        baseline = roundsPerSecond;
+      }
+      logger.info(String.format("threads: %2d, %8.2f rounds/s, speedup %.2f, edge cut: %d", threads, roundsPerSecond,
+              roundsPerSecond / baseline, (int) result.getEdgeCut()[config.getRounds() - 1]));
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the neighbour lists are held in memory once the graph is loaded.
+ */
+public enum AdjacencyLayout {
+    /**
+     * As read: plain CSR arrays, or the mapped file for binary graphs
+     */
+    CSR,
+    /**
+     * Sorted, gap and varint encoded lists, see CompressedAdjacency
+     */
+    COMPRESSED,
+}
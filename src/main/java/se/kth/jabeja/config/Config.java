@@ -17,6 +17,36 @@ public class Config {
   private Double alpha;
   private AnnealingType annealingType;
   private Integer restartAtRound;
+  private GraphFormat graphFormat;
+  private AdjacencyLayout adjacencyLayout;
+  private VertexOrdering vertexOrdering;
+  private VisitOrder visitOrder;
+  private Boolean verifyCounters;
+  private Integer threads;
+  private ExecutionMode executionMode;
+  private Integer shards;
+  private TransportType transport;
+  private Integer stopSwaps;
+  private Double stopEpsilon;
+  private Integer stopWindow;
+  private Integer stopFrozen;
+  private Boolean activeSet;
+  private Integer fullSweepEvery;
+  private Boolean multilevel;
+  private Integer coarsenTo;
+  private Integer refineRounds;
+  private String deltas;
+  private Integer deltaRounds;
+  private Double migrationPenalty;
+  private Integer checkpointEvery;
+  private Boolean resume;
+  private String initPartition;
+  private Boolean gainBuckets;
+  private String sweep;
+  private Integer sweepThreads;
+  private Boolean race;
+  private Integer raceEta;
+  private Integer raceFirstRung;
 
   public Config setAlpha(Double alpha) {
     this.alpha = alpha;
@@ -88,6 +118,156 @@ public class Config {
     return this;
   }
 
+  public Config setGraphFormat(GraphFormat graphFormat) {
+    this.graphFormat = graphFormat;
+    return this;
+  }
+
+  public Config setAdjacencyLayout(AdjacencyLayout adjacencyLayout) {
+    this.adjacencyLayout = adjacencyLayout;
+    return this;
+  }
+
+  public Config setVertexOrdering(VertexOrdering vertexOrdering) {
+    this.vertexOrdering = vertexOrdering;
+    return this;
+  }
+
+  public Config setVisitOrder(VisitOrder visitOrder) {
+    this.visitOrder = visitOrder;
+    return this;
+  }
+
+  public Config setVerifyCounters(Boolean verifyCounters) {
+    this.verifyCounters = verifyCounters;
+    return this;
+  }
+
+  public Config setThreads(Integer threads) {
+    this.threads = threads;
+    return this;
+  }
+
+  public Config setExecutionMode(ExecutionMode executionMode) {
+    this.executionMode = executionMode;
+    return this;
+  }
+
+  public Config setShards(Integer shards) {
+    this.shards = shards;
+    return this;
+  }
+
+  public Config setTransport(TransportType transport) {
+    this.transport = transport;
+    return this;
+  }
+
+  public Config setStopSwaps(Integer stopSwaps) {
+    this.stopSwaps = stopSwaps;
+    return this;
+  }
+
+  public Config setStopEpsilon(Double stopEpsilon) {
+    this.stopEpsilon = stopEpsilon;
+    return this;
+  }
+
+  public Config setStopWindow(Integer stopWindow) {
+    this.stopWindow = stopWindow;
+    return this;
+  }
+
+  public Config setStopFrozen(Integer stopFrozen) {
+    this.stopFrozen = stopFrozen;
+    return this;
+  }
+
+  public Config setActiveSet(Boolean activeSet) {
+    this.activeSet = activeSet;
+    return this;
+  }
+
+  public Config setFullSweepEvery(Integer fullSweepEvery) {
+    this.fullSweepEvery = fullSweepEvery;
+    return this;
+  }
+
+  public Config setMultilevel(Boolean multilevel) {
+    this.multilevel = multilevel;
+    return this;
+  }
+
+  public Config setCoarsenTo(Integer coarsenTo) {
+    this.coarsenTo = coarsenTo;
+    return this;
+  }
+
+  public Config setRefineRounds(Integer refineRounds) {
+    this.refineRounds = refineRounds;
+    return this;
+  }
+
+  public Config setDeltas(String deltas) {
+    this.deltas = deltas;
+    return this;
+  }
+
+  public Config setDeltaRounds(Integer deltaRounds) {
+    this.deltaRounds = deltaRounds;
+    return this;
+  }
+
+  public Config setMigrationPenalty(Double migrationPenalty) {
+    this.migrationPenalty = migrationPenalty;
+    return this;
+  }
+
+  public Config setCheckpointEvery(Integer checkpointEvery) {
+    this.checkpointEvery = checkpointEvery;
+    return this;
+  }
+
+  public Config setResume(Boolean resume) {
+    this.resume = resume;
+    return this;
+  }
+
+  public Config setInitPartition(String initPartition) {
+    this.initPartition = initPartition;
+    return this;
+  }
+
+  public Config setGainBuckets(Boolean gainBuckets) {
+    this.gainBuckets = gainBuckets;
+    return this;
+  }
+
+  public Config setSweep(String sweep) {
+    this.sweep = sweep;
+    return this;
+  }
+
+  public Config setSweepThreads(Integer sweepThreads) {
+    this.sweepThreads = sweepThreads;
+    return this;
+  }
+
+  public Config setRace(Boolean race) {
+    this.race = race;
+    return this;
+  }
+
+  public Config setRaceEta(Integer raceEta) {
+    this.raceEta = raceEta;
+    return this;
+  }
+
+  public Config setRaceFirstRung(Integer raceFirstRung) {
+    this.raceFirstRung = raceFirstRung;
+    return this;
+  }
+
   public Integer getNumPartitions() {
     if (numPartitions == null) {
       throw new NullPointerException("Num partitions is not set");
@@ -184,6 +364,216 @@ public class Config {
     return this.restartAtRound;
   }
 
+  public GraphFormat getGraphFormat() {
+    if (graphFormat == null) {
+      throw new NullPointerException("Graph format is not set");
+    }
+    return graphFormat;
+  }
+
+  public AdjacencyLayout getAdjacencyLayout() {
+    if (adjacencyLayout == null) {
+      throw new NullPointerException("Adjacency layout is not set");
+    }
+    return adjacencyLayout;
+  }
+
+  public VertexOrdering getVertexOrdering() {
+    if (vertexOrdering == null) {
+      throw new NullPointerException("Vertex ordering is not set");
+    }
+    return vertexOrdering;
+  }
+
+  public VisitOrder getVisitOrder() {
+    if (visitOrder == null) {
+      throw new NullPointerException("Visit order is not set");
+    }
+    return visitOrder;
+  }
+
+  public Boolean getVerifyCounters() {
+    if (verifyCounters == null) {
+      throw new NullPointerException("Verify counters is not set");
+    }
+    return verifyCounters;
+  }
+
+  public Integer getThreads() {
+    if (threads == null) {
+      throw new NullPointerException("Threads is not set");
+    }
+    return threads;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    if (executionMode == null) {
+      throw new NullPointerException("Execution mode is not set");
+    }
+    return executionMode;
+  }
+
+  public Integer getShards() {
+    if (shards == null) {
+      throw new NullPointerException("Shards is not set");
+    }
+    return shards;
+  }
+
+  public TransportType getTransport() {
+    if (transport == null) {
+      throw new NullPointerException("Transport is not set");
+    }
+    return transport;
+  }
+
+  public Integer getStopSwaps() {
+    if (stopSwaps == null) {
+      throw new NullPointerException("Stop swaps is not set");
+    }
+    return stopSwaps;
+  }
+
+  public Double getStopEpsilon() {
+    if (stopEpsilon == null) {
+      throw new NullPointerException("Stop epsilon is not set");
+    }
+    return stopEpsilon;
+  }
+
+  public Integer getStopWindow() {
+    if (stopWindow == null) {
+      throw new NullPointerException("Stop window is not set");
+    }
+    return stopWindow;
+  }
+
+  public Integer getStopFrozen() {
+    if (stopFrozen == null) {
+      throw new NullPointerException("Stop frozen is not set");
+    }
+    return stopFrozen;
+  }
+
+  public Boolean getActiveSet() {
+    if (activeSet == null) {
+      throw new NullPointerException("Active set is not set");
+    }
+    return activeSet;
+  }
+
+  public Integer getFullSweepEvery() {
+    if (fullSweepEvery == null) {
+      throw new NullPointerException("Full sweep every is not set");
+    }
+    return fullSweepEvery;
+  }
+
+  public Boolean getMultilevel() {
+    if (multilevel == null) {
+      throw new NullPointerException("Multilevel is not set");
+    }
+    return multilevel;
+  }
+
+  public Integer getCoarsenTo() {
+    if (coarsenTo == null) {
+      throw new NullPointerException("Coarsen to is not set");
+    }
+    return coarsenTo;
+  }
+
+  public Integer getRefineRounds() {
+    if (refineRounds == null) {
+      throw new NullPointerException("Refine rounds is not set");
+    }
+    return refineRounds;
+  }
+
+  public String getDeltas() {
+    if (deltas == null) {
+      throw new NullPointerException("Deltas is not set");
+    }
+    return deltas;
+  }
+
+  public Integer getDeltaRounds() {
+    if (deltaRounds == null) {
+      throw new NullPointerException("Delta rounds is not set");
+    }
+    return deltaRounds;
+  }
+
+  public Double getMigrationPenalty() {
+    if (migrationPenalty == null) {
+      throw new NullPointerException("Migration penalty is not set");
+    }
+    return migrationPenalty;
+  }
+
+  public Integer getCheckpointEvery() {
+    if (checkpointEvery == null) {
+      throw new NullPointerException("Checkpoint every is not set");
+    }
+    return checkpointEvery;
+  }
+
+  public Boolean getResume() {
+    if (resume == null) {
+      throw new NullPointerException("Resume is not set");
+    }
+    return resume;
+  }
+
+  public String getInitPartition() {
+    if (initPartition == null) {
+      throw new NullPointerException("Init partition is not set");
+    }
+    return initPartition;
+  }
+
+  public Boolean getGainBuckets() {
+    if (gainBuckets == null) {
+      throw new NullPointerException("Gain buckets is not set");
+    }
+    return gainBuckets;
+  }
+
+  public String getSweep() {
+    if (sweep == null) {
+      throw new NullPointerException("Sweep is not set");
+    }
+    return sweep;
+  }
+
+  public Integer getSweepThreads() {
+    if (sweepThreads == null) {
+      throw new NullPointerException("Sweep threads is not set");
+    }
+    return sweepThreads;
+  }
+
+  public Boolean getRace() {
+    if (race == null) {
+      throw new NullPointerException("Race is not set");
+    }
+    return race;
+  }
+
+  public Integer getRaceEta() {
+    if (raceEta == null) {
+      throw new NullPointerException("Race eta is not set");
+    }
+    return raceEta;
+  }
+
+  public Integer getRaceFirstRung() {
+    if (raceFirstRung == null) {
+      throw new NullPointerException("Race first rung is not set");
+    }
+    return raceFirstRung;
+  }
+
   public Config createJabejaConfig() {
     return new Config();
   }
@@ -204,6 +594,36 @@ public class Config {
     c.setAlpha(this.alpha);
     c.setAnnealingType(this.annealingType);
     c.setRestartAtRound(this.restartAtRound);
+    c.setGraphFormat(this.graphFormat);
+    c.setAdjacencyLayout(this.adjacencyLayout);
+    c.setVertexOrdering(this.vertexOrdering);
+    c.setVisitOrder(this.visitOrder);
+    c.setVerifyCounters(this.verifyCounters);
+    c.setThreads(this.threads);
+    c.setExecutionMode(this.executionMode);
+    c.setShards(this.shards);
+    c.setTransport(this.transport);
+    c.setStopSwaps(this.stopSwaps);
+    c.setStopEpsilon(this.stopEpsilon);
+    c.setStopWindow(this.stopWindow);
+    c.setStopFrozen(this.stopFrozen);
+    c.setActiveSet(this.activeSet);
+    c.setFullSweepEvery(this.fullSweepEvery);
+    c.setMultilevel(this.multilevel);
+    c.setCoarsenTo(this.coarsenTo);
+    c.setRefineRounds(this.refineRounds);
+    c.setDeltas(this.deltas);
+    c.setDeltaRounds(this.deltaRounds);
+    c.setMigrationPenalty(this.migrationPenalty);
+    c.setCheckpointEvery(this.checkpointEvery);
+    c.setResume(this.resume);
+    c.setInitPartition(this.initPartition);
+    c.setGainBuckets(this.gainBuckets);
+    c.setSweep(this.sweep);
+    c.setSweepThreads(this.sweepThreads);
+    c.setRace(this.race);
+    c.setRaceEta(this.raceEta);
+    c.setRaceFirstRung(this.raceFirstRung);
     return c;
   }
 
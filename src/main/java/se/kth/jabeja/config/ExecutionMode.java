@@ -0,0 +1,23 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the vertices of a round are processed.
+ */
+public enum ExecutionMode {
+    /**
+     * Every swap is seen immediately by the vertices processed after it. With several threads,
+     * swaps are applied concurrently with striped locks and the outcome depends on the schedule.
+     */
+    ASYNCHRONOUS,
+    /**
+     * Bulk-synchronous phases of independent vertices: proposals are computed in parallel against
+     * the colors of the previous phase and committed as a matching. Deterministic for a given seed,
+     * whatever the number of threads.
+     */
+    BSP,
+    /**
+     * Vertices are split across shards that own their colors and only exchange messages, as in
+     * a decentralised deployment. Identical for a seed whatever the number of shards.
+     */
+    SHARDED,
+}
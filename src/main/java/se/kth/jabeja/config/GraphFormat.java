@@ -0,0 +1,29 @@
+package se.kth.jabeja.config;
+
+/**
+ * Format of the input graph file. Any of them may be gzip compressed.
+ */
+public enum GraphFormat {
+    /**
+     * Detect the format from the content of the file
+     */
+    AUTO,
+    /**
+     * Jostle/METIS adjacency lists, one line per vertex after a "nodes edges [fmt]" header
+     */
+    JOSTLE,
+    /**
+     * One "source target" pair per line, directed or undirected. Every edge is
+     * added in both directions and duplicates are removed.
+     */
+    EDGE_LIST,
+    /**
+     * Same as EDGE_LIST, but the file already lists every edge in both directions,
+     * so the edges are only deduplicated
+     */
+    EDGE_LIST_SYMMETRIC,
+    /**
+     * The memory mapped binary format written by the GraphConverter
+     */
+    BINARY,
+}
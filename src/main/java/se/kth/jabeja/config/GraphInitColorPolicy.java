@@ -22,7 +22,30 @@ public enum GraphInitColorPolicy {
      * then first N/K nodes are assigned the same color and
      * then next N/K nodes are assigned the other color, so on
      */
-    BATCH("BATCH");
+    BATCH("BATCH"),
+    /**
+     * Stream the nodes and assign each the color with the most
+     * already colored neighbours, weighted by the room left in the color
+     * (Linear Deterministic Greedy). Colors get the ROUND_ROBIN sizes
+     */
+    LDG("LDG"),
+    /**
+     * Stream the nodes and assign each the color with the most
+     * already colored neighbours minus a penalty growing with the
+     * size of the color (Fennel). Colors get the ROUND_ROBIN sizes
+     */
+    FENNEL("FENNEL"),
+    /**
+     * Grow the colors one after the other by breadth first search
+     * from the first node. Colors get the ROUND_ROBIN sizes
+     */
+    BFS("BFS"),
+    /**
+     * Read the colors from the partition file given by -initPartition,
+     * in the text or binary format of PartitionFile. With a low
+     * temperature Jabeja then only polishes the given partition
+     */
+    FROM_FILE("FROM_FILE");
 
     String name;
 
@@ -0,0 +1,15 @@
+package se.kth.jabeja.config;
+
+/**
+ * How the shards of a sharded run exchange their messages.
+ */
+public enum TransportType {
+    /**
+     * Shared mailboxes between threads of the same JVM
+     */
+    LOCAL,
+    /**
+     * TCP connections on the loopback interface, standing in for shards on separate machines
+     */
+    SOCKET,
+}
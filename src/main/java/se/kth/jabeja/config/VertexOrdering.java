@@ -0,0 +1,29 @@
+package se.kth.jabeja.config;
+
+/**
+ * Renumbering of the vertices before partitioning, to place vertices that are
+ * visited together close to each other in memory.
+ */
+public enum VertexOrdering {
+    /**
+     * Keep the order of the input file
+     */
+    NONE,
+    /**
+     * Breadth first search order, component by component
+     */
+    BFS,
+    /**
+     * Reverse Cuthill-McKee: BFS from a low degree vertex visiting neighbours by increasing degree, reversed
+     */
+    RCM,
+    /**
+     * By decreasing degree, so the hubs of power-law graphs share cache lines
+     */
+    DEGREE,
+    /**
+     * Greedy Gorder-like ordering that places next the vertex sharing the most neighbours
+     * with the last few placed vertices
+     */
+    GORDER,
+}
@@ -0,0 +1,19 @@
+package se.kth.jabeja.config;
+
+/**
+ * Order in which the vertices are visited within a round.
+ */
+public enum VisitOrder {
+    /**
+     * By increasing vertex index
+     */
+    SEQUENTIAL,
+    /**
+     * A new random permutation every round
+     */
+    SHUFFLED,
+    /**
+     * By decreasing degree
+     */
+    DEGREE_DESC,
+}
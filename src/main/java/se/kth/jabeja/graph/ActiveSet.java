@@ -0,0 +1,114 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Worklist of the vertices to visit in the next round: those whose own color or the color of a
+ * neighbour changed since they were last visited. Backed by two queues of capacity size() and a
+ * bitset of the queued vertices, so adding a vertex and moving to the next round never allocate,
+ * and a round costs time in the number of queued vertices rather than the size of the graph.
+ */
+public class ActiveSet {
+  private final Adjacency.Cursor cursor;
+  private int[] current;
+  private int currentSize;
+  private int[] next;
+  private int nextSize;
+  /**
+   * bit v is set if v is queued for the next round
+   */
+  private final long[] queued;
+
+  public ActiveSet(Adjacency adjacency) {
+    this(adjacency, adjacency.size());
+  }
+
+  /**
+   * @param capacity number of vertices the set can hold, at least adjacency.size()
+   */
+  public ActiveSet(Adjacency adjacency, int capacity) {
+    this.cursor = adjacency.cursor();
+    this.current = new int[capacity];
+    this.next = new int[capacity];
+    this.queued = new long[(capacity + 63) >>> 6];
+  }
+
+  /**
+   * @return number of vertices the set can hold
+   */
+  public int capacity() {
+    return current.length;
+  }
+
+  /**
+   * Queues all vertices for the next round, in the given order.
+   *
+   * @param order permutation of the vertices
+   */
+  public void activateAll(int[] order) {
+    System.arraycopy(order, 0, next, 0, order.length);
+    nextSize = order.length;
+    Arrays.fill(queued, -1L);
+  }
+
+  /**
+   * Queues v, whose color changed, and its neighbours for the next round.
+   */
+  public void touch(int v) {
+    add(v);
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      add(cursor.next());
+    }
+  }
+
+  /**
+   * Queues v alone for the next round, e.g. to restore a saved queue.
+   */
+  public void queue(int v) {
+    add(v);
+  }
+
+  /**
+   * Copies the vertices queued for the next round, in order.
+   *
+   * @return their number
+   */
+  public int copyQueued(int[] into) {
+    System.arraycopy(next, 0, into, 0, nextSize);
+    return nextSize;
+  }
+
+  private void add(int v) {
+    long bit = 1L << v;
+    if ((queued[v >>> 6] & bit) == 0) {
+      queued[v >>> 6] |= bit;
+      next[nextSize++] = v;
+    }
+  }
+
+  /**
+   * Starts a round with the vertices queued so far; vertices touched from now on are queued
+   * for the round after it.
+   *
+   * @return number of vertices to visit in the round
+   */
+  public int advance() {
+    int[] swap = current;
+    current = next;
+    currentSize = nextSize;
+    next = swap;
+    nextSize = 0;
+    for (int i = 0; i < currentSize; i++) {
+      int v = current[i];
+      queued[v >>> 6] &= ~(1L << v);
+    }
+    return currentSize;
+  }
+
+  /**
+   * @return the i-th vertex to visit in the current round, 0 &lt;= i &lt; advance()
+   */
+  public int get(int i) {
+    return current[i];
+  }
+}
@@ -0,0 +1,128 @@
+package se.kth.jabeja.graph;
+
+/**
+ * Read-only adjacency structure of a graph with dense vertex indices in [0, size()).
+ * Implementations differ only in where the neighbour lists live (heap arrays,
+ * memory mapped files, ...).
+ */
+public interface Adjacency {
+
+  int size();
+
+  /**
+   * @return number of directed adjacency entries, i.e. twice the number of undirected edges
+   */
+  long numTargets();
+
+  int degree(int v);
+
+  /**
+   * @return dense index of the i-th neighbour of v, 0 &lt;= i &lt; degree(v)
+   */
+  int neighbour(int v, int i);
+
+  /**
+   * Copies the neighbours of v into out, at most out.length of them.
+   *
+   * @return degree(v)
+   */
+  default int neighbours(int v, int[] out) {
+    int degree = degree(v);
+    for (int i = 0, count = Math.min(degree, out.length); i < count; i++) {
+      out[i] = neighbour(v, i);
+    }
+    return degree;
+  }
+
+  /**
+   * Replaces every position in positions[from, to) by the neighbour of v at that position.
+   *
+   * @param positions positions in the neighbour list of v, in any order
+   */
+  default void neighboursAt(int v, int[] positions, int from, int to) {
+    for (int i = from; i < to; i++) {
+      positions[i] = neighbour(v, positions[i]);
+    }
+  }
+
+  boolean hasWeights();
+
+  /**
+   * @return weight of the edge to the i-th neighbour of v, 1 if the graph is unweighted
+   */
+  int weight(int v, int i);
+
+  /**
+   * @return how many neighbours u of v have colors[u] == colorId
+   */
+  int countColor(int v, int[] colors, int colorId);
+
+  /**
+   * Counts the colors of all neighbours of v in one pass: adds one to counts[offset + colors[u]]
+   * for every neighbour u, whatever the weight of the edge.
+   *
+   * @param numColors colors are in [0, numColors)
+   */
+  default void countColors(int v, int[] colors, int numColors, int[] counts, int offset) {
+    for (int i = 0, degree = degree(v); i < degree; i++) {
+      counts[offset + colors[neighbour(v, i)]]++;
+    }
+  }
+
+  /**
+   * @return approximate size of the structure in bytes, on the heap or mapped
+   */
+  long sizeInBytes();
+
+  /**
+   * @return a new cursor over the neighbour lists, to be reused by one thread
+   */
+  default Cursor cursor() {
+    return new Cursor() {
+      private int v;
+      private int i;
+
+      @Override
+      public int start(int v) {
+        this.v = v;
+        this.i = -1;
+        return degree(v);
+      }
+
+      @Override
+      public int next() {
+        return neighbour(v, ++i);
+      }
+
+      @Override
+      public int weight() {
+        return Adjacency.this.weight(v, i);
+      }
+    };
+  }
+
+  /**
+   * Walks a neighbour list in order, with the weights of its edges. Lists that are decoded
+   * sequentially, as in the {@link CompressedAdjacency}, are decoded once per walk, whereas
+   * {@link #neighbour(int, int)} may decode them up to the i-th entry on every call.
+   * Not thread safe.
+   */
+  interface Cursor {
+    /**
+     * Moves to the start of the neighbour list of v.
+     *
+     * @return degree(v), the number of neighbours next() returns
+     */
+    int start(int v);
+
+    /**
+     * @return dense index of the next neighbour
+     */
+    int next();
+
+    /**
+     * @return weight of the edge to the neighbour last returned by next(), 1 if the graph is unweighted
+     */
+    int weight();
+  }
+}
@@ -0,0 +1,132 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * One level of a multilevel partitioning: a coarse graph in which every vertex stands for one
+ * or two matched vertices of the fine graph. The weight of a coarse vertex is the total weight
+ * of its fine vertices, and the weight of a coarse edge the total weight of the fine edges it
+ * stands for, so the weighted edge cut of a coarse coloring equals the edge cut of its
+ * projection on the fine graph.
+ */
+public class Coarsening {
+
+  private final Graph fine;
+  private final Graph coarse;
+  /**
+   * map[v] is the coarse vertex of the fine vertex v
+   */
+  private final int[] map;
+
+  private Coarsening(Graph fine, Graph coarse, int[] map) {
+    this.fine = fine;
+    this.coarse = coarse;
+    this.map = map;
+  }
+
+  /**
+   * Heavy-edge matching: visits the vertices in the given order and matches every unmatched
+   * vertex with the unmatched neighbour it shares the heaviest edge with, unless their weights
+   * together would exceed maxVertexWeight. A vertex without such a neighbour stays on its own.
+   *
+   * @param order           permutation of the vertices of fine, usually random
+   * @param maxVertexWeight maximum weight of a coarse vertex
+   * @return the coarse level
+   */
+  public static Coarsening heavyEdgeMatching(Graph fine, int[] order, int maxVertexWeight) {
+    Adjacency adjacency = fine.getAdjacency();
+    Adjacency.Cursor cursor = adjacency.cursor();
+    int n = fine.size();
+    int[] match = new int[n];
+    Arrays.fill(match, -1);
+    int[] map = new int[n];
+    // first[c] is the vertex that formed coarse vertex c
+    int[] first = new int[n];
+    int numCoarse = 0;
+    for (int v : order) {
+      if (match[v] != -1) {
+        continue;
+      }
+      int best = v;
+      int bestWeight = 0;
+      int weight = fine.vertexWeight(v);
+      for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+        int u = cursor.next();
+        if (u != v && match[u] == -1 && cursor.weight() > bestWeight
+                && weight + fine.vertexWeight(u) <= maxVertexWeight) {
+          best = u;
+          bestWeight = cursor.weight();
+        }
+      }
+      match[v] = best;
+      match[best] = v;
+      map[v] = numCoarse;
+      map[best] = numCoarse;
+      first[numCoarse++] = v;
+    }
+
+    long numTargets = adjacency.numTargets();
+    if (numTargets > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many edges to coarsen on the heap: " + numTargets);
+    }
+    int[] offsets = new int[numCoarse + 1];
+    int[] targets = new int[(int) numTargets];
+    int[] weights = new int[targets.length];
+    int[] vertexWeights = new int[numCoarse];
+    // position[c] is where the edge to c is in the row being built, if mark[c] is that row
+    int[] position = new int[numCoarse];
+    int[] mark = new int[numCoarse];
+    Arrays.fill(mark, -1);
+    int size = 0;
+    for (int c = 0; c < numCoarse; c++) {
+      int a = first[c];
+      int b = match[a];
+      for (int x = a; ; x = b) {
+        vertexWeights[c] += fine.vertexWeight(x);
+        for (int i = 0, degree = cursor.start(x); i < degree; i++) {
+          int target = map[cursor.next()];
+          if (target == c) {
+            continue;
+          }
+          if (mark[target] != c) {
+            mark[target] = c;
+            position[target] = size;
+            targets[size++] = target;
+          }
+          weights[position[target]] += cursor.weight();
+        }
+        if (x == b) {
+          break;
+        }
+      }
+      offsets[c + 1] = size;
+    }
+
+    int[] ids = new int[numCoarse];
+    for (int c = 0; c < numCoarse; c++) {
+      ids[c] = c;
+    }
+    Graph coarse = new Graph(new CsrAdjacency(offsets, Arrays.copyOf(targets, size), Arrays.copyOf(weights, size)),
+            ids, vertexWeights);
+    return new Coarsening(fine, coarse, map);
+  }
+
+  public Graph getFine() {
+    return fine;
+  }
+
+  public Graph getCoarse() {
+    return coarse;
+  }
+
+  /**
+   * @return the color of every fine vertex, the color of its coarse vertex
+   */
+  public int[] project(Coloring coarseColoring) {
+    int[] colors = new int[map.length];
+    for (int v = 0; v < map.length; v++) {
+      colors[v] = coarseColoring.getColor(map[v]);
+    }
+    return colors;
+  }
+}
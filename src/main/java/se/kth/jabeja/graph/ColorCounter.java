@@ -0,0 +1,75 @@
+package se.kth.jabeja.graph;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counts the colors of neighbour lists held in heap arrays, the neighbours being
+ * targets[from, to). This class is the scalar kernel; {@link #get()} returns the
+ * {@link VectorColorCounter} instead when the jdk.incubator.vector module is present,
+ * i.e. when the JVM runs with --add-modules jdk.incubator.vector.
+ */
+public class ColorCounter {
+  final static Logger logger = Logger.getLogger(ColorCounter.class);
+
+  private static final ColorCounter SCALAR = new ColorCounter();
+  private static final ColorCounter VECTOR = loadVector();
+  private static final ColorCounter DEFAULT = VECTOR != null ? VECTOR : SCALAR;
+
+  ColorCounter() {
+  }
+
+  private static ColorCounter loadVector() {
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      return null;
+    }
+    try {
+      return (ColorCounter) Class.forName("se.kth.jabeja.graph.VectorColorCounter").getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      logger.warn("Unable to load the vector color counter, counting colors with scalar code", e);
+      return null;
+    }
+  }
+
+  /**
+   * @return the vector kernel if available, the scalar one otherwise
+   */
+  public static ColorCounter get() {
+    return DEFAULT;
+  }
+
+  public static ColorCounter scalar() {
+    return SCALAR;
+  }
+
+  /**
+   * @return the vector kernel, null without the jdk.incubator.vector module
+   */
+  public static ColorCounter vector() {
+    return VECTOR;
+  }
+
+  /**
+   * @return how many of targets[from, to) have colors[target] == color
+   */
+  public int count(int[] targets, int from, int to, int[] colors, int color) {
+    int count = 0;
+    for (int e = from; e < to; e++) {
+      if (colors[targets[e]] == color) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Adds one to counts[offset + colors[target]] for every target in targets[from, to).
+   *
+   * @param numColors colors are in [0, numColors)
+   */
+  public void countAll(int[] targets, int from, int to, int[] colors, int numColors, int[] counts, int offset) {
+    for (int e = from; e < to; e++) {
+      counts[offset + colors[targets[e]]]++;
+    }
+  }
+}
@@ -0,0 +1,494 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.Node;
+
+import java.util.Arrays;
+
+/**
+ * The colors of one run over a shared {@link Graph}. Every run owns its colors, the
+ * initial colors are only read and may therefore be shared between runs.
+ *
+ * Besides the colors, a histogram holds for every vertex how many of its neighbours have
+ * each color, so {@link #countColor(int, int)} is a table lookup. Recoloring a vertex
+ * updates the histogram rows of its neighbours only.
+ *
+ * The edge cut and the number of migrations (vertices not in their initial color) are
+ * maintained the same way, from the histogram row of the recolored vertex. If the graph
+ * has edge weights, e.g. a coarsened graph, the histogram and the edge cut add up the
+ * weights of the edges rather than counting them.
+ *
+ * A {@link DynamicGraph} changes the graph of its coloring with package private methods that
+ * keep the histogram and the counters exact; the arrays then have room for more vertices.
+ *
+ * {@link #setColor(int, int)} is for a single thread. Concurrent workers use
+ * {@link #swap(int, int, int, int, Counters)}, which keeps the histogram exact and collects the
+ * changes of the edge cut and migrations in the {@link Counters} of the worker, added up by
+ * {@link #commit(Counters[])} once the workers are done.
+ */
+public class Coloring {
+
+  private static final int LOCK_STRIPES = 1 << 12;
+
+  private Graph graph;
+  private int[] colors;
+  private int[] initColors;
+  private final int numColors;
+  /**
+   * histogram[v * numColors + c] is the number of neighbours of v with color c
+   */
+  private int[] histogram;
+  /**
+   * Striped locks guarding the colors and histogram rows of the vertices during concurrent swaps
+   */
+  private final Object[] locks;
+  private final boolean weighted;
+  /**
+   * walks the neighbour lists for the single thread of {@link #setColor(int, int)}
+   */
+  private Adjacency.Cursor cursor;
+  private int edgeCut;
+  private int migrations;
+
+  /**
+   * @param initColors initial color of every vertex, never modified
+   */
+  public Coloring(Graph graph, int[] initColors) {
+    this(graph, initColors, maxColor(initColors) + 1);
+  }
+
+  /**
+   * @param initColors initial color of every vertex in [0, numColors), never modified
+   * @param numColors  number of colors, i.e. partitions
+   */
+  public Coloring(Graph graph, int[] initColors, int numColors) {
+    if (initColors.length != graph.size()) {
+      throw new IllegalArgumentException("Graph has " + graph.size() + " vertices, but got "
+              + initColors.length + " colors");
+    }
+    if ((long) graph.size() * numColors > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Color histogram of " + graph.size() + " vertices and "
+              + numColors + " colors does not fit in an array");
+    }
+    this.graph = graph;
+    this.initColors = initColors;
+    this.colors = initColors.clone();
+    this.numColors = numColors;
+    this.weighted = graph.getAdjacency().hasWeights();
+    this.cursor = graph.getAdjacency().cursor();
+    this.locks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+
+    this.histogram = new int[graph.size() * numColors];
+    for (int v = 0; v < colors.length; v++) {
+      countRow(v);
+    }
+    int[] counters = recount();
+    this.edgeCut = counters[0];
+    this.migrations = counters[1];
+  }
+
+  private static int maxColor(int[] colors) {
+    int max = 0;
+    for (int color : colors) {
+      if (color < 0) {
+        throw new IllegalArgumentException("Negative color: " + color);
+      }
+      max = Math.max(max, color);
+    }
+    return max;
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public int size() {
+    return graph.size();
+  }
+
+  public int getColor(int v) {
+    return colors[v];
+  }
+
+  public int getNumColors() {
+    return numColors;
+  }
+
+  /**
+   * Recolors v and moves v from its old to its new color in the histogram of every neighbour.
+   */
+  public void setColor(int v, int color) {
+    int old = colors[v];
+    if (old == color) {
+      return;
+    }
+    if (color < 0 || color >= numColors) {
+      throw new IllegalArgumentException("Color " + color + " is not in [0, " + numColors + ")");
+    }
+    colors[v] = color;
+    int selfLoops = moveInHistogram(v, old, color);
+
+    // edges to the old color become cut, edges to the new color are no longer cut
+    int row = v * numColors;
+    edgeCut += histogram[row + old] - histogram[row + color] + selfLoops;
+    if (old == initColors[v]) {
+      migrations++;
+    } else if (color == initColors[v]) {
+      migrations--;
+    }
+  }
+
+  /**
+   * Moves v from color old to color in the histogram rows of its neighbours.
+   *
+   * @return number, or weight, of the self loops of v
+   */
+  private int moveInHistogram(int v, int old, int color) {
+    Adjacency.Cursor cursor = this.cursor;
+    int selfLoops = 0;
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      int u = cursor.next();
+      int weight = weighted ? cursor.weight() : 1;
+      int row = u * numColors;
+      histogram[row + old] -= weight;
+      histogram[row + color] += weight;
+      if (u == v) {
+        selfLoops += weight;
+      }
+    }
+    return selfLoops;
+  }
+
+  /**
+   * Atomically swaps the colors of p and q, provided they still have the colors the swap was
+   * evaluated with. Safe to call from concurrent workers: the colors of p and q are only
+   * changed while holding their lock stripes, so the number of vertices of every color never
+   * changes. Workers must not mix this with {@link #setColor(int, int)}.
+   *
+   * The edge cut is twice the sum over all vertices v of the histogram entries of v for the
+   * colors other than that of v. Every change of a color or of a histogram row is made under the
+   * lock stripe of its vertex, which is where its change of that sum is read, into the counters
+   * of the worker; so the counters of all workers add up to the exact changes once they are done.
+   *
+   * @param counters of the calling worker, see {@link #commit(Counters[])}
+   * @return false if p or q has been recolored meanwhile, in which case nothing is changed
+   */
+  public boolean swap(int p, int q, int colorp, int colorq, Counters counters) {
+    int first = Math.min(p & (LOCK_STRIPES - 1), q & (LOCK_STRIPES - 1));
+    int second = Math.max(p & (LOCK_STRIPES - 1), q & (LOCK_STRIPES - 1));
+    // stripes are always locked in increasing order, so two swaps can not deadlock
+    synchronized (locks[first]) {
+      synchronized (locks[second]) {
+        if (colors[p] != colorp || colors[q] != colorq) {
+          return false;
+        }
+        if (colorp == colorq) {
+          // nothing to move, as with setColor to the same color
+          return true;
+        }
+        colors[p] = colorq;
+        colors[q] = colorp;
+        int rowp = p * numColors;
+        int rowq = q * numColors;
+        counters.grayLinks += histogram[rowp + colorp] - histogram[rowp + colorq]
+                + histogram[rowq + colorq] - histogram[rowq + colorp];
+        counters.migrations += migrated(p, colorp, colorq) + migrated(q, colorq, colorp);
+      }
+    }
+    moveInHistogramConcurrently(p, colorp, colorq, counters);
+    moveInHistogramConcurrently(q, colorq, colorp, counters);
+    return true;
+  }
+
+  /**
+   * @return the change of the migrations when v is recolored from old to color
+   */
+  private int migrated(int v, int old, int color) {
+    return old == initColors[v] ? 1 : color == initColors[v] ? -1 : 0;
+  }
+
+  /**
+   * Same as {@link #moveInHistogram(int, int, int)}, updating every row under the lock stripe of its vertex.
+   * Readers do not lock, they may see a row that is being updated.
+   */
+  private void moveInHistogramConcurrently(int v, int old, int color, Counters counters) {
+    Adjacency.Cursor cursor = counters.cursor;
+    long grayLinks = 0;
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      int u = cursor.next();
+      int weight = weighted ? cursor.weight() : 1;
+      int row = u * numColors;
+      synchronized (locks[u & (LOCK_STRIPES - 1)]) {
+        histogram[row + old] -= weight;
+        histogram[row + color] += weight;
+        // v moves from a link of u to another color to one of its own color, or the other way
+        int colorU = colors[u];
+        if (colorU == old) {
+          grayLinks += weight;
+        } else if (colorU == color) {
+          grayLinks -= weight;
+        }
+      }
+    }
+    counters.grayLinks += grayLinks;
+  }
+
+  /**
+   * @return counters for a concurrent worker, see {@link #swap(int, int, int, int, Counters)}
+   */
+  public Counters newCounters() {
+    return new Counters(graph.getAdjacency().cursor());
+  }
+
+  /**
+   * Adds the changes collected by the counters of all concurrent workers to the edge cut and
+   * migrations, once the workers are done, and resets the counters.
+   */
+  public void commit(Counters[] all) {
+    long grayLinks = 0;
+    for (Counters counters : all) {
+      grayLinks += counters.grayLinks;
+      migrations += counters.migrations;
+      counters.grayLinks = 0;
+      counters.migrations = 0;
+    }
+    edgeCut += (int) (grayLinks / 2);
+  }
+
+  /**
+   * Replaces the colors and the initial colors of all vertices, e.g. by those of a checkpoint,
+   * and rebuilds the histogram and the counters.
+   */
+  public void restore(int[] colors, int[] initColors) {
+    int n = size();
+    System.arraycopy(colors, 0, this.colors, 0, n);
+    System.arraycopy(initColors, 0, this.initColors, 0, n);
+    Arrays.fill(histogram, 0, n * numColors, 0);
+    for (int v = 0; v < n; v++) {
+      countRow(v);
+    }
+    int[] counters = recount();
+    edgeCut = counters[0];
+    migrations = counters[1];
+  }
+
+  /**
+   * @return number of vertices of every color, without the vertices of no color
+   */
+  public int[] colorSizes() {
+    int[] sizes = new int[numColors];
+    for (int v = 0, n = size(); v < n; v++) {
+      if (colors[v] != -1) {
+        sizes[colors[v]]++;
+      }
+    }
+    return sizes;
+  }
+
+  /**
+   * @return number, or weight, of the undirected edges between vertices of different colors
+   */
+  public int getEdgeCut() {
+    return edgeCut;
+  }
+
+  /**
+   * @return number of vertices whose color differs from their initial color
+   */
+  public int getMigrations() {
+    return migrations;
+  }
+
+  /**
+   * Counts the edge cut and the migrations with a full pass over all vertices and edges,
+   * to verify the incrementally maintained counters.
+   *
+   * @return {edge cut, migrations}
+   */
+  public int[] recount() {
+    long grayLinks = 0;
+    int migrated = 0;
+    for (int v = 0, n = size(); v < n; v++) {
+      if (colors[v] != initColors[v]) {
+        migrated++;
+      }
+      grayLinks += grayLinks(v);
+    }
+    return new int[]{(int) (grayLinks / 2), migrated};
+  }
+
+  /**
+   * Adds the colors of the neighbours of v to its empty histogram row, in one pass of the color
+   * counting kernel if the graph is unweighted.
+   */
+  private void countRow(int v) {
+    Adjacency adjacency = graph.getAdjacency();
+    int row = v * numColors;
+    if (!weighted) {
+      adjacency.countColors(v, colors, numColors, histogram, row);
+      return;
+    }
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      histogram[row + colors[cursor.next()]] += cursor.weight();
+    }
+  }
+
+  /**
+   * @return number, or weight, of the edges of v to other colors
+   */
+  private long grayLinks(int v) {
+    int color = colors[v];
+    if (!weighted) {
+      Adjacency adjacency = graph.getAdjacency();
+      return adjacency.degree(v) - adjacency.countColor(v, colors, color);
+    }
+    long gray = 0;
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      if (colors[cursor.next()] != color) {
+        gray += cursor.weight();
+      }
+    }
+    return gray;
+  }
+
+  public int getInitColor(int v) {
+    return initColors[v];
+  }
+
+  /**
+   * Makes the current color of v its initial color, so it no longer counts as migrated. Only for a
+   * coloring that owns its initial colors, such as the coloring of a {@link DynamicGraph}.
+   */
+  public void rebase(int v) {
+    if (colors[v] != initColors[v]) {
+      initColors[v] = colors[v];
+      migrations--;
+    }
+  }
+
+  /**
+   * Switches to a newer version of the graph with the same or more vertices, making room for the
+   * added ones by doubling. Added vertices have no color, -1, until {@link #place(int, int)}.
+   *
+   * @param first the first added vertex; the graphs may share an adjacency that already grew
+   */
+  void grow(Graph graph, int first) {
+    int n = graph.size();
+    if (n > colors.length) {
+      int capacity = Math.max(n, 2 * colors.length);
+      if ((long) capacity * numColors > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Color histogram of " + capacity + " vertices and "
+                + numColors + " colors does not fit in an array");
+      }
+      colors = Arrays.copyOf(colors, capacity);
+      initColors = Arrays.copyOf(initColors, capacity);
+      histogram = Arrays.copyOf(histogram, capacity * numColors);
+    }
+    for (int v = first; v < n; v++) {
+      colors[v] = -1;
+      initColors[v] = -1;
+    }
+    if (graph.getAdjacency() != this.graph.getAdjacency()) {
+      cursor = graph.getAdjacency().cursor();
+    }
+    this.graph = graph;
+  }
+
+  /**
+   * Counts an edge added between u and v, unless one of them has no color yet.
+   */
+  void link(int u, int v, int weight) {
+    int colorU = colors[u];
+    int colorV = colors[v];
+    if (colorU == -1 || colorV == -1) {
+      return;
+    }
+    histogram[u * numColors + colorV] += weight;
+    histogram[v * numColors + colorU] += weight;
+    if (colorU != colorV) {
+      edgeCut += weight;
+    }
+  }
+
+  /**
+   * Stops counting an edge removed between u and v.
+   */
+  void unlink(int u, int v, int weight) {
+    int colorU = colors[u];
+    int colorV = colors[v];
+    if (colorU == -1 || colorV == -1) {
+      return;
+    }
+    histogram[u * numColors + colorV] -= weight;
+    histogram[v * numColors + colorU] -= weight;
+    if (colorU != colorV) {
+      edgeCut -= weight;
+    }
+  }
+
+  /**
+   * Colors an added vertex, which is not migrated, and counts its edges to colored neighbours.
+   */
+  void place(int v, int color) {
+    colors[v] = color;
+    initColors[v] = color;
+    Adjacency.Cursor cursor = this.cursor;
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      int u = cursor.next();
+      int colorU = colors[u];
+      if (colorU != -1) {
+        int weight = weighted ? cursor.weight() : 1;
+        histogram[v * numColors + colorU] += weight;
+        histogram[u * numColors + color] += weight;
+        if (colorU != color) {
+          edgeCut += weight;
+        }
+      }
+    }
+  }
+
+  /**
+   * Uncolors a removed vertex, whose edges are already unlinked, so it no longer counts in the
+   * size of its color nor as migrated. Like an added vertex before it is placed it has color -1,
+   * which Jabeja never swaps with.
+   */
+  void remove(int v) {
+    if (colors[v] != initColors[v]) {
+      migrations--;
+    }
+    colors[v] = -1;
+    initColors[v] = -1;
+  }
+
+  /**
+   * @return how many neighbours of v have color == colorId, or their total edge weight
+   */
+  public int countColor(int v, int colorId) {
+    return histogram[v * numColors + colorId];
+  }
+
+  /**
+   * @return a {@link Node} view of vertex v
+   */
+  public Node node(int v) {
+    return new Node(this, v);
+  }
+
+  /**
+   * Cursor and counter changes of one concurrent worker
+   */
+  public static class Counters {
+    private final Adjacency.Cursor cursor;
+    /**
+     * change of the links of all vertices to other colors, twice the change of the edge cut
+     */
+    private long grayLinks;
+    private int migrations;
+
+    private Counters(Adjacency.Cursor cursor) {
+      this.cursor = cursor;
+    }
+  }
+}
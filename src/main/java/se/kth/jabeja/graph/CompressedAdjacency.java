@@ -0,0 +1,319 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * WebGraph style compressed adjacency. Every neighbour list is sorted and stored as
+ * <pre>
+ *   degree, zigzag(first - v), gap, gap, ...
+ * </pre>
+ * where gap is the difference to the previous neighbour, each written as a variable length
+ * int (7 bits per byte, high bit set on all but the last byte). Edge weights, if any, follow
+ * their neighbour as another varint. Neighbour lists are decoded sequentially, so
+ * {@link #neighbour(int, int)} costs O(i); walks over a list should use a {@link #cursor()},
+ * and color counting walks the bytes without materialising the list.
+ *
+ * All lists live in one byte array, which limits the compressed size to 2GB.
+ */
+public class CompressedAdjacency implements Adjacency {
+
+  private final int[] offsets;
+  private final byte[] bytes;
+  private final long numTargets;
+  private final boolean weighted;
+
+  private CompressedAdjacency(int[] offsets, byte[] bytes, long numTargets, boolean weighted) {
+    this.offsets = offsets;
+    this.bytes = bytes;
+    this.numTargets = numTargets;
+    this.weighted = weighted;
+  }
+
+  /**
+   * Compresses another adjacency, e.g. a mapped binary graph, one neighbour list at a time.
+   */
+  public static CompressedAdjacency of(Adjacency adjacency) {
+    int n = adjacency.size();
+    boolean weighted = adjacency.hasWeights();
+    int[] offsets = new int[n + 1];
+    byte[] bytes = new byte[(int) Math.min(Integer.MAX_VALUE - 8, 2 * adjacency.numTargets() + 5L * n + 16)];
+    int pos = 0;
+    long[] list = new long[16];
+
+    for (int v = 0; v < n; v++) {
+      int degree = adjacency.degree(v);
+      if (list.length < degree) {
+        list = new long[Math.max(degree, 2 * list.length)];
+      }
+      // sort by neighbour, carrying the weight along in the low bits
+      for (int i = 0; i < degree; i++) {
+        list[i] = ((long) adjacency.neighbour(v, i) << 32) | (adjacency.weight(v, i) & 0xffffffffL);
+      }
+      Arrays.sort(list, 0, degree);
+
+      // worst case 5 bytes per varint
+      long needed = pos + 5L * (1 + (weighted ? 2L : 1L) * degree);
+      if (needed > bytes.length) {
+        if (needed > Integer.MAX_VALUE - 8) {
+          throw new IllegalStateException("Compressed adjacency exceeds 2GB at vertex " + v);
+        }
+        bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * bytes.length)));
+      }
+
+      pos = writeVarint(bytes, pos, degree);
+      int previous = v;
+      for (int i = 0; i < degree; i++) {
+        int u = (int) (list[i] >>> 32);
+        if (i == 0) {
+          int delta = u - v;
+          pos = writeVarint(bytes, pos, (delta << 1) ^ (delta >> 31));
+        } else {
+          pos = writeVarint(bytes, pos, u - previous);
+        }
+        if (weighted) {
+          pos = writeVarint(bytes, pos, (int) list[i]);
+        }
+        previous = u;
+      }
+      offsets[v + 1] = pos;
+    }
+
+    return new CompressedAdjacency(offsets, Arrays.copyOf(bytes, pos), adjacency.numTargets(), weighted);
+  }
+
+  private static int writeVarint(byte[] bytes, int pos, int value) {
+    while ((value & ~0x7f) != 0) {
+      bytes[pos++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    bytes[pos++] = (byte) value;
+    return pos;
+  }
+
+  /**
+   * Decodes the varint at pos, the only place that does; callers take the value from the high
+   * and the position after it from the low 32 bits, so decoding allocates nothing.
+   *
+   * @return the value in the high and the position of the next varint in the low 32 bits
+   */
+  private static long readVarint(byte[] bytes, int pos) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = bytes[pos++];
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return ((long) value << 32) | pos;
+      }
+    }
+  }
+
+  /**
+   * Decodes at most limit entries of the list of v into out (and weights into outWeights if not null).
+   *
+   * @return the degree of v
+   */
+  private int decode(int v, int limit, int[] out, int[] outWeights) {
+    byte[] bytes = this.bytes;
+    long read = readVarint(bytes, offsets[v]);
+    int degree = (int) (read >>> 32);
+    int pos = (int) read;
+
+    int count = Math.min(degree, limit);
+    int u = v;
+    for (int i = 0; i < count; i++) {
+      read = readVarint(bytes, pos);
+      int value = (int) (read >>> 32);
+      pos = (int) read;
+      u += i == 0 ? (value >>> 1) ^ -(value & 1) : value;
+      out[i] = u;
+
+      if (weighted) {
+        read = readVarint(bytes, pos);
+        pos = (int) read;
+        if (outWeights != null) {
+          outWeights[i] = (int) (read >>> 32);
+        }
+      }
+    }
+    return degree;
+  }
+
+  @Override
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  @Override
+  public long numTargets() {
+    return numTargets;
+  }
+
+  @Override
+  public int degree(int v) {
+    return (int) (readVarint(bytes, offsets[v]) >>> 32);
+  }
+
+  @Override
+  public int neighbour(int v, int i) {
+    return seek(v, i, false);
+  }
+
+  @Override
+  public int neighbours(int v, int[] out) {
+    return decode(v, out.length, out, null);
+  }
+
+  @Override
+  public void neighboursAt(int v, int[] positions, int from, int to) {
+    int last = -1;
+    for (int j = from; j < to; j++) {
+      last = Math.max(last, positions[j]);
+    }
+    byte[] bytes = this.bytes;
+    int pos = offsets[v];
+    while (bytes[pos++] < 0) {
+      // skip the degree
+    }
+
+    // one pass up to the last position, every decoded neighbour replaces the positions it is at
+    int u = v;
+    for (int i = 0; i <= last; i++) {
+      long read = readVarint(bytes, pos);
+      int value = (int) (read >>> 32);
+      pos = (int) read;
+      u += i == 0 ? (value >>> 1) ^ -(value & 1) : value;
+      if (weighted) {
+        while (bytes[pos++] < 0) {
+          // skip the weight
+        }
+      }
+      for (int j = from; j < to; j++) {
+        if (positions[j] == i) {
+          positions[j] = ~u;
+        }
+      }
+    }
+    // neighbours were stored complemented, so they are not mistaken for positions still to replace
+    for (int j = from; j < to; j++) {
+      positions[j] = ~positions[j];
+    }
+  }
+
+  @Override
+  public boolean hasWeights() {
+    return weighted;
+  }
+
+  @Override
+  public int weight(int v, int i) {
+    return weighted ? seek(v, i, true) : 1;
+  }
+
+  /**
+   * Decodes the list of v up to its i-th entry.
+   *
+   * @return the i-th neighbour, or its weight
+   */
+  private int seek(int v, int index, boolean weight) {
+    byte[] bytes = this.bytes;
+    int pos = offsets[v];
+    while (bytes[pos++] < 0) {
+      // skip the degree
+    }
+
+    int u = v;
+    for (int i = 0; ; i++) {
+      long read = readVarint(bytes, pos);
+      int value = (int) (read >>> 32);
+      pos = (int) read;
+      u += i == 0 ? (value >>> 1) ^ -(value & 1) : value;
+
+      if (weighted) {
+        read = readVarint(bytes, pos);
+        pos = (int) read;
+        if (i == index && weight) {
+          return (int) (read >>> 32);
+        }
+      }
+      if (i == index) {
+        return u;
+      }
+    }
+  }
+
+  @Override
+  public int countColor(int v, int[] colors, int colorId) {
+    byte[] bytes = this.bytes;
+    long read = readVarint(bytes, offsets[v]);
+    int degree = (int) (read >>> 32);
+    int pos = (int) read;
+
+    int count = 0;
+    int u = v;
+    for (int i = 0; i < degree; i++) {
+      read = readVarint(bytes, pos);
+      int value = (int) (read >>> 32);
+      pos = (int) read;
+      u += i == 0 ? (value >>> 1) ^ -(value & 1) : value;
+      if (colors[u] == colorId) {
+        count++;
+      }
+      if (weighted) {
+        while (bytes[pos++] < 0) {
+          // skip the weight
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return 4L * offsets.length + bytes.length;
+  }
+
+  @Override
+  public Cursor cursor() {
+    return new DecodingCursor();
+  }
+
+  /**
+   * Decodes one list entry per call of next(), from where the previous call stopped
+   */
+  private class DecodingCursor implements Cursor {
+    private int pos;
+    private int u;
+    private int weight = 1;
+    private boolean first;
+
+    @Override
+    public int start(int v) {
+      long read = readVarint(bytes, offsets[v]);
+      this.pos = (int) read;
+      this.u = v;
+      this.first = true;
+      return (int) (read >>> 32);
+    }
+
+    @Override
+    public int next() {
+      byte[] bytes = CompressedAdjacency.this.bytes;
+      long read = readVarint(bytes, pos);
+      int value = (int) (read >>> 32);
+      u += first ? (value >>> 1) ^ -(value & 1) : value;
+      first = false;
+
+      if (weighted) {
+        read = readVarint(bytes, (int) read);
+        weight = (int) (read >>> 32);
+      }
+      pos = (int) read;
+      return u;
+    }
+
+    @Override
+    public int weight() {
+      return weight;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package se.kth.jabeja.graph;
+
+/**
+ * Adjacency held in two heap arrays: the neighbours of v are
+ * targets[offsets[v] .. offsets[v + 1]). Colors are counted by the {@link ColorCounter} kernel.
+ */
+public class CsrAdjacency implements Adjacency {
+
+  private final int[] offsets;
+  private final int[] targets;
+  private final int[] weights;
+  private final ColorCounter counter = ColorCounter.get();
+
+  /**
+   * @param offsets length size() + 1
+   * @param targets dense neighbour indices
+   * @param weights edge weights parallel to targets, or null if unweighted
+   */
+  public CsrAdjacency(int[] offsets, int[] targets, int[] weights) {
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+  }
+
+  @Override
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  @Override
+  public long numTargets() {
+    return offsets[offsets.length - 1];
+  }
+
+  @Override
+  public int degree(int v) {
+    return offsets[v + 1] - offsets[v];
+  }
+
+  @Override
+  public int neighbour(int v, int i) {
+    return targets[offsets[v] + i];
+  }
+
+  @Override
+  public boolean hasWeights() {
+    return weights != null;
+  }
+
+  @Override
+  public int weight(int v, int i) {
+    return weights == null ? 1 : weights[offsets[v] + i];
+  }
+
+  @Override
+  public int countColor(int v, int[] colors, int colorId) {
+    return counter.count(targets, offsets[v], offsets[v + 1], colors, colorId);
+  }
+
+  @Override
+  public void countColors(int v, int[] colors, int numColors, int[] counts, int offset) {
+    counter.countAll(targets, offsets[v], offsets[v + 1], colors, numColors, counts, offset);
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return 4L * (offsets.length + targets.length + (weights == null ? 0 : weights.length));
+  }
+}
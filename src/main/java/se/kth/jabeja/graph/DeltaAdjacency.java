@@ -0,0 +1,225 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Adjacency of a changing graph: an unchanged base adjacency plus a neighbour list of its own for
+ * every vertex an edge was added to or removed from, and for every added vertex. A change costs
+ * time in the degrees of the vertices it touches, never in the size of the graph; the per-vertex
+ * tables grow by doubling.
+ */
+public class DeltaAdjacency implements Adjacency {
+
+  private final Adjacency base;
+  private int size;
+  private long numTargets;
+  /**
+   * own neighbour list of v, or null while v has its base list
+   */
+  private int[][] lists;
+  private int[][] weights;
+  private int[] degrees;
+  /**
+   * walks the base lists copied by own(int)
+   */
+  private final Cursor baseCursor;
+
+  public DeltaAdjacency(Adjacency base) {
+    this.base = base;
+    this.baseCursor = base.cursor();
+    this.size = base.size();
+    this.numTargets = base.numTargets();
+    int capacity = Math.max(16, size);
+    this.lists = new int[capacity][];
+    this.weights = new int[capacity][];
+    this.degrees = new int[capacity];
+  }
+
+  /**
+   * Adds a vertex without neighbours.
+   *
+   * @return its dense index, the former size()
+   */
+  public int addVertex() {
+    if (size == lists.length) {
+      lists = Arrays.copyOf(lists, 2 * size);
+      weights = Arrays.copyOf(weights, 2 * size);
+      degrees = Arrays.copyOf(degrees, 2 * size);
+    }
+    lists[size] = new int[4];
+    weights[size] = new int[4];
+    return size++;
+  }
+
+  /**
+   * Adds the undirected edge {u, v}; the weight is ignored if the base adjacency is unweighted.
+   */
+  public void addEdge(int u, int v, int weight) {
+    if (u == v) {
+      throw new IllegalArgumentException("Self loop at vertex " + v);
+    }
+    append(u, v, weight);
+    append(v, u, weight);
+    numTargets += 2;
+  }
+
+  /**
+   * Removes one undirected edge {u, v}.
+   *
+   * @return its weight, -1 if there is no such edge
+   */
+  public int removeEdge(int u, int v) {
+    int weight = remove(u, v);
+    if (weight != -1) {
+      remove(v, u);
+      numTargets -= 2;
+    }
+    return weight;
+  }
+
+  private void append(int v, int target, int weight) {
+    own(v);
+    int degree = degrees[v];
+    if (degree == lists[v].length) {
+      lists[v] = Arrays.copyOf(lists[v], 2 * degree);
+      weights[v] = Arrays.copyOf(weights[v], 2 * degree);
+    }
+    lists[v][degree] = target;
+    weights[v][degree] = base.hasWeights() ? weight : 1;
+    degrees[v] = degree + 1;
+  }
+
+  private int remove(int v, int target) {
+    own(v);
+    int[] list = lists[v];
+    for (int i = 0, last = degrees[v] - 1; i <= last; i++) {
+      if (list[i] == target) {
+        int weight = weights[v][i];
+        list[i] = list[last];
+        weights[v][i] = weights[v][last];
+        degrees[v] = last;
+        return weight;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Copies the base list of v before its first change
+   */
+  private void own(int v) {
+    if (lists[v] != null) {
+      return;
+    }
+    int degree = baseCursor.start(v);
+    int[] list = new int[Math.max(4, degree + degree / 2)];
+    int[] weight = new int[list.length];
+    for (int i = 0; i < degree; i++) {
+      list[i] = baseCursor.next();
+      weight[i] = baseCursor.weight();
+    }
+    lists[v] = list;
+    weights[v] = weight;
+    degrees[v] = degree;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long numTargets() {
+    return numTargets;
+  }
+
+  @Override
+  public int degree(int v) {
+    return lists[v] == null ? base.degree(v) : degrees[v];
+  }
+
+  @Override
+  public int neighbour(int v, int i) {
+    return lists[v] == null ? base.neighbour(v, i) : lists[v][i];
+  }
+
+  @Override
+  public void neighboursAt(int v, int[] positions, int from, int to) {
+    if (lists[v] == null) {
+      base.neighboursAt(v, positions, from, to);
+      return;
+    }
+    for (int i = from; i < to; i++) {
+      positions[i] = lists[v][positions[i]];
+    }
+  }
+
+  @Override
+  public boolean hasWeights() {
+    return base.hasWeights();
+  }
+
+  @Override
+  public int weight(int v, int i) {
+    return lists[v] == null ? base.weight(v, i) : weights[v][i];
+  }
+
+  @Override
+  public int countColor(int v, int[] colors, int colorId) {
+    if (lists[v] == null) {
+      return base.countColor(v, colors, colorId);
+    }
+    int count = 0;
+    for (int i = 0, degree = degrees[v]; i < degree; i++) {
+      if (colors[lists[v][i]] == colorId) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    long bytes = base.sizeInBytes() + 12L * lists.length;
+    for (int v = 0; v < size; v++) {
+      if (lists[v] != null) {
+        bytes += 8L * lists[v].length;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Walks the own list of a vertex, or its base list with a cursor of the base adjacency
+   */
+  @Override
+  public Cursor cursor() {
+    Cursor onBase = base.cursor();
+    return new Cursor() {
+      private int[] list;
+      private int[] listWeights;
+      private int i;
+
+      @Override
+      public int start(int v) {
+        list = lists[v];
+        if (list == null) {
+          return onBase.start(v);
+        }
+        listWeights = weights[v];
+        i = -1;
+        return degrees[v];
+      }
+
+      @Override
+      public int next() {
+        return list == null ? onBase.next() : list[++i];
+      }
+
+      @Override
+      public int weight() {
+        return list == null ? onBase.weight() : listWeights[i];
+      }
+    };
+  }
+}
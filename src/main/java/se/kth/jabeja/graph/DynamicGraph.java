@@ -0,0 +1,234 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * A colored graph that changes by {@link GraphDelta}s. The graph is held in a {@link DeltaAdjacency}
+ * over the original one and the coloring is updated edge by edge, so applying a delta costs time in
+ * its size and the degrees of the vertices it touches, not in the size of the graph.
+ *
+ * Added vertices are colored greedily: the color holding most of their neighbours among those
+ * with room, as in Linear Deterministic Greedy. Removed vertices lose their edges, id and color,
+ * -1 as for an added vertex before it is placed, so they are never swapped and the sizes of the
+ * colors only count the vertices in the graph; their index is dropped once the graph is read again.
+ */
+public class DynamicGraph {
+
+  private final DeltaAdjacency adjacency;
+  private final Adjacency.Cursor cursor;
+  private int[] ids;
+  private int[] vertexWeights;
+  /**
+   * indexOf[id] is the dense index of the vertex with the original id, -1 if none
+   */
+  private int[] indexOf;
+  private Graph graph;
+  private final Coloring coloring;
+  private final int[] colorSizes;
+  /**
+   * weight of the colored neighbours of the vertex being placed, by color
+   */
+  private final long[] neighbourWeights;
+
+  /**
+   * @param colored the graph and its current colors, which become the initial colors here
+   */
+  public DynamicGraph(Coloring colored) {
+    Graph original = colored.getGraph();
+    int n = original.size();
+    this.adjacency = new DeltaAdjacency(original.getAdjacency());
+    this.cursor = adjacency.cursor();
+    this.ids = new int[Math.max(16, n)];
+    this.vertexWeights = original.hasVertexWeights() ? new int[ids.length] : null;
+    int maxId = 0;
+    for (int v = 0; v < n; v++) {
+      ids[v] = original.getId(v);
+      maxId = Math.max(maxId, ids[v]);
+      if (vertexWeights != null) {
+        vertexWeights[v] = original.vertexWeight(v);
+      }
+    }
+    this.indexOf = new int[maxId + 1];
+    Arrays.fill(indexOf, -1);
+    int[] colors = new int[n];
+    for (int v = 0; v < n; v++) {
+      indexOf[ids[v]] = v;
+      colors[v] = colored.getColor(v);
+    }
+    this.graph = new Graph(adjacency, ids, vertexWeights);
+    this.coloring = new Coloring(graph, colors, colored.getNumColors());
+    this.colorSizes = coloring.colorSizes();
+    this.neighbourWeights = new long[colored.getNumColors()];
+  }
+
+  public Graph getGraph() {
+    return graph;
+  }
+
+  public Coloring getColoring() {
+    return coloring;
+  }
+
+  /**
+   * Applies the changes in order, then colors the added vertices in the order they were added.
+   *
+   * @return the vertices whose own color or a neighbour's color may now be wrong: the added
+   * vertices and the ends of the added and removed edges, some of them more than once, without
+   * the vertices removed by the delta
+   */
+  public int[] apply(GraphDelta delta) {
+    int[] affected = new int[16];
+    int numAffected = 0;
+    int[] added = new int[16];
+    int numAdded = 0;
+    for (int i = 0; i < delta.size(); i++) {
+      if (numAffected + 2 > affected.length) {
+        affected = Arrays.copyOf(affected, 2 * affected.length);
+      }
+      switch (delta.getOp(i)) {
+        case ADD_VERTEX: {
+          int v = addVertex(delta.getFirst(i), delta.getWeight(i));
+          if (numAdded == added.length) {
+            added = Arrays.copyOf(added, 2 * numAdded);
+          }
+          added[numAdded++] = v;
+          affected[numAffected++] = v;
+          break;
+        }
+        case REMOVE_VERTEX: {
+          int v = index(delta.getFirst(i));
+          for (int degree = adjacency.degree(v); degree > 0; degree--) {
+            int u = adjacency.neighbour(v, degree - 1);
+            coloring.unlink(v, u, adjacency.removeEdge(v, u));
+            if (numAffected == affected.length) {
+              affected = Arrays.copyOf(affected, 2 * affected.length);
+            }
+            affected[numAffected++] = u;
+          }
+          indexOf[delta.getFirst(i)] = -1;
+          if (coloring.getColor(v) != -1) {
+            colorSizes[coloring.getColor(v)]--;
+          }
+          coloring.remove(v);
+          break;
+        }
+        case ADD_EDGE: {
+          int u = index(delta.getFirst(i));
+          int v = index(delta.getSecond(i));
+          adjacency.addEdge(u, v, delta.getWeight(i));
+          coloring.link(u, v, adjacency.hasWeights() ? delta.getWeight(i) : 1);
+          affected[numAffected++] = u;
+          affected[numAffected++] = v;
+          break;
+        }
+        case REMOVE_EDGE: {
+          int u = index(delta.getFirst(i));
+          int v = index(delta.getSecond(i));
+          int weight = adjacency.removeEdge(u, v);
+          if (weight == -1) {
+            throw new IllegalArgumentException("No edge between vertices " + delta.getFirst(i) + " and "
+                    + delta.getSecond(i));
+          }
+          coloring.unlink(u, v, weight);
+          affected[numAffected++] = u;
+          affected[numAffected++] = v;
+          break;
+        }
+        default:
+          throw new UnsupportedOperationException(delta.getOp(i) + " is not implemented");
+      }
+    }
+
+    for (int i = 0; i < numAdded; i++) {
+      if (!isRemoved(added[i])) {
+        place(added[i]);
+      }
+    }
+    int live = 0;
+    for (int i = 0; i < numAffected; i++) {
+      if (!isRemoved(affected[i])) {
+        affected[live++] = affected[i];
+      }
+    }
+    return Arrays.copyOf(affected, live);
+  }
+
+  /**
+   * @return whether v was removed, its id no longer maps to it
+   */
+  private boolean isRemoved(int v) {
+    return indexOf[ids[v]] != v;
+  }
+
+  private int index(int id) {
+    int v = id >= 0 && id < indexOf.length ? indexOf[id] : -1;
+    if (v == -1) {
+      throw new IllegalArgumentException("Unknown vertex id: " + id);
+    }
+    return v;
+  }
+
+  private int addVertex(int id, int weight) {
+    if (id < 0) {
+      throw new IllegalArgumentException("Negative vertex id: " + id);
+    }
+    if (id < indexOf.length && indexOf[id] != -1) {
+      throw new IllegalArgumentException("Vertex id " + id + " already exists");
+    }
+    int v = adjacency.addVertex();
+    if (v == ids.length) {
+      ids = Arrays.copyOf(ids, 2 * v);
+      if (vertexWeights != null) {
+        vertexWeights = Arrays.copyOf(vertexWeights, ids.length);
+      }
+    }
+    ids[v] = id;
+    if (vertexWeights != null) {
+      vertexWeights[v] = weight;
+    }
+    if (id >= indexOf.length) {
+      int length = indexOf.length;
+      indexOf = Arrays.copyOf(indexOf, Math.max(id + 1, 2 * length));
+      Arrays.fill(indexOf, length, indexOf.length, -1);
+    }
+    indexOf[id] = v;
+    graph = new Graph(adjacency, ids, vertexWeights);
+    coloring.grow(graph, v);
+    return v;
+  }
+
+  /**
+   * Colors an added vertex with the color of most of its colored neighbours, weighted by the room
+   * left in the color, among the colors below ceil(n / k) vertices, n counting v and the colored
+   * vertices, not the removed ones.
+   */
+  private void place(int v) {
+    int numColors = coloring.getNumColors();
+    int n = 1;
+    for (int c = 0; c < numColors; c++) {
+      n += colorSizes[c];
+    }
+    int capacity = (n + numColors - 1) / numColors;
+    Arrays.fill(neighbourWeights, 0);
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      int color = coloring.getColor(cursor.next());
+      if (color != -1) {
+        neighbourWeights[color] += cursor.weight();
+      }
+    }
+    int best = -1;
+    double bestScore = 0;
+    for (int c = 0; c < numColors; c++) {
+      if (colorSizes[c] >= capacity) {
+        continue;
+      }
+      double score = neighbourWeights[c] * (1 - (double) colorSizes[c] / capacity);
+      if (best == -1 || score > bestScore || (score == bestScore && colorSizes[c] < colorSizes[best])) {
+        best = c;
+        bestScore = score;
+      }
+    }
+    coloring.place(v, best);
+    colorSizes[best]++;
+  }
+}
@@ -0,0 +1,192 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Gain-bucket index of the vertices, as in Fiduccia-Mattheyses: for every ordered pair of colors
+ * (a, b) the vertices of color a are kept in buckets keyed by their gain towards b, the weight of
+ * their neighbours of color b minus that of their neighbours of color a. A vertex of color b then
+ * finds the vertices that would gain most from taking its color in the top buckets of the pairs
+ * (a, b), without sampling the whole graph.
+ *
+ * Every bucket is a circular doubly linked list over the entries v * numColors + b, so inserting
+ * and removing an entry cost O(1). After a vertex is recolored, {@link #recolored(int)} moves the
+ * entries of the vertex and of its neighbours, O(numColors) per vertex. Gains beyond the largest
+ * weighted degree, or {@link #MAX_GAIN}, are clamped.
+ */
+public class GainBuckets {
+
+  private static final int MAX_GAIN = 1 << 16;
+
+  private final Coloring coloring;
+  private final Adjacency.Cursor cursor;
+  private final int numColors;
+  private final int maxGain;
+  /**
+   * buckets per color pair, gains in [-maxGain, maxGain]
+   */
+  private final int range;
+  /**
+   * head[(a * numColors + b) * range + maxGain + gain] is the first entry of the bucket, -1 if empty
+   */
+  private final int[] head;
+  /**
+   * top[a * numColors + b] is at least the highest non-empty bucket of the pair, relative to
+   * its first bucket, -1 if the pair is known to be empty
+   */
+  private final int[] top;
+  private final int[] next;
+  private final int[] prev;
+  /**
+   * bucket of every entry, -1 for the entry of a vertex towards its own color
+   */
+  private final int[] bucketOf;
+
+  public GainBuckets(Coloring coloring) {
+    this.coloring = coloring;
+    this.cursor = coloring.getGraph().getAdjacency().cursor();
+    this.numColors = coloring.getNumColors();
+    int n = coloring.size();
+    long maxDegree = 1;
+    for (int v = 0; v < n; v++) {
+      long degree = 0;
+      for (int i = 0, d = cursor.start(v); i < d; i++) {
+        cursor.next();
+        degree += cursor.weight();
+      }
+      maxDegree = Math.max(maxDegree, degree);
+    }
+    this.maxGain = (int) Math.min(MAX_GAIN, maxDegree);
+    this.range = 2 * maxGain + 1;
+    if ((long) numColors * numColors * range > Integer.MAX_VALUE || (long) n * numColors > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Gain buckets of " + n + " vertices and " + numColors
+              + " colors do not fit in arrays");
+    }
+    this.head = new int[numColors * numColors * range];
+    this.top = new int[numColors * numColors];
+    this.next = new int[n * numColors];
+    this.prev = new int[n * numColors];
+    this.bucketOf = new int[n * numColors];
+    Arrays.fill(head, -1);
+    Arrays.fill(top, -1);
+    Arrays.fill(bucketOf, -1);
+    for (int v = 0; v < n; v++) {
+      update(v);
+    }
+  }
+
+  /**
+   * Moves the entries of v, whose color changed, and of its neighbours, whose gains changed.
+   */
+  public void recolored(int v) {
+    update(v);
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      update(cursor.next());
+    }
+  }
+
+  /**
+   * Collects the vertices of the other colors with the highest gains towards color, about as many
+   * from every color, highest buckets first. The collected vertices are rotated to the end of
+   * their buckets, so the next calls return others of the same gain.
+   *
+   * @return number of vertices written to out, at most count
+   */
+  public int candidates(int color, int[] out, int count) {
+    int found = 0;
+    for (int a = 0, others = numColors - 1; a < numColors && found < count; a++) {
+      if (a == color) {
+        continue;
+      }
+      // the remaining slots are shared by the remaining colors
+      int share = (count - found + others - 1) / others;
+      others--;
+      int pair = a * numColors + color;
+      int first = pair * range;
+      int taken = 0;
+      for (int bucket = top(pair); bucket >= 0 && taken < share; bucket--) {
+        int entry = head[first + bucket];
+        if (entry == -1) {
+          continue;
+        }
+        int last = entry;
+        do {
+          out[found + taken++] = entry / numColors;
+          last = entry;
+          entry = next[entry];
+        } while (taken < share && entry != head[first + bucket]);
+        head[first + bucket] = next[last];
+      }
+      found += taken;
+    }
+    return found;
+  }
+
+  /**
+   * @return the highest non-empty bucket of the pair, -1 if the pair is empty
+   */
+  private int top(int pair) {
+    int first = pair * range;
+    int bucket = top[pair];
+    while (bucket >= 0 && head[first + bucket] == -1) {
+      bucket--;
+    }
+    top[pair] = bucket;
+    return bucket;
+  }
+
+  private void update(int v) {
+    int color = coloring.getColor(v);
+    int own = coloring.countColor(v, color);
+    int firstEntry = v * numColors;
+    for (int b = 0; b < numColors; b++) {
+      int entry = firstEntry + b;
+      int bucket = -1;
+      if (b != color) {
+        int gain = Math.max(-maxGain, Math.min(maxGain, coloring.countColor(v, b) - own));
+        bucket = (color * numColors + b) * range + maxGain + gain;
+      }
+      if (bucket != bucketOf[entry]) {
+        if (bucketOf[entry] != -1) {
+          remove(entry);
+        }
+        if (bucket != -1) {
+          insert(entry, bucket);
+        }
+      }
+    }
+  }
+
+  private void insert(int entry, int bucket) {
+    int first = head[bucket];
+    if (first == -1) {
+      next[entry] = entry;
+      prev[entry] = entry;
+      head[bucket] = entry;
+    } else {
+      // at the end of the circular list
+      int last = prev[first];
+      next[last] = entry;
+      prev[entry] = last;
+      next[entry] = first;
+      prev[first] = entry;
+    }
+    bucketOf[entry] = bucket;
+    int pair = bucket / range;
+    top[pair] = Math.max(top[pair], bucket - pair * range);
+  }
+
+  private void remove(int entry) {
+    int bucket = bucketOf[entry];
+    if (next[entry] == entry) {
+      head[bucket] = -1;
+    } else {
+      next[prev[entry]] = next[entry];
+      prev[next[entry]] = prev[entry];
+      if (head[bucket] == entry) {
+        head[bucket] = next[entry];
+      }
+    }
+    bucketOf[entry] = -1;
+  }
+}
@@ -0,0 +1,197 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Immutable topology of the input graph. It is loaded once and shared read-only by all
+ * concurrent runs, each of which owns only its {@link Coloring}.
+ *
+ * Vertices are renumbered densely to [0, size()) and neighbours are themselves dense
+ * indices, so the engine never has to look up a vertex by its original id. The original
+ * ids (as found in the graph file) are kept in {@link #getId(int)} for reporting.
+ * A graph that changes over time (see {@link DynamicGraph}) is a new Graph for every
+ * version, which may share its id and weight arrays with the previous one.
+ * The topology is held by an {@link Adjacency}, e.g. heap arrays in CSR layout or a
+ * memory mapped binary graph file.
+ */
+public class Graph {
+
+  private final Adjacency adjacency;
+  private final int[] ids;
+  private final int[] vertexWeights;
+
+  /**
+   * @param ids           original id of every vertex, the array may be longer than the graph
+   * @param vertexWeights weight of every vertex, or null if unweighted
+   */
+  public Graph(Adjacency adjacency, int[] ids, int[] vertexWeights) {
+    if (ids.length < adjacency.size()) {
+      throw new IllegalArgumentException("Adjacency has " + adjacency.size() + " vertices, but got "
+              + ids.length + " ids");
+    }
+    this.adjacency = adjacency;
+    this.ids = ids;
+    this.vertexWeights = vertexWeights;
+  }
+
+  /**
+   * Builds a graph whose adjacency is expressed in original ids.
+   *
+   * @param ids        original id of every vertex, in the order they should be numbered
+   * @param offsets    CSR offsets into rawTargets, length ids.length + 1
+   * @param rawTargets neighbour ids (original ids), renumbered in place to dense indices
+   * @return the graph
+   */
+  public static Graph fromIds(int[] ids, int[] offsets, int[] rawTargets) {
+    return fromIds(ids, offsets, rawTargets, null, null);
+  }
+
+  /**
+   * Same as {@link #fromIds(int[], int[], int[])} for weighted graphs.
+   *
+   * @param edgeWeights   weights parallel to rawTargets, or null
+   * @param vertexWeights weights of the vertices, or null
+   */
+  public static Graph fromIds(int[] ids, int[] offsets, int[] rawTargets, int[] edgeWeights, int[] vertexWeights) {
+    int maxId = 0;
+    for (int id : ids) {
+      if (id < 0) {
+        throw new IllegalArgumentException("Negative vertex id: " + id);
+      }
+      maxId = Math.max(maxId, id);
+    }
+
+    int[] indexOf = new int[maxId + 1];
+    Arrays.fill(indexOf, -1);
+    for (int v = 0; v < ids.length; v++) {
+      indexOf[ids[v]] = v;
+    }
+
+    int numTargets = offsets[ids.length];
+    for (int e = 0; e < numTargets; e++) {
+      int id = rawTargets[e];
+      if (id < 0 || id > maxId || indexOf[id] == -1) {
+        throw new IllegalArgumentException("Edge to unknown vertex id: " + id);
+      }
+      rawTargets[e] = indexOf[id];
+    }
+
+    int[] targets = rawTargets.length == numTargets ? rawTargets : Arrays.copyOf(rawTargets, numTargets);
+    int[] weights = edgeWeights == null || edgeWeights.length == numTargets
+            ? edgeWeights : Arrays.copyOf(edgeWeights, numTargets);
+    return new Graph(new CsrAdjacency(offsets, targets, weights), ids, vertexWeights);
+  }
+
+  public Adjacency getAdjacency() {
+    return adjacency;
+  }
+
+  /**
+   * @return the same graph stored in another adjacency structure, e.g. a {@link CompressedAdjacency}
+   */
+  public Graph withAdjacency(Adjacency other) {
+    return new Graph(other, ids, vertexWeights);
+  }
+
+  /**
+   * Renumbers the vertices, e.g. for cache locality (see {@link Reordering}). The original ids
+   * and vertex weights move with the vertices.
+   *
+   * @param order order[i] is the vertex that becomes vertex i
+   * @return the renumbered graph in CSR layout
+   */
+  public Graph permute(int[] order) {
+    int n = size();
+    if (order.length != n) {
+      throw new IllegalArgumentException("Order has " + order.length + " vertices, but the graph has " + n);
+    }
+    int[] newIndex = new int[n];
+    Arrays.fill(newIndex, -1);
+    for (int i = 0; i < n; i++) {
+      if (newIndex[order[i]] != -1) {
+        throw new IllegalArgumentException("Vertex " + order[i] + " appears twice in the order");
+      }
+      newIndex[order[i]] = i;
+    }
+
+    long numTargets = adjacency.numTargets();
+    if (numTargets > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many edges to renumber on the heap: " + numTargets);
+    }
+    int[] offsets = new int[n + 1];
+    int[] targets = new int[(int) numTargets];
+    int[] weights = adjacency.hasWeights() ? new int[targets.length] : null;
+    int[] newIds = new int[n];
+    int[] newVertexWeights = vertexWeights == null ? null : new int[n];
+    for (int i = 0; i < n; i++) {
+      int v = order[i];
+      int degree = adjacency.degree(v);
+      int offset = offsets[i];
+      for (int j = 0; j < degree; j++) {
+        targets[offset + j] = newIndex[adjacency.neighbour(v, j)];
+        if (weights != null) {
+          weights[offset + j] = adjacency.weight(v, j);
+        }
+      }
+      offsets[i + 1] = offset + degree;
+      newIds[i] = ids[v];
+      if (newVertexWeights != null) {
+        newVertexWeights[i] = vertexWeights[v];
+      }
+    }
+    return new Graph(new CsrAdjacency(offsets, targets, weights), newIds, newVertexWeights);
+  }
+
+  public int size() {
+    return adjacency.size();
+  }
+
+  /**
+   * @return number of directed adjacency entries, i.e. twice the number of undirected edges
+   */
+  public long numTargets() {
+    return adjacency.numTargets();
+  }
+
+  public int getId(int v) {
+    return ids[v];
+  }
+
+  /**
+   * @return the vertices by increasing original id, i.e. in the order of the input file
+   */
+  public int[] originalOrder() {
+    int n = size();
+    int[] order = new int[n];
+    boolean ascending = true;
+    for (int v = 0; v < n; v++) {
+      order[v] = v;
+      ascending &= v == 0 || ids[v - 1] < ids[v];
+    }
+    return ascending ? order : Reordering.sortByKey(ids.length == n ? ids : Arrays.copyOf(ids, n));
+  }
+
+  public int degree(int v) {
+    return adjacency.degree(v);
+  }
+
+  /**
+   * @return dense index of the i-th neighbour of v
+   */
+  public int neighbour(int v, int i) {
+    return adjacency.neighbour(v, i);
+  }
+
+  public int edgeWeight(int v, int i) {
+    return adjacency.weight(v, i);
+  }
+
+  public boolean hasVertexWeights() {
+    return vertexWeights != null;
+  }
+
+  public int vertexWeight(int v) {
+    return vertexWeights == null ? 1 : vertexWeights[v];
+  }
+
+}
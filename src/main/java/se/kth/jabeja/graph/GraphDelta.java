@@ -0,0 +1,65 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * A batch of changes to a graph, in the order they are applied. Vertices are given by their
+ * original ids, as in the graph file.
+ */
+public class GraphDelta {
+
+  public enum Op {
+    ADD_VERTEX,
+    REMOVE_VERTEX,
+    ADD_EDGE,
+    REMOVE_EDGE,
+  }
+
+  private Op[] ops = new Op[16];
+  /**
+   * the vertex, or the two ends of the edge, and the weight of the vertex or edge of every change
+   */
+  private int[] first = new int[16];
+  private int[] second = new int[16];
+  private int[] weights = new int[16];
+  private int size;
+
+  /**
+   * @param second other end of an edge, ignored for vertices
+   * @param weight weight of an added vertex or edge, ignored otherwise
+   */
+  public GraphDelta add(Op op, int first, int second, int weight) {
+    if (size == ops.length) {
+      ops = Arrays.copyOf(ops, 2 * size);
+      this.first = Arrays.copyOf(this.first, 2 * size);
+      this.second = Arrays.copyOf(this.second, 2 * size);
+      weights = Arrays.copyOf(weights, 2 * size);
+    }
+    ops[size] = op;
+    this.first[size] = first;
+    this.second[size] = second;
+    weights[size] = weight;
+    size++;
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public Op getOp(int i) {
+    return ops[i];
+  }
+
+  public int getFirst(int i) {
+    return first[i];
+  }
+
+  public int getSecond(int i) {
+    return second[i];
+  }
+
+  public int getWeight(int i) {
+    return weights[i];
+  }
+}
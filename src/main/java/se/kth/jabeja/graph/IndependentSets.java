@@ -0,0 +1,61 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * Splits the vertices into independent sets, i.e. sets without an edge between two of their vertices.
+ */
+public class IndependentSets {
+
+  private IndependentSets() {
+  }
+
+  /**
+   * First-fit greedy coloring in increasing vertex order: every vertex gets the smallest set
+   * not used by an already placed neighbour. Deterministic, and needs at most
+   * (maximum degree + 1) sets.
+   *
+   * @return the vertices of every set, in increasing order
+   */
+  public static int[][] greedy(Adjacency adjacency) {
+    int n = adjacency.size();
+    Adjacency.Cursor cursor = adjacency.cursor();
+    int[] set = new int[n];
+    // mark[s] == v + 1 if set s is used by a neighbour of v
+    int[] mark = new int[16];
+    int numSets = 0;
+    for (int v = 0; v < n; v++) {
+      int degree = cursor.start(v);
+      for (int i = 0; i < degree; i++) {
+        int u = cursor.next();
+        if (u < v) {
+          int s = set[u];
+          if (s >= mark.length) {
+            mark = Arrays.copyOf(mark, Math.max(s + 1, 2 * mark.length));
+          }
+          mark[s] = v + 1;
+        }
+      }
+      int s = 0;
+      while (s < mark.length && mark[s] == v + 1) {
+        s++;
+      }
+      set[v] = s;
+      numSets = Math.max(numSets, s + 1);
+    }
+
+    int[] sizes = new int[numSets];
+    for (int v = 0; v < n; v++) {
+      sizes[set[v]]++;
+    }
+    int[][] sets = new int[numSets][];
+    for (int s = 0; s < numSets; s++) {
+      sets[s] = new int[sizes[s]];
+      sizes[s] = 0;
+    }
+    for (int v = 0; v < n; v++) {
+      sets[set[v]][sizes[set[v]]++] = v;
+    }
+    return sets;
+  }
+}
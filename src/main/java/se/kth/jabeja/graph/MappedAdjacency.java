@@ -0,0 +1,93 @@
+package se.kth.jabeja.graph;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Adjacency backed by memory mapped regions of a binary graph file, see
+ * {@link se.kth.jabeja.io.BinaryGraphFormat}. Nothing is copied onto the heap, so the
+ * graph may be larger than the heap; pages are loaded by the OS on first access.
+ *
+ * A single mapping is limited to 2GB, so offsets and targets are split into
+ * segments of 2^SEGMENT_SHIFT elements each.
+ */
+public class MappedAdjacency implements Adjacency {
+
+  public static final int SEGMENT_SHIFT = 27;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  private final int size;
+  private final long numTargets;
+  private final LongBuffer[] offsets;
+  private final IntBuffer[] targets;
+  private final IntBuffer[] weights;
+
+  /**
+   * @param weights segments parallel to targets, or null if unweighted
+   */
+  public MappedAdjacency(int size, long numTargets, LongBuffer[] offsets, IntBuffer[] targets, IntBuffer[] weights) {
+    this.size = size;
+    this.numTargets = numTargets;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.weights = weights;
+  }
+
+  private long offset(int v) {
+    return offsets[v >>> SEGMENT_SHIFT].get((int) (v & SEGMENT_MASK));
+  }
+
+  private int target(long e) {
+    return targets[(int) (e >>> SEGMENT_SHIFT)].get((int) (e & SEGMENT_MASK));
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long numTargets() {
+    return numTargets;
+  }
+
+  @Override
+  public int degree(int v) {
+    return (int) (offset(v + 1) - offset(v));
+  }
+
+  @Override
+  public int neighbour(int v, int i) {
+    return target(offset(v) + i);
+  }
+
+  @Override
+  public boolean hasWeights() {
+    return weights != null;
+  }
+
+  @Override
+  public int weight(int v, int i) {
+    if (weights == null) {
+      return 1;
+    }
+    long e = offset(v) + i;
+    return weights[(int) (e >>> SEGMENT_SHIFT)].get((int) (e & SEGMENT_MASK));
+  }
+
+  @Override
+  public int countColor(int v, int[] colors, int colorId) {
+    int count = 0;
+    for (long e = offset(v), end = offset(v + 1); e < end; e++) {
+      if (colors[target(e)] == colorId) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return 8L * (size + 1) + 4L * numTargets * (weights == null ? 1 : 2);
+  }
+}
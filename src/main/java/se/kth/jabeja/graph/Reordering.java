@@ -0,0 +1,278 @@
+package se.kth.jabeja.graph;
+
+import se.kth.jabeja.config.VertexOrdering;
+
+import java.util.Arrays;
+
+/**
+ * Vertex renumbering heuristics for cache locality. Each heuristic returns an order, where
+ * order[i] is the vertex that becomes vertex i; {@link #apply} renumbers the graph accordingly.
+ * The original ids travel with the vertices, so partitions can always be reported by original id.
+ */
+public class Reordering {
+
+  /**
+   * Number of last placed vertices {@link #gorder} looks at, the window size of the Gorder paper
+   */
+  private static final int GORDER_WINDOW = 5;
+
+  private Reordering() {
+  }
+
+  public static Graph apply(Graph graph, VertexOrdering ordering) {
+    switch (ordering) {
+      case NONE: return graph;
+      case BFS: return graph.permute(bfs(graph.getAdjacency(), false));
+      case RCM: return graph.permute(rcm(graph.getAdjacency()));
+      case DEGREE: return graph.permute(byDegree(graph.getAdjacency()));
+      case GORDER: return graph.permute(gorder(graph.getAdjacency()));
+      default: throw new IllegalArgumentException("Unknown vertex ordering " + ordering);
+    }
+  }
+
+  /**
+   * Sorts the vertices by a non-negative key, ties broken by vertex index.
+   */
+  public static int[] sortByKey(int[] keys) {
+    long[] packed = new long[keys.length];
+    for (int v = 0; v < keys.length; v++) {
+      packed[v] = ((long) keys[v] << 32) | v;
+    }
+    Arrays.sort(packed);
+    int[] order = new int[keys.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = (int) packed[i];
+    }
+    return order;
+  }
+
+  /**
+   * @return vertices by decreasing degree
+   */
+  public static int[] byDegree(Adjacency adjacency) {
+    int n = adjacency.size();
+    int maxDegree = 0;
+    for (int v = 0; v < n; v++) {
+      maxDegree = Math.max(maxDegree, adjacency.degree(v));
+    }
+    int[] keys = new int[n];
+    for (int v = 0; v < n; v++) {
+      keys[v] = maxDegree - adjacency.degree(v);
+    }
+    return sortByKey(keys);
+  }
+
+  /**
+   * Breadth first order. Every component is started from its first vertex, or from its lowest
+   * degree vertex with neighbours visited by increasing degree for Cuthill-McKee.
+   */
+  static int[] bfs(Adjacency adjacency, boolean cuthillMcKee) {
+    int n = adjacency.size();
+    int[] order = new int[n];
+    boolean[] visited = new boolean[n];
+    int[] starts = cuthillMcKee ? sortByKey(degrees(adjacency)) : null;
+    int[] scratch = new int[16];
+    long[] byDegree = new long[16];
+    int head = 0;
+    int tail = 0;
+
+    for (int s = 0; s < n; s++) {
+      int start = starts == null ? s : starts[s];
+      if (visited[start]) {
+        continue;
+      }
+      visited[start] = true;
+      order[tail++] = start;
+
+      while (head < tail) {
+        int v = order[head++];
+        int degree = adjacency.degree(v);
+        if (scratch.length < degree) {
+          scratch = new int[Math.max(degree, 2 * scratch.length)];
+          byDegree = new long[scratch.length];
+        }
+        adjacency.neighbours(v, scratch);
+
+        if (cuthillMcKee) {
+          int count = 0;
+          for (int i = 0; i < degree; i++) {
+            int u = scratch[i];
+            if (!visited[u]) {
+              visited[u] = true;
+              byDegree[count++] = ((long) adjacency.degree(u) << 32) | u;
+            }
+          }
+          Arrays.sort(byDegree, 0, count);
+          for (int i = 0; i < count; i++) {
+            order[tail++] = (int) byDegree[i];
+          }
+        } else {
+          for (int i = 0; i < degree; i++) {
+            int u = scratch[i];
+            if (!visited[u]) {
+              visited[u] = true;
+              order[tail++] = u;
+            }
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  /**
+   * @return reverse Cuthill-McKee order
+   */
+  public static int[] rcm(Adjacency adjacency) {
+    int[] order = bfs(adjacency, true);
+    for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+    return order;
+  }
+
+  private static int[] degrees(Adjacency adjacency) {
+    int[] degrees = new int[adjacency.size()];
+    for (int v = 0; v < degrees.length; v++) {
+      degrees[v] = adjacency.degree(v);
+    }
+    return degrees;
+  }
+
+  /**
+   * Greedy Gorder-like order. The score of an unplaced vertex is the number of neighbours and
+   * siblings (vertices sharing a neighbour) it has among the last {@link #GORDER_WINDOW} placed
+   * vertices; the vertex with the highest score is placed next. Scores are kept in a bucket
+   * queue, so every update is O(1).
+   */
+  public static int[] gorder(Adjacency adjacency) {
+    int n = adjacency.size();
+    int[] order = new int[n];
+    if (n == 0) {
+      return order;
+    }
+    // as in the Gorder paper, the neighbourhoods of hubs are not expanded to keep power-law graphs cheap
+    int hubDegree = Math.max(16, (int) Math.sqrt(n));
+    UnitHeap heap = new UnitHeap(n);
+    int[] scratch = new int[16];
+    int[] inner = new int[16];
+
+    // start from the vertex with the highest degree
+    int first = byDegree(adjacency)[0];
+    heap.remove(first);
+    order[0] = first;
+    for (int i = 1; i <= n; i++) {
+      int placed = order[i - 1];
+      scratch = update(adjacency, heap, placed, +1, hubDegree, scratch, inner);
+      if (i > GORDER_WINDOW) {
+        scratch = update(adjacency, heap, order[i - 1 - GORDER_WINDOW], -1, hubDegree, scratch, inner);
+      }
+      if (i < n) {
+        order[i] = heap.removeMax();
+      }
+    }
+    return order;
+  }
+
+  private static int[] update(Adjacency adjacency, UnitHeap heap, int v, int delta, int hubDegree,
+                              int[] scratch, int[] inner) {
+    int degree = adjacency.degree(v);
+    if (scratch.length < degree) {
+      scratch = new int[Math.max(degree, 2 * scratch.length)];
+    }
+    adjacency.neighbours(v, scratch);
+    for (int i = 0; i < degree; i++) {
+      int u = scratch[i];
+      heap.add(u, delta);
+      int innerDegree = adjacency.degree(u);
+      if (innerDegree > hubDegree) {
+        continue;
+      }
+      // siblings: vertices that share the neighbour u with v
+      for (int j = 0; j < innerDegree; j++) {
+        int w = adjacency.neighbour(u, j);
+        if (w != v) {
+          heap.add(w, delta);
+        }
+      }
+    }
+    return scratch;
+  }
+
+  /**
+   * Bucket queue of vertices keyed by a small integer score, as used by Gorder. Increments,
+   * decrements and removals are O(1); removing the maximum is amortised O(1).
+   */
+  private static class UnitHeap {
+    private final int[] key;
+    private final int[] prev;
+    private final int[] next;
+    private final boolean[] removed;
+    private int[] head;
+    private int top;
+
+    UnitHeap(int n) {
+      key = new int[n];
+      prev = new int[n];
+      next = new int[n];
+      removed = new boolean[n];
+      head = new int[16];
+      Arrays.fill(head, -1);
+      for (int v = n - 1; v >= 0; v--) {
+        link(v);
+      }
+    }
+
+    private void link(int v) {
+      int k = key[v];
+      if (k >= head.length) {
+        int old = head.length;
+        head = Arrays.copyOf(head, Math.max(k + 1, 2 * old));
+        Arrays.fill(head, old, head.length, -1);
+      }
+      prev[v] = -1;
+      next[v] = head[k];
+      if (head[k] != -1) {
+        prev[head[k]] = v;
+      }
+      head[k] = v;
+      top = Math.max(top, k);
+    }
+
+    private void unlink(int v) {
+      if (prev[v] != -1) {
+        next[prev[v]] = next[v];
+      } else {
+        head[key[v]] = next[v];
+      }
+      if (next[v] != -1) {
+        prev[next[v]] = prev[v];
+      }
+    }
+
+    void add(int v, int delta) {
+      if (removed[v]) {
+        return;
+      }
+      unlink(v);
+      key[v] = Math.max(0, key[v] + delta);
+      link(v);
+    }
+
+    void remove(int v) {
+      unlink(v);
+      removed[v] = true;
+    }
+
+    int removeMax() {
+      while (head[top] == -1) {
+        top--;
+      }
+      int v = head[top];
+      remove(v);
+      return v;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package se.kth.jabeja.graph;
+
+import java.util.Arrays;
+
+/**
+ * One-pass initial colorings that already follow the structure of the graph. The vertices are
+ * streamed in a given order and every color holds exactly {@link #capacities(int, int)} vertices,
+ * the sizes of a ROUND_ROBIN coloring, which the swaps of Jabeja then keep.
+ */
+public class StreamingColoring {
+
+  /**
+   * Exponent of the Fennel size penalty, as in the paper
+   */
+  private static final double FENNEL_GAMMA = 1.5;
+
+  private StreamingColoring() {
+  }
+
+  /**
+   * @return size of every color: n / numColors, the first n % numColors colors one more
+   */
+  public static int[] capacities(int n, int numColors) {
+    int[] capacities = new int[numColors];
+    for (int c = 0; c < numColors; c++) {
+      capacities[c] = n / numColors + (c < n % numColors ? 1 : 0);
+    }
+    return capacities;
+  }
+
+  /**
+   * Linear Deterministic Greedy (Stanton and Kliot): v gets the color that maximizes the weight of
+   * its already colored neighbours of that color, times the room left in the color.
+   *
+   * @param order the stream, a permutation of the vertices
+   * @return the color of every vertex
+   */
+  public static int[] ldg(Graph graph, int numColors, int[] order) {
+    return greedy(graph, numColors, order, false);
+  }
+
+  /**
+   * Fennel (Tsourakakis et al.): v gets the color that maximizes the weight of its already colored
+   * neighbours of that color minus alpha * gamma * size^(gamma - 1), with gamma = 1.5 and
+   * alpha = sqrt(numColors) * m / n^1.5.
+   *
+   * @param order the stream, a permutation of the vertices
+   * @return the color of every vertex
+   */
+  public static int[] fennel(Graph graph, int numColors, int[] order) {
+    return greedy(graph, numColors, order, true);
+  }
+
+  private static int[] greedy(Graph graph, int numColors, int[] order, boolean fennel) {
+    Adjacency adjacency = graph.getAdjacency();
+    Adjacency.Cursor cursor = adjacency.cursor();
+    int n = graph.size();
+    int[] capacities = capacities(n, numColors);
+    int[] sizes = new int[numColors];
+    int[] colors = new int[n];
+    Arrays.fill(colors, -1);
+    double alpha = Math.sqrt(numColors) * (adjacency.numTargets() / 2.0) / Math.pow(n, FENNEL_GAMMA);
+    // weight[c] of the colored neighbours of the current vertex, reset through the colors it was set for
+    long[] weight = new long[numColors];
+
+    for (int v : order) {
+      int degree = cursor.start(v);
+      for (int i = 0; i < degree; i++) {
+        int color = colors[cursor.next()];
+        if (color != -1) {
+          weight[color] += cursor.weight();
+        }
+      }
+
+      int best = -1;
+      double bestScore = 0;
+      for (int c = 0; c < numColors; c++) {
+        if (sizes[c] == capacities[c]) {
+          continue;
+        }
+        double score = fennel
+                ? weight[c] - alpha * FENNEL_GAMMA * Math.pow(sizes[c], FENNEL_GAMMA - 1)
+                : weight[c] * (1 - (double) sizes[c] / capacities[c]);
+        // ties go to the emptier color
+        if (best == -1 || score > bestScore || (score == bestScore && sizes[c] < sizes[best])) {
+          best = c;
+          bestScore = score;
+        }
+      }
+      colors[v] = best;
+      sizes[best]++;
+
+      cursor.start(v);
+      for (int i = 0; i < degree; i++) {
+        int color = colors[cursor.next()];
+        if (color != -1) {
+          weight[color] = 0;
+        }
+      }
+    }
+    return colors;
+  }
+
+  /**
+   * BFS region growing: grows the colors one after the other by breadth-first search, the next
+   * color continuing from the frontier of the previous one. A new search starts from the next
+   * uncolored vertex of the stream whenever the frontier runs out, e.g. in another component.
+   *
+   * @param order the stream, a permutation of the vertices
+   * @return the color of every vertex
+   */
+  public static int[] bfs(Graph graph, int numColors, int[] order) {
+    Adjacency.Cursor cursor = graph.getAdjacency().cursor();
+    int n = graph.size();
+    int[] capacities = capacities(n, numColors);
+    int[] colors = new int[n];
+    Arrays.fill(colors, -1);
+    // vertices are queued once, when first reached
+    int[] queue = new int[n];
+    boolean[] queued = new boolean[n];
+    int head = 0;
+    int tail = 0;
+    int next = 0;
+    int color = 0;
+    int size = 0;
+    for (int colored = 0; colored < n; colored++) {
+      if (head == tail) {
+        while (queued[order[next]]) {
+          next++;
+        }
+        queued[order[next]] = true;
+        queue[tail++] = order[next];
+      }
+      int v = queue[head++];
+      while (size == capacities[color]) {
+        color++;
+        size = 0;
+      }
+      colors[v] = color;
+      size++;
+      for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+        int u = cursor.next();
+        if (!queued[u]) {
+          queued[u] = true;
+          queue[tail++] = u;
+        }
+      }
+    }
+    return colors;
+  }
+}
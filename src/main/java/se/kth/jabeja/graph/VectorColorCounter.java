@@ -0,0 +1,51 @@
+package se.kth.jabeja.graph;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ColorCounter} on the Vector API: the colors of a vector of neighbours are gathered at
+ * once and compared in the lanes. Only loaded through {@link ColorCounter#get()}, which checks
+ * that the incubator module is present. Lists shorter than a vector are counted by the scalar
+ * tail, so low degree vertices cost about as much as with the scalar kernel.
+ */
+final class VectorColorCounter extends ColorCounter {
+
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+  /**
+   * Above this many colors, comparing every gathered vector with every color costs more than
+   * counting the neighbours one by one
+   */
+  private static final int MAX_VECTOR_COLORS = 16;
+
+  @Override
+  public int count(int[] targets, int from, int to, int[] colors, int color) {
+    int count = 0;
+    int e = from;
+    for (int bound = to - SPECIES.length(); e <= bound; e += SPECIES.length()) {
+      count += IntVector.fromArray(SPECIES, colors, 0, targets, e).eq(color).trueCount();
+    }
+    for (; e < to; e++) {
+      if (colors[targets[e]] == color) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public void countAll(int[] targets, int from, int to, int[] colors, int numColors, int[] counts, int offset) {
+    int e = from;
+    if (numColors <= MAX_VECTOR_COLORS) {
+      for (int bound = to - SPECIES.length(); e <= bound; e += SPECIES.length()) {
+        IntVector neighbourColors = IntVector.fromArray(SPECIES, colors, 0, targets, e);
+        for (int c = 0; c < numColors; c++) {
+          counts[offset + c] += neighbourColors.eq(c).trueCount();
+        }
+      }
+    }
+    for (; e < to; e++) {
+      counts[offset + colors[targets[e]]]++;
+    }
+  }
+}
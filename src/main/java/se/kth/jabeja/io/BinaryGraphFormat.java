@@ -0,0 +1,266 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.MappedAdjacency;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary graph format that is opened with {@link FileChannel#map} instead of being parsed.
+ *
+ * Layout (little endian, every section starts 8 byte aligned):
+ * <pre>
+ *   header         64 bytes: magic "JBJGRAPH", int version, int flags, long numNodes, long numTargets
+ *   ids            int[numNodes]      original vertex ids
+ *   offsets        long[numNodes + 1] CSR offsets into targets
+ *   targets        int[numTargets]    dense neighbour indices
+ *   edge weights   int[numTargets]    only if flags contains EDGE_WEIGHTS
+ *   vertex weights int[numNodes]      only if flags contains VERTEX_WEIGHTS
+ * </pre>
+ */
+public class BinaryGraphFormat {
+
+  final static Logger logger = Logger.getLogger(BinaryGraphFormat.class);
+
+  public static final byte[] MAGIC = {'J', 'B', 'J', 'G', 'R', 'A', 'P', 'H'};
+  public static final int VERSION = 1;
+  public static final int EDGE_WEIGHTS = 1;
+  public static final int VERTEX_WEIGHTS = 2;
+
+  private static final int HEADER_SIZE = 64;
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private BinaryGraphFormat() {
+  }
+
+  /**
+   * Topology of a mapped graph file.
+   */
+  public static class MappedGraph {
+    private final Adjacency adjacency;
+    private final int[] ids;
+    private final int[] vertexWeights;
+
+    MappedGraph(Adjacency adjacency, int[] ids, int[] vertexWeights) {
+      this.adjacency = adjacency;
+      this.ids = ids;
+      this.vertexWeights = vertexWeights;
+    }
+
+    public Adjacency getAdjacency() {
+      return adjacency;
+    }
+
+    public int[] getIds() {
+      return ids;
+    }
+
+    /**
+     * @return vertex weights or null if the graph has none
+     */
+    public int[] getVertexWeights() {
+      return vertexWeights;
+    }
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  /**
+   * Writes the topology of the graph; colors are not stored.
+   */
+  public static void write(Graph graph, String path) throws IOException {
+    Adjacency adjacency = graph.getAdjacency();
+    int n = graph.size();
+    int flags = (adjacency.hasWeights() ? EDGE_WEIGHTS : 0) | (graph.hasVertexWeights() ? VERTEX_WEIGHTS : 0);
+
+    try (Writer writer = new Writer(path, n, adjacency.numTargets(), flags)) {
+      for (int v = 0; v < n; v++) {
+        writer.putInt(graph.getId(v));
+      }
+      writer.pad();
+
+      long offset = 0;
+      writer.putLong(offset);
+      for (int v = 0; v < n; v++) {
+        offset += adjacency.degree(v);
+        writer.putLong(offset);
+      }
+
+      for (int v = 0; v < n; v++) {
+        for (int i = 0, degree = adjacency.degree(v); i < degree; i++) {
+          writer.putInt(adjacency.neighbour(v, i));
+        }
+      }
+      writer.pad();
+
+      if ((flags & EDGE_WEIGHTS) != 0) {
+        for (int v = 0; v < n; v++) {
+          for (int i = 0, degree = adjacency.degree(v); i < degree; i++) {
+            writer.putInt(adjacency.weight(v, i));
+          }
+        }
+        writer.pad();
+      }
+
+      if ((flags & VERTEX_WEIGHTS) != 0) {
+        for (int v = 0; v < n; v++) {
+          writer.putInt(graph.vertexWeight(v));
+        }
+        writer.pad();
+      }
+    }
+  }
+
+  /**
+   * Streams the sections of a binary graph file in order; after the header the caller
+   * writes the ids, offsets, targets and weights, calling {@link #pad()} after each section.
+   */
+  static class Writer implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    Writer(String path, int numNodes, long numTargets, int flags) throws IOException {
+      channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      buf.put(MAGIC).putInt(VERSION).putInt(flags).putLong(numNodes).putLong(numTargets);
+      while (buf.position() < HEADER_SIZE) {
+        buf.put((byte) 0);
+      }
+    }
+
+    void putInt(int value) throws IOException {
+      if (buf.remaining() < Integer.BYTES) {
+        flush();
+      }
+      buf.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+      if (buf.remaining() < Long.BYTES) {
+        flush();
+      }
+      buf.putLong(value);
+    }
+
+    /**
+     * Aligns the next section to 8 bytes.
+     */
+    void pad() throws IOException {
+      long written = channel.position() + buf.position();
+      if (align(written) != written) {
+        putInt(0);
+      }
+    }
+
+    private void flush() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        channel.write(buf);
+      }
+      buf.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Maps a binary graph file. Only the ids (and vertex weights) are copied onto the heap,
+   * offsets and neighbour lists are paged in on demand.
+   */
+  public static MappedGraph map(String path) throws IOException {
+    long start = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      byte[] magic = new byte[MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException(path + " is not a binary graph file");
+      }
+      int version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException(path + " has unsupported version " + version);
+      }
+      int flags = header.getInt();
+      long numNodes = header.getLong();
+      long m = header.getLong();
+      if (numNodes >= Integer.MAX_VALUE) {
+        throw new IOException(path + " has too many vertices: " + numNodes);
+      }
+      int n = (int) numNodes;
+
+      long idsPos = HEADER_SIZE;
+      long offsetsPos = idsPos + align(4L * n);
+      long targetsPos = offsetsPos + 8L * (n + 1);
+      long weightsPos = targetsPos + align(4L * m);
+      long vertexWeightsPos = weightsPos + ((flags & EDGE_WEIGHTS) != 0 ? align(4L * m) : 0);
+      long end = vertexWeightsPos + ((flags & VERTEX_WEIGHTS) != 0 ? align(4L * n) : 0);
+      if (channel.size() < end) {
+        throw new IOException(path + " is truncated, expected " + end + " bytes but found " + channel.size());
+      }
+
+      int[] ids = readInts(channel, idsPos, n);
+      LongBuffer[] offsets = mapLongs(channel, offsetsPos, n + 1L);
+      IntBuffer[] targets = mapInts(channel, targetsPos, m);
+      IntBuffer[] weights = (flags & EDGE_WEIGHTS) != 0 ? mapInts(channel, weightsPos, m) : null;
+      int[] vertexWeights = (flags & VERTEX_WEIGHTS) != 0 ? readInts(channel, vertexWeightsPos, n) : null;
+
+      logger.info(path + ". Nodes: " + n + ", Edges: " + (m / 2) + ", mapped in "
+              + (System.nanoTime() - start) / 1000000 + " ms");
+      return new MappedGraph(new MappedAdjacency(n, m, offsets, targets, weights), ids, vertexWeights);
+    }
+  }
+
+  private static int[] readInts(FileChannel channel, long pos, int count) throws IOException {
+    int[] values = new int[count];
+    IntBuffer[] segments = mapInts(channel, pos, count);
+    int i = 0;
+    for (IntBuffer segment : segments) {
+      int length = segment.remaining();
+      segment.get(values, i, length);
+      i += length;
+    }
+    return values;
+  }
+
+  private static IntBuffer[] mapInts(FileChannel channel, long pos, long count) throws IOException {
+    long segmentSize = 1L << MappedAdjacency.SEGMENT_SHIFT;
+    IntBuffer[] segments = new IntBuffer[(int) Math.max(1, (count + segmentSize - 1) / segmentSize)];
+    for (int s = 0; s < segments.length; s++) {
+      long length = Math.min(segmentSize, count - s * segmentSize);
+      segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, pos + 4L * s * segmentSize, 4L * length)
+              .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+    return segments;
+  }
+
+  private static LongBuffer[] mapLongs(FileChannel channel, long pos, long count) throws IOException {
+    long segmentSize = 1L << MappedAdjacency.SEGMENT_SHIFT;
+    LongBuffer[] segments = new LongBuffer[(int) Math.max(1, (count + segmentSize - 1) / segmentSize)];
+    for (int s = 0; s < segments.length; s++) {
+      long length = Math.min(segmentSize, count - s * segmentSize);
+      segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, pos + 8L * s * segmentSize, 8L * length)
+              .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+    return segments;
+  }
+}
@@ -0,0 +1,41 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Graphs in the {@link BinaryGraphFormat}, memory mapped rather than read.
+ */
+public class BinaryGraphSource implements GraphSource {
+
+  @Override
+  public GraphFormat getFormat() {
+    return GraphFormat.BINARY;
+  }
+
+  @Override
+  public boolean accepts(byte[] head, int length) {
+    return length >= BinaryGraphFormat.MAGIC.length
+            && Arrays.equals(Arrays.copyOf(head, BinaryGraphFormat.MAGIC.length), BinaryGraphFormat.MAGIC);
+  }
+
+  @Override
+  public Graph read(String path) throws IOException {
+    BinaryGraphFormat.MappedGraph mapped = BinaryGraphFormat.map(path);
+    return new Graph(mapped.getAdjacency(), mapped.getIds(), mapped.getVertexWeights());
+  }
+
+  @Override
+  public Graph read(InputStream in, String name) throws IOException {
+    throw new IOException(name + ": binary graphs can only be memory mapped, store them uncompressed");
+  }
+
+  @Override
+  public void writeBinary(InputStream in, String name, String output) throws IOException {
+    throw new IOException(name + " is already a binary graph");
+  }
+}
@@ -0,0 +1,82 @@
+package se.kth.jabeja.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Splits an input stream into lines without decoding them into Strings. Lines end at '\n';
+ * a trailing line without '\n' is returned if it is not empty, as {@link java.io.BufferedReader#readLine}
+ * does. The current line is buffer()[start() .. end()) and is only valid until the next call to {@link #next()}.
+ */
+class ByteLineReader {
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final InputStream in;
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int limit;
+  private int start;
+  private int end;
+  private int next;
+  private int scan;
+  private boolean eof;
+
+  ByteLineReader(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * @return false if there are no more lines
+   */
+  boolean next() throws IOException {
+    while (true) {
+      for (int i = Math.max(next, scan); i < limit; i++) {
+        if (buffer[i] == '\n') {
+          start = next;
+          end = i;
+          next = i + 1;
+          return true;
+        }
+      }
+
+      if (eof) {
+        if (next < limit) {
+          start = next;
+          end = limit;
+          next = limit;
+          return true;
+        }
+        return false;
+      }
+
+      // keep the partial line and refill
+      int partial = limit - next;
+      if (partial == buffer.length) {
+        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+      } else {
+        System.arraycopy(buffer, next, buffer, 0, partial);
+      }
+      limit = partial;
+      next = 0;
+      scan = partial;
+      int read = in.read(buffer, limit, buffer.length - limit);
+      if (read < 0) {
+        eof = true;
+      } else {
+        limit += read;
+      }
+    }
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int start() {
+    return start;
+  }
+
+  int end() {
+    return end;
+  }
+}
@@ -3,10 +3,17 @@ package se.kth.jabeja.io;
 import org.apache.log4j.Logger;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.ParserProperties;
 import se.kth.jabeja.AnnealingType;
+import se.kth.jabeja.config.AdjacencyLayout;
 import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.ExecutionMode;
+import se.kth.jabeja.config.GraphFormat;
 import se.kth.jabeja.config.GraphInitColorPolicy;
 import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.TransportType;
+import se.kth.jabeja.config.VertexOrdering;
+import se.kth.jabeja.config.VisitOrder;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -50,7 +57,7 @@ public class CLI {
   @Option(name = "-randNeighborsSampleSize", usage = "Number of random neighbors sample size.")
   private int randNeighborsSampleSize = 3;
 
-  @Option(name = "-graphInitColorSelectionPolicy", usage = "Initial color celection policy. Supported, RANDOM, ROUND_ROBIN, BATCH")
+  @Option(name = "-graphInitColorSelectionPolicy", usage = "Initial color celection policy. Supported, RANDOM, ROUND_ROBIN, BATCH, LDG, FENNEL, BFS, FROM_FILE (reads the partition file given by -initPartition)")
   private String GRAPH_INIT_COLOR_SELECTION_POLICY = "ROUND_ROBIN";
   private GraphInitColorPolicy graphInitColorSelectionPolicy = GraphInitColorPolicy.ROUND_ROBIN;
 
@@ -61,12 +68,101 @@ public class CLI {
   @Option(name = "-graph", usage = "Location of the input graph.")
   private static String GRAPH = "./graphs/ws-250.graph";
 
+  @Option(name = "-graphFormat", usage = "Format of the input graph (AUTO, JOSTLE, EDGE_LIST, EDGE_LIST_SYMMETRIC, BINARY). Gzip compressed files are detected.")
+  private GraphFormat graphFormat = GraphFormat.AUTO;
+
+  @Option(name = "-adjacency", usage = "In-memory layout of the neighbour lists (CSR, COMPRESSED).")
+  private AdjacencyLayout adjacencyLayout = AdjacencyLayout.CSR;
+
+  @Option(name = "-reorder", usage = "Renumbering of the vertices for cache locality (NONE, BFS, RCM, DEGREE, GORDER).")
+  private VertexOrdering vertexOrdering = VertexOrdering.NONE;
+
+  @Option(name = "-visitOrder", usage = "Order of the vertices within a round (SEQUENTIAL, SHUFFLED, DEGREE_DESC).")
+  private VisitOrder visitOrder = VisitOrder.SEQUENTIAL;
+
+  @Option(name = "-verifyCounters", usage = "Recount the edge cut and migrations every round and fail if they differ from the incremental counters.")
+  private boolean verifyCounters = false;
+
+  @Option(name = "-threads", usage = "Number of threads working on a single run. Swaps are applied concurrently with striped locks.")
+  private int threads = 1;
+
+  @Option(name = "-mode", usage = "Execution of the rounds (ASYNCHRONOUS, BSP, SHARDED). BSP and SHARDED runs are identical for a seed whatever the number of threads or shards.")
+  private ExecutionMode executionMode = ExecutionMode.ASYNCHRONOUS;
+
+  @Option(name = "-shards", usage = "Number of shards in SHARDED mode.")
+  private int shards = 4;
+
+  @Option(name = "-transport", usage = "Transport between the shards in SHARDED mode (LOCAL, SOCKET).")
+  private TransportType transport = TransportType.LOCAL;
+
+  @Option(name = "-stopSwaps", usage = "Stop once a round makes at most this many swaps, -1 to never stop on swaps.")
+  private int stopSwaps = -1;
+
+  @Option(name = "-stopEpsilon", usage = "Stop once the edge cut improves by at most this fraction over -stopWindow rounds, -1 to never stop on it.")
+  private double stopEpsilon = -1;
+
+  @Option(name = "-stopWindow", usage = "Rounds over which the edge cut improvement is compared with -stopEpsilon.")
+  private int stopWindow = 50;
+
+  @Option(name = "-stopFrozen", usage = "Stop once the temperature is at its floor and no swap was made for this many rounds, -1 to never stop on it.")
+  private int stopFrozen = -1;
+
+  @Option(name = "-activeSet", usage = "Between the full sweeps of -fullSweepEvery, visit only the vertices whose color or a neighbour's color changed in the previous round. Sequential ASYNCHRONOUS runs only.")
+  private boolean activeSet = false;
+
+  @Option(name = "-fullSweepEvery", usage = "With -activeSet, visit all vertices every this many rounds, 0 for only the first round. Vertices that found no swap may find one when visited again, as they draw new candidates and acceptance numbers.")
+  private int fullSweepEvery = 10;
+
+  @Option(name = "-multilevel", usage = "Coarsen the graph by heavy-edge matching, run -rounds rounds on the coarsest graph and refine the projected colors at every finer level.")
+  private boolean multilevel = false;
+
+  @Option(name = "-coarsenTo", usage = "With -multilevel, stop coarsening once the graph has at most this many vertices.")
+  private int coarsenTo = 200;
+
+  @Option(name = "-refineRounds", usage = "With -multilevel, rounds at every level finer than the coarsest.")
+  private int refineRounds = 50;
+
+  @Option(name = "-deltas", usage = "Comma separated delta files the Repartitioner applies one after the other, each followed by an incremental refinement.")
+  private String deltas = "";
+
+  @Option(name = "-deltaRounds", usage = "Rounds of the incremental refinement after a delta, only vertices near a change are visited.")
+  private int deltaRounds = 10;
+
+  @Option(name = "-migrationPenalty", usage = "Subtracted from the benefit of a swap for every vertex it moves away from its initial color, 0 to disable.")
+  private double migrationPenalty = 0;
+
+  @Option(name = "-gainBuckets", usage = "Replace half of the uniform random sample by the vertices of the other colors that gain most from taking the color of the vertex, kept in gain buckets. Only for sequential ASYNCHRONOUS runs.")
+  private boolean gainBuckets = false;
+
+  @Option(name = "-initPartition", usage = "Partition file the FROM_FILE initial color policy reads, one partition per vertex in the order of the vertex ids, or its binary equivalent.")
+  private String initPartition = "";
+
+  @Option(name = "-checkpointEvery", usage = "Write a checkpoint of every run to the output directory every this many rounds, 0 to disable. The checkpoint is deleted once the run completes.")
+  private int checkpointEvery = 0;
+
+  @Option(name = "-resume", usage = "Continue every run from its checkpoint in the output directory, if there is one.")
+  private boolean resume = false;
+
+  @Option(name = "-sweep", usage = "Parameter grid file of the Sweep runner, one comma separated list of values per parameter.")
+  private String sweep = "";
+
+  @Option(name = "-sweepThreads", usage = "Number of runs of the Sweep runner in parallel, 0 for one per core.")
+  private int sweepThreads = 0;
+
+  @Option(name = "-race", usage = "Race the runs of the Sweep runner by successive halving: every rung runs the remaining configurations with their annealing compressed into fewer rounds, and only those with the lowest edge cuts go on to the next rung.")
+  private boolean race = false;
+
+  @Option(name = "-raceEta", usage = "With -race, one configuration in this many goes on at every rung, and every rung has this many times more rounds than the one before.")
+  private int raceEta = 3;
+
+  @Option(name = "-raceFirstRung", usage = "With -race, rounds of the first rung, 0 for rounds / raceEta^2.")
+  private int raceFirstRung = 0;
+
   @Option(name = "-outputDir", usage = "Location of the output file(s)")
   private static String OUTPUT_DIR = "./output";
 
   public Config parseArgs(String[] args) throws FileNotFoundException {
-    CmdLineParser parser = new CmdLineParser(this);
-    parser.setUsageWidth(80);
+    CmdLineParser parser = new CmdLineParser(this, ParserProperties.defaults().withUsageWidth(80));
     try {
       // parse the arguments.
       parser.parseArgument(args);
@@ -76,6 +172,17 @@ public class CLI {
         graphInitColorSelectionPolicy = GraphInitColorPolicy.BATCH;
       } else if (GRAPH_INIT_COLOR_SELECTION_POLICY.compareToIgnoreCase(GraphInitColorPolicy.ROUND_ROBIN.toString()) == 0) {
         graphInitColorSelectionPolicy = GraphInitColorPolicy.ROUND_ROBIN;
+      } else if (GRAPH_INIT_COLOR_SELECTION_POLICY.compareToIgnoreCase(GraphInitColorPolicy.LDG.toString()) == 0) {
+        graphInitColorSelectionPolicy = GraphInitColorPolicy.LDG;
+      } else if (GRAPH_INIT_COLOR_SELECTION_POLICY.compareToIgnoreCase(GraphInitColorPolicy.FENNEL.toString()) == 0) {
+        graphInitColorSelectionPolicy = GraphInitColorPolicy.FENNEL;
+      } else if (GRAPH_INIT_COLOR_SELECTION_POLICY.compareToIgnoreCase(GraphInitColorPolicy.BFS.toString()) == 0) {
+        graphInitColorSelectionPolicy = GraphInitColorPolicy.BFS;
+      } else if (GRAPH_INIT_COLOR_SELECTION_POLICY.compareToIgnoreCase(GraphInitColorPolicy.FROM_FILE.toString()) == 0) {
+        graphInitColorSelectionPolicy = GraphInitColorPolicy.FROM_FILE;
+        if (initPartition.isEmpty()) {
+          throw new IllegalArgumentException("The FROM_FILE initial color policy needs -initPartition");
+        }
       } else {
         throw new IllegalArgumentException("Initial color selection policy is not supported");
       }
@@ -90,6 +197,46 @@ public class CLI {
         throw new IllegalArgumentException("Node selection policy is not supported");
       }
 
+      if (threads < 1) {
+        throw new IllegalArgumentException("At least one thread is needed");
+      }
+      if (shards < 1) {
+        throw new IllegalArgumentException("At least one shard is needed");
+      }
+      if (fullSweepEvery < 0) {
+        throw new IllegalArgumentException("The full sweep period can not be negative");
+      }
+      if (multilevel && executionMode == ExecutionMode.SHARDED) {
+        throw new IllegalArgumentException("Multilevel runs do not support the SHARDED mode");
+      }
+      if (coarsenTo < 1) {
+        throw new IllegalArgumentException("Coarsening needs at least one vertex to stop at");
+      }
+      if (checkpointEvery < 0) {
+        throw new IllegalArgumentException("The checkpoint period can not be negative");
+      }
+      if (multilevel && (checkpointEvery > 0 || resume)) {
+        throw new IllegalArgumentException("Multilevel runs can not be checkpointed");
+      }
+      if (deltaRounds < 0) {
+        throw new IllegalArgumentException("The delta rounds can not be negative");
+      }
+      if (migrationPenalty < 0) {
+        throw new IllegalArgumentException("The migration penalty can not be negative");
+      }
+      if (sweepThreads < 0) {
+        throw new IllegalArgumentException("The sweep threads can not be negative");
+      }
+      if (raceEta < 2) {
+        throw new IllegalArgumentException("The race eta must be at least 2");
+      }
+      if (raceFirstRung < 0) {
+        throw new IllegalArgumentException("The first rung of the race can not be negative");
+      }
+      if (stopWindow < 1) {
+        throw new IllegalArgumentException("The stop window needs at least one round");
+      }
+
     } catch (Exception e) {
       logger.error(e.getMessage());
       parser.printUsage(System.err);
@@ -114,6 +261,36 @@ public class CLI {
             .setSeed(SEED)
             .setTemperature(TEMPERATURE)
             .setGraphFilePath(GRAPH)
+            .setGraphFormat(graphFormat)
+            .setAdjacencyLayout(adjacencyLayout)
+            .setVertexOrdering(vertexOrdering)
+            .setVisitOrder(visitOrder)
+            .setVerifyCounters(verifyCounters)
+            .setThreads(threads)
+            .setExecutionMode(executionMode)
+            .setShards(shards)
+            .setTransport(transport)
+            .setStopSwaps(stopSwaps)
+            .setStopEpsilon(stopEpsilon)
+            .setStopWindow(stopWindow)
+            .setStopFrozen(stopFrozen)
+            .setActiveSet(activeSet)
+            .setFullSweepEvery(fullSweepEvery)
+            .setMultilevel(multilevel)
+            .setCoarsenTo(coarsenTo)
+            .setRefineRounds(refineRounds)
+            .setDeltas(deltas)
+            .setDeltaRounds(deltaRounds)
+            .setMigrationPenalty(migrationPenalty)
+            .setCheckpointEvery(checkpointEvery)
+            .setResume(resume)
+            .setInitPartition(initPartition)
+            .setGainBuckets(gainBuckets)
+            .setSweep(sweep)
+            .setSweepThreads(sweepThreads)
+            .setRace(race)
+            .setRaceEta(raceEta)
+            .setRaceFirstRung(raceFirstRung)
             .setNodeSelectionPolicy(nodeSelectionPolicy)
             .setGraphInitialColorPolicy(graphInitColorSelectionPolicy)
             .setOutputDir(OUTPUT_DIR)
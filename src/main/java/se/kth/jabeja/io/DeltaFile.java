@@ -0,0 +1,64 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.graph.GraphDelta;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text file of changes to a graph, one per line, by original vertex id:
+ * <pre>
+ *   +v id [weight]     add a vertex
+ *   -v id              remove a vertex and its edges
+ *   +e u v [weight]    add the edge {u, v}
+ *   -e u v             remove the edge {u, v}
+ * </pre>
+ * Empty lines and lines starting with % or # are skipped.
+ */
+public class DeltaFile {
+
+  private DeltaFile() {
+  }
+
+  public static GraphDelta read(String path) throws IOException {
+    GraphDelta delta = new GraphDelta();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.US_ASCII))) {
+      String line;
+      int lineNumber = 0;
+      while ((line = in.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("%") || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split("\\s+");
+        try {
+          switch (fields[0]) {
+            case "+v":
+              delta.add(GraphDelta.Op.ADD_VERTEX, Integer.parseInt(fields[1]), 0,
+                      fields.length > 2 ? Integer.parseInt(fields[2]) : 1);
+              break;
+            case "-v":
+              delta.add(GraphDelta.Op.REMOVE_VERTEX, Integer.parseInt(fields[1]), 0, 0);
+              break;
+            case "+e":
+              delta.add(GraphDelta.Op.ADD_EDGE, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                      fields.length > 3 ? Integer.parseInt(fields[3]) : 1);
+              break;
+            case "-e":
+              delta.add(GraphDelta.Op.REMOVE_EDGE, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), 0);
+              break;
+            default:
+              throw new IllegalArgumentException("unknown change " + fields[0]);
+          }
+        } catch (RuntimeException e) {
+          throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+    }
+    return delta;
+  }
+}
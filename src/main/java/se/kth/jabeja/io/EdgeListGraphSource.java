@@ -0,0 +1,245 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.CsrAdjacency;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Edge lists with one "source target" pair per line, separated by spaces or tabs; further
+ * columns (e.g. weights) are ignored. Vertex ids may be any non-negative ints and are renumbered
+ * densely in increasing order.
+ *
+ * Edges are packed into longs (source &lt;&lt; 32 | target) and symmetrised and deduplicated with an
+ * {@link ExternalLongSorter}, which spills to disk, so no boxed maps are needed and inputs larger
+ * than the heap can be converted with {@link #writeBinary}. Self loops are dropped.
+ */
+public class EdgeListGraphSource implements GraphSource {
+  final static Logger logger = Logger.getLogger(EdgeListGraphSource.class);
+
+  private final boolean mirror;
+  private final int sortBufferSize;
+
+  /**
+   * @param mirror add every edge in both directions; false if the input already lists both
+   */
+  public EdgeListGraphSource(boolean mirror) {
+    this(mirror, (int) Math.min(1 << 26, Math.max(1 << 20, Runtime.getRuntime().maxMemory() / 4 / Long.BYTES)));
+  }
+
+  /**
+   * @param sortBufferSize number of edges sorted in memory before a run is spilled to disk
+   */
+  public EdgeListGraphSource(boolean mirror, int sortBufferSize) {
+    this.mirror = mirror;
+    this.sortBufferSize = sortBufferSize;
+  }
+
+  @Override
+  public GraphFormat getFormat() {
+    return mirror ? GraphFormat.EDGE_LIST : GraphFormat.EDGE_LIST_SYMMETRIC;
+  }
+
+  @Override
+  public boolean accepts(byte[] head, int length) {
+    HeadLines lines = new HeadLines(head, length);
+    int edges = 0;
+    while (lines.next()) {
+      if (lines.count() == 0) {
+        continue;
+      }
+      if (lines.count() < 2 || lines.count() > 3) {
+        return false;
+      }
+      edges++;
+    }
+    return lines.valid() && edges > 0;
+  }
+
+  @Override
+  public Graph read(String path) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+      return read(in, path);
+    }
+  }
+
+  @Override
+  public Graph read(InputStream in, String name) throws IOException {
+    long start = System.nanoTime();
+    try (ExternalLongSorter edges = sortEdges(in, name)) {
+      Vertices vertices = collectVertices(edges);
+      if (vertices.numTargets > Integer.MAX_VALUE - 8) {
+        throw new IOException(name + " has too many edges to be held on the heap, convert it to the binary format");
+      }
+
+      int n = vertices.n;
+      int[] offsets = new int[n + 1];
+      for (int v = 0; v < n; v++) {
+        offsets[v + 1] = offsets[v] + vertices.degrees[v];
+      }
+      int[] targets = new int[(int) vertices.numTargets];
+      int[] next = {0};
+      edges.forEachSortedUnique(edge -> targets[next[0]++] = vertices.indexOf(target(edge), name));
+
+      int[] ids = Arrays.copyOf(vertices.ids, n);
+
+      logger.info(name + ". Nodes: " + n + ", Edges: " + vertices.numTargets / 2 + ", read in "
+              + (System.nanoTime() - start) / 1000000 + " ms");
+      return new Graph(new CsrAdjacency(offsets, targets, null), ids, null);
+    }
+  }
+
+  /**
+   * Streams the sorted edges into the binary format; only the vertex ids and degrees are held on the heap.
+   */
+  @Override
+  public void writeBinary(InputStream in, String name, String output) throws IOException {
+    try (ExternalLongSorter edges = sortEdges(in, name)) {
+      Vertices vertices = collectVertices(edges);
+      int n = vertices.n;
+      try (BinaryGraphFormat.Writer writer = new BinaryGraphFormat.Writer(output, n, vertices.numTargets, 0)) {
+        for (int v = 0; v < n; v++) {
+          writer.putInt(vertices.ids[v]);
+        }
+        writer.pad();
+
+        long offset = 0;
+        writer.putLong(offset);
+        for (int v = 0; v < n; v++) {
+          offset += vertices.degrees[v];
+          writer.putLong(offset);
+        }
+
+        IOException[] failure = {null};
+        edges.forEachSortedUnique(edge -> {
+          if (failure[0] == null) {
+            try {
+              writer.putInt(vertices.indexOf(target(edge), name));
+            } catch (IOException e) {
+              failure[0] = e;
+            }
+          }
+        });
+        if (failure[0] != null) {
+          throw failure[0];
+        }
+        writer.pad();
+      }
+      logger.info(name + ". Nodes: " + n + ", Edges: " + vertices.numTargets / 2 + " written to " + output);
+    }
+  }
+
+  private static long edge(int source, int target) {
+    return ((long) source << 32) | (target & 0xffffffffL);
+  }
+
+  private static int source(long edge) {
+    return (int) (edge >>> 32);
+  }
+
+  private static int target(long edge) {
+    return (int) edge;
+  }
+
+  private ExternalLongSorter sortEdges(InputStream in, String name) throws IOException {
+    ExternalLongSorter edges = new ExternalLongSorter(sortBufferSize);
+    ByteLineReader reader = new ByteLineReader(in);
+    long lineNo = 0;
+    int[] pair = new int[2];
+    while (reader.next()) {
+      lineNo++;
+      byte[] line = reader.buffer();
+      int start = reader.start();
+      int end = reader.end();
+      if (end > start && (line[start] == '%' || line[start] == '#')) {
+        continue;
+      }
+      int count = parsePair(line, start, end, pair);
+      if (count == 0) {
+        continue;
+      }
+      if (count < 2) {
+        throw new IOException(name + ": line " + lineNo + " is not an edge");
+      }
+      if (pair[0] == pair[1]) {
+        continue;
+      }
+      edges.add(edge(pair[0], pair[1]));
+      if (mirror) {
+        edges.add(edge(pair[1], pair[0]));
+      }
+    }
+    return edges;
+  }
+
+  /**
+   * @return number of ids parsed into pair (at most 2), -1 if the line holds something else
+   */
+  private static int parsePair(byte[] line, int pos, int end, int[] pair) {
+    int count = 0;
+    while (count < 2) {
+      while (pos < end && (line[pos] == ' ' || line[pos] == '\t' || line[pos] == '\r')) {
+        pos++;
+      }
+      if (pos == end) {
+        break;
+      }
+      long value = 0;
+      while (pos < end && line[pos] != ' ' && line[pos] != '\t' && line[pos] != '\r') {
+        byte b = line[pos++];
+        if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+          return -1;
+        }
+        value = 10 * value + (b - '0');
+      }
+      if (value > Integer.MAX_VALUE) {
+        return -1;
+      }
+      pair[count++] = (int) value;
+    }
+    return count;
+  }
+
+  /**
+   * Distinct sources of the sorted edges, i.e. every vertex that has an edge, in increasing id order.
+   */
+  private static class Vertices {
+    int n;
+    int[] ids = new int[1024];
+    int[] degrees = new int[1024];
+    long numTargets;
+
+    void add(int source) {
+      if (n == 0 || ids[n - 1] != source) {
+        if (n == ids.length) {
+          ids = Arrays.copyOf(ids, 2 * n);
+          degrees = Arrays.copyOf(degrees, 2 * n);
+        }
+        ids[n++] = source;
+      }
+      degrees[n - 1]++;
+      numTargets++;
+    }
+
+    int indexOf(int id, String name) {
+      int v = Arrays.binarySearch(ids, 0, n, id);
+      if (v < 0) {
+        throw new IllegalArgumentException(name + ": vertex " + id + " has an incoming but no outgoing edge, "
+                + "the edge list is not symmetric, read it as " + GraphFormat.EDGE_LIST);
+      }
+      return v;
+    }
+  }
+
+  private static Vertices collectVertices(ExternalLongSorter edges) throws IOException {
+    Vertices vertices = new Vertices();
+    edges.forEachSortedUnique(edge -> vertices.add(source(edge)));
+    return vertices;
+  }
+}
@@ -0,0 +1,192 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Sorts and deduplicates a stream of longs that may not fit on the heap.
+ *
+ * Values are collected in a fixed size buffer. Whenever it is full it is sorted,
+ * deduplicated and spilled to a temporary run file. The runs are then merged with
+ * a binary heap of primitive run heads. The sorted values can be iterated more than
+ * once; the run files are deleted on {@link #close()}.
+ */
+class ExternalLongSorter implements Closeable {
+  final static Logger logger = Logger.getLogger(ExternalLongSorter.class);
+
+  private static final int RUN_BUFFER_SIZE = 1 << 18;
+
+  private final long[] buffer;
+  private int size;
+  private boolean sorted;
+  private final List<File> runs = new ArrayList<File>();
+  private final List<Long> runLengths = new ArrayList<Long>();
+
+  /**
+   * @param bufferSize number of values held in memory before spilling a run
+   */
+  ExternalLongSorter(int bufferSize) {
+    this.buffer = new long[bufferSize];
+  }
+
+  void add(long value) throws IOException {
+    if (size == buffer.length) {
+      spill();
+    }
+    buffer[size++] = value;
+    sorted = false;
+  }
+
+  private void sortUnique() {
+    if (sorted) {
+      return;
+    }
+    Arrays.parallelSort(buffer, 0, size);
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || buffer[i] != buffer[unique - 1]) {
+        buffer[unique++] = buffer[i];
+      }
+    }
+    size = unique;
+    sorted = true;
+  }
+
+  private void spill() throws IOException {
+    sortUnique();
+    File run = File.createTempFile("jabeja-sort", ".run");
+    run.deleteOnExit();
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE))) {
+      for (int i = 0; i < size; i++) {
+        out.writeLong(buffer[i]);
+      }
+    }
+    runs.add(run);
+    runLengths.add((long) size);
+    logger.debug("Spilled run " + runs.size() + " with " + size + " values to " + run);
+    size = 0;
+  }
+
+  /**
+   * Passes all distinct values in increasing order to the consumer.
+   */
+  void forEachSortedUnique(LongConsumer consumer) throws IOException {
+    if (runs.isEmpty()) {
+      sortUnique();
+      for (int i = 0; i < size; i++) {
+        consumer.accept(buffer[i]);
+      }
+      return;
+    }
+
+    if (size > 0) {
+      spill();
+    }
+
+    int numRuns = runs.size();
+    DataInputStream[] in = new DataInputStream[numRuns];
+    long[] remaining = new long[numRuns];
+    long[] heads = new long[numRuns];
+    int[] heap = new int[numRuns];
+    int heapSize = 0;
+    try {
+      for (int r = 0; r < numRuns; r++) {
+        in[r] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(r)), RUN_BUFFER_SIZE));
+        remaining[r] = runLengths.get(r);
+        if (remaining[r] > 0) {
+          heads[r] = in[r].readLong();
+          remaining[r]--;
+          heap[heapSize++] = r;
+          siftUp(heap, heads, heapSize - 1);
+        }
+      }
+
+      boolean first = true;
+      long last = 0;
+      while (heapSize > 0) {
+        int r = heap[0];
+        long value = heads[r];
+        if (first || value != last) {
+          consumer.accept(value);
+          last = value;
+          first = false;
+        }
+
+        if (remaining[r] > 0) {
+          heads[r] = in[r].readLong();
+          remaining[r]--;
+        } else {
+          heap[0] = heap[--heapSize];
+        }
+        siftDown(heap, heads, heapSize);
+      }
+    } finally {
+      for (DataInputStream stream : in) {
+        if (stream != null) {
+          stream.close();
+        }
+      }
+    }
+  }
+
+  private static void siftUp(int[] heap, long[] heads, int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (heads[heap[parent]] <= heads[heap[i]]) {
+        return;
+      }
+      swap(heap, i, parent);
+      i = parent;
+    }
+  }
+
+  private static void siftDown(int[] heap, long[] heads, int heapSize) {
+    int i = 0;
+    while (true) {
+      int smallest = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < heapSize && heads[heap[left]] < heads[heap[smallest]]) {
+        smallest = left;
+      }
+      if (right < heapSize && heads[heap[right]] < heads[heap[smallest]]) {
+        smallest = right;
+      }
+      if (smallest == i) {
+        return;
+      }
+      swap(heap, i, smallest);
+      i = smallest;
+    }
+  }
+
+  private static void swap(int[] heap, int i, int j) {
+    int tmp = heap[i];
+    heap[i] = heap[j];
+    heap[j] = tmp;
+  }
+
+  @Override
+  public void close() {
+    for (File run : runs) {
+      if (!run.delete()) {
+        logger.warn("Unable to delete " + run);
+      }
+    }
+    runs.clear();
+    runLengths.clear();
+  }
+}
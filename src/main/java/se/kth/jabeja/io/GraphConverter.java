@@ -0,0 +1,60 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.kohsuke.args4j.ParserProperties;
+import se.kth.jabeja.config.GraphFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts a graph of any readable {@link GraphFormat}, optionally gzip compressed, into the
+ * {@link BinaryGraphFormat}. Edge lists are streamed through an external sort, so they may be
+ * larger than the heap.
+ *
+ * Usage: java -cp jabeja.jar se.kth.jabeja.io.GraphConverter -input graphs/3elt.graph -output graphs/3elt.bin
+ */
+public class GraphConverter {
+  final static Logger logger = Logger.getLogger(GraphConverter.class);
+
+  @Option(name = "-input", usage = "Graph to convert.", required = true)
+  private String INPUT;
+
+  @Option(name = "-format", usage = "Format of the input graph (AUTO, JOSTLE, EDGE_LIST, EDGE_LIST_SYMMETRIC).")
+  private GraphFormat FORMAT = GraphFormat.AUTO;
+
+  @Option(name = "-output", usage = "Location of the binary graph. Defaults to the input with a .bin extension.")
+  private String OUTPUT;
+
+  public static void main(String[] args) throws IOException {
+    GraphConverter converter = new GraphConverter();
+    CmdLineParser parser = new CmdLineParser(converter, ParserProperties.defaults().withUsageWidth(80));
+    try {
+      parser.parseArgument(args);
+    } catch (CmdLineException e) {
+      logger.error(e.getMessage());
+      parser.printUsage(System.err);
+      System.exit(-1);
+    }
+    converter.convert();
+  }
+
+  private void convert() throws IOException {
+    if (OUTPUT == null) {
+      OUTPUT = INPUT.replaceAll("(\\.gz)?$", "").replaceAll("\\.[^./]*$", "") + ".bin";
+    }
+
+    long start = System.nanoTime();
+    GraphSource source = GraphSources.forFile(INPUT, FORMAT);
+    try (InputStream in = GraphSources.open(INPUT)) {
+      source.writeBinary(in, INPUT, OUTPUT);
+    }
+
+    logger.info("Converted " + INPUT + " (" + new File(INPUT).length() + " bytes) to " + OUTPUT
+            + " (" + new File(OUTPUT).length() + " bytes) in " + (System.nanoTime() - start) / 1000000 + " ms");
+  }
+}
@@ -1,14 +1,19 @@
 package se.kth.jabeja.io;
 
 import org.apache.log4j.Logger;
-import se.kth.jabeja.Node;
-import se.kth.jabeja.rand.RandNoGenerator;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.CompressedAdjacency;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.Reordering;
+import se.kth.jabeja.graph.StreamingColoring;
+import se.kth.jabeja.rand.SplitMix64;
+import se.kth.jabeja.config.AdjacencyLayout;
+import se.kth.jabeja.config.GraphFormat;
 import se.kth.jabeja.config.GraphInitColorPolicy;
+import se.kth.jabeja.config.VertexOrdering;
 
 import java.io.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Created by salman on 10/24/16.
@@ -22,14 +27,81 @@ public class GraphReader {
 
   /**
    * read graph form a file
-   * The file format is discussed here
+   * The file format is detected from its content, see {@link #readGraph(String, GraphFormat)}
+   *
+   * @param graphFilePath
+   * @return
+   */
+  public Graph readGraph(final String graphFilePath) {
+    return readGraph(graphFilePath, GraphFormat.AUTO);
+  }
+
+  /**
+   * read graph form a file through the {@link GraphSource} of its format.
+   * Jostle files are discussed here
    * http://chriswalshaw.co.uk/jostle/jostle-exe.pdf
+   * and parsed in parallel by the {@link JostleParser}, files in the
+   * {@link BinaryGraphFormat} are memory mapped instead of parsed.
+   * The returned graph holds only the topology, see {@link #colorGraph} for its initial colors.
+   *
+   * @param graphFilePath
+   * @param format format of the file, AUTO to detect it
+   * @return
+   */
+  public Graph readGraph(final String graphFilePath, final GraphFormat format) {
+    try {
+      return GraphSources.forFile(graphFilePath, format).read(graphFilePath);
+    } catch (IOException e) {
+      throw new UncheckedIOException("can not read from file " + graphFilePath, e);
+    }
+  }
+
+  /**
+   * Same as {@link #readGraph(String, GraphFormat)}, holding the neighbour lists in the given layout.
+   */
+  public Graph readGraph(final String graphFilePath, final GraphFormat format, final AdjacencyLayout layout) {
+    return readGraph(graphFilePath, format, VertexOrdering.NONE, layout);
+  }
+
+  /**
+   * Same as {@link #readGraph(String, GraphFormat, AdjacencyLayout)}, renumbering the vertices for
+   * cache locality before the layout is applied. The original ids are kept, see {@link Graph#getId(int)}.
+   */
+  public Graph readGraph(final String graphFilePath, final GraphFormat format, final VertexOrdering ordering,
+                         final AdjacencyLayout layout) {
+    Graph graph = readGraph(graphFilePath, format);
+    if (ordering != VertexOrdering.NONE) {
+      long start = System.nanoTime();
+      graph = Reordering.apply(graph, ordering);
+      logger.info(String.format("Reordered %d vertices by %s in %d ms", graph.size(), ordering,
+              (System.nanoTime() - start) / 1000000));
+    }
+    if (layout == AdjacencyLayout.COMPRESSED) {
+      long start = System.nanoTime();
+      long before = graph.getAdjacency().sizeInBytes();
+      graph = graph.withAdjacency(CompressedAdjacency.of(graph.getAdjacency()));
+      logger.info(String.format("Compressed adjacency from %d to %d bytes (%.2f bytes/edge) in %d ms", before,
+              graph.getAdjacency().sizeInBytes(), (double) graph.getAdjacency().sizeInBytes() / graph.numTargets(),
+              (System.nanoTime() - start) / 1000000));
+    }
+    return graph;
+  }
+
+  /**
+   * Reads a graph in the Jostle format line by line on the calling thread.
+   * Vertex ids are the 1-based line numbers of the vertex lines, comment lines are not counted.
    *
    * @param graphFilePath
    * @return
    */
-  public HashMap<Integer, Node> readGraph(final String graphFilePath, final GraphInitColorPolicy colorPolicy, final int noOfPartitions) {
-    final HashMap<Integer, Node> nodes = new HashMap<Integer, Node>();
+  public Graph readGraphSequential(final String graphFilePath) {
+    int[] ids = new int[0];
+    int[] offsets = new int[]{0};
+    int[] targets = new int[0];
+    int[] edgeWeights = null;
+    int[] vertexWeights = null;
+    int numVertices = 0;
+    int numTargets = 0;
     try {
       String strLine;
       FileInputStream fis = new FileInputStream(new File(graphFilePath));
@@ -38,9 +110,11 @@ public class GraphReader {
 
       int numNodes = 0;
       int numEdges = 0;
+      int format = 0;
 
       // first uncommented line contain information about
-      // number of nodes and number of edges
+      // number of nodes and number of edges and optionally the format
+      // of the following lines (1 = edge weights, 10 = vertex weights)
       while ((strLine = br.readLine()) != null) {
         if (strLine.startsWith("%") || strLine.startsWith("#"))
           continue;
@@ -48,47 +122,139 @@ public class GraphReader {
         String[] parts = strLine.split(DELIMETER);
         numNodes = Integer.parseInt(parts[0]);
         numEdges = Integer.parseInt(parts[1]);
+        if (parts.length > 2) {
+          format = Integer.parseInt(parts[2]);
+        }
         break;
       }
 
       logger.info(graphFilePath + ". Nodes: " + numNodes + ", Edges: " + numEdges);
 
+      // every undirected edge is listed once at each of its end points
+      ids = new int[numNodes];
+      offsets = new int[numNodes + 1];
+      targets = new int[2 * numEdges];
+      boolean hasEdgeWeights = format % 10 == 1;
+      boolean hasVertexWeights = (format / 10) % 10 == 1;
+      if (hasEdgeWeights) {
+        edgeWeights = new int[targets.length];
+      }
+      if (hasVertexWeights) {
+        vertexWeights = new int[numNodes];
+      }
+
       int id = 0;
-      int partitionSize = numNodes / noOfPartitions;
 
       while ((strLine = br.readLine()) != null) {
 
-        id++;
-        ArrayList<Integer> neighbours = new ArrayList<Integer>();
-
         if (strLine.startsWith("%") || strLine.startsWith("#")) {
           continue;
         }
 
+        id++;
+
+        if (numVertices == ids.length) {
+          ids = Arrays.copyOf(ids, Math.max(1, 2 * ids.length));
+          offsets = Arrays.copyOf(offsets, ids.length + 1);
+          if (hasVertexWeights) {
+            vertexWeights = Arrays.copyOf(vertexWeights, ids.length);
+          }
+        }
+
         String[] parts = strLine.split(DELIMETER);
+        boolean expectVertexWeight = hasVertexWeights;
+        boolean expectEdgeWeight = false;
         for (int i = 0; i < parts.length; i++) {
           if (parts[i].equals(EMPTY_STRING)) {
             continue;
           }
-          neighbours.add(Integer.parseInt(parts[i]));
+          int value = Integer.parseInt(parts[i]);
+          if (expectVertexWeight) {
+            vertexWeights[numVertices] = value;
+            expectVertexWeight = false;
+          } else if (expectEdgeWeight) {
+            edgeWeights[numTargets - 1] = value;
+            expectEdgeWeight = false;
+          } else {
+            if (numTargets == targets.length) {
+              targets = Arrays.copyOf(targets, Math.max(16, 2 * targets.length));
+              if (hasEdgeWeights) {
+                edgeWeights = Arrays.copyOf(edgeWeights, targets.length);
+              }
+            }
+            targets[numTargets++] = value;
+            expectEdgeWeight = hasEdgeWeights;
+          }
         }
 
-
-        int color = getColor(numNodes, noOfPartitions, id, colorPolicy);
-
-        Node node = new Node(id, color);
-        node.setNeighbours(neighbours);
-        nodes.put(id, node);
+        ids[numVertices] = id;
+        numVertices++;
+        offsets[numVertices] = numTargets;
       }
 
       fis.close();
     } catch (IOException e) {
       System.err.println("can not read from file " + graphFilePath);
     }
-    printColorDistribution(nodes);
-    return nodes;
+
+    return Graph.fromIds(Arrays.copyOf(ids, numVertices), Arrays.copyOf(offsets, numVertices + 1),
+            targets, edgeWeights, vertexWeights == null ? null : Arrays.copyOf(vertexWeights, numVertices));
+  }
+
+  /**
+   * Colors the graph according to the policy. Every run gets its own coloring while
+   * the graph itself is shared.
+   *
+   * @param graph
+   * @param colorPolicy
+   * @param noOfPartitions
+   * @param random generator of the run, drawn from by the RANDOM policy
+   * @return the initial coloring
+   */
+  public Coloring colorGraph(final Graph graph, final GraphInitColorPolicy colorPolicy, final int noOfPartitions,
+                             final SplitMix64 random) {
+    return colorGraph(graph, colorPolicy, noOfPartitions, random, null);
   }
 
+  /**
+   * Same as {@link #colorGraph(Graph, GraphInitColorPolicy, int, SplitMix64)}, reading the colors of the
+   * FROM_FILE policy from the given partition file, see {@link PartitionFile#read(String, Graph, int)}.
+   */
+  public Coloring colorGraph(final Graph graph, final GraphInitColorPolicy colorPolicy, final int noOfPartitions,
+                             final SplitMix64 random, final String partitionFile) {
+    // positions follow the input file, so a reordered graph starts from the same partitions
+    int[] order = graph.originalOrder();
+    int[] colors;
+    switch (colorPolicy) {
+      case LDG:
+        colors = StreamingColoring.ldg(graph, noOfPartitions, order);
+        break;
+      case FENNEL:
+        colors = StreamingColoring.fennel(graph, noOfPartitions, order);
+        break;
+      case BFS:
+        colors = StreamingColoring.bfs(graph, noOfPartitions, order);
+        break;
+      case FROM_FILE:
+        if (partitionFile == null || partitionFile.isEmpty()) {
+          throw new IllegalArgumentException(colorPolicy + " needs a partition file");
+        }
+        try {
+          colors = PartitionFile.read(partitionFile, graph, noOfPartitions);
+        } catch (IOException e) {
+          throw new UncheckedIOException("can not read the partitions from file " + partitionFile, e);
+        }
+        break;
+      default:
+        colors = new int[graph.size()];
+        for (int i = 0; i < order.length; i++) {
+          colors[order[i]] = getColor(colors.length, noOfPartitions, i + 1, colorPolicy, random);
+        }
+    }
+    Coloring coloring = new Coloring(graph, colors, noOfPartitions);
+    printColorDistribution(coloring);
+    return coloring;
+  }
 
   /**
    * Generate a color according to the policy.
@@ -96,11 +262,12 @@ public class GraphReader {
    *
    * @param numNodes
    * @param numPartitions
-   * @param id
+   * @param id 1-based position of the vertex
    * @param colorPolicy
+   * @param random
    * @return color
    */
-  private int getColor(int numNodes, int numPartitions, int id, GraphInitColorPolicy colorPolicy) {
+  private int getColor(int numNodes, int numPartitions, int id, GraphInitColorPolicy colorPolicy, SplitMix64 random) {
     if (colorPolicy == GraphInitColorPolicy.BATCH) {
       double partitionSize = (double) numNodes / (double) numPartitions;
       for (int i = 0; i < numPartitions; i++) {
@@ -111,7 +278,7 @@ public class GraphReader {
       }
       throw new IllegalStateException(colorPolicy + " Unable to determine color for id: " + id);
     } else if (colorPolicy == GraphInitColorPolicy.RANDOM) {
-      return RandNoGenerator.nextInt(numPartitions);
+      return random.nextInt(numPartitions);
 
     } else if (colorPolicy == GraphInitColorPolicy.ROUND_ROBIN) {
       return id % numPartitions;
@@ -123,22 +290,24 @@ public class GraphReader {
   /**
    * Prints the distribution of the colors of the graph
    *
-   * @param graph input graph
+   * @param coloring coloring of the input graph
    */
-  private void printColorDistribution(HashMap<Integer, Node> graph) {
-    Map<Integer, Integer> distribution = new HashMap<Integer, Integer>();
-    for (int i : graph.keySet()) {
-      int color = graph.get(i).getColor();
-      Integer count = distribution.get(color);
-      if (count == null) {
-        count = new Integer(0);
+  private void printColorDistribution(Coloring coloring) {
+    int[] distribution = new int[0];
+    for (int v = 0; v < coloring.size(); v++) {
+      int color = coloring.getColor(v);
+      if (color >= distribution.length) {
+        distribution = Arrays.copyOf(distribution, color + 1);
       }
-      distribution.put(color, new Integer(count + 1));
+      distribution[color]++;
     }
 
     StringBuffer sb = new StringBuffer("Color Distribution : ");
-    for (int i : distribution.keySet()) {
-      int count = distribution.get(i);
+    for (int i = 0; i < distribution.length; i++) {
+      int count = distribution[i];
+      if (count == 0) {
+        continue;
+      }
       sb.append("[ Color: ").append(i).append(",").append(" Count: ").append(count).append(" ] ");
     }
 
@@ -0,0 +1,41 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads graphs of one {@link GraphFormat}. Sources are looked up by {@link GraphSources}; further
+ * sources can be plugged in through {@link java.util.ServiceLoader} by listing them in
+ * META-INF/services/se.kth.jabeja.io.GraphSource.
+ */
+public interface GraphSource {
+
+  GraphFormat getFormat();
+
+  /**
+   * @param head   the first bytes of the (decompressed) file
+   * @param length number of valid bytes in head
+   * @return true if the content looks like this format
+   */
+  boolean accepts(byte[] head, int length);
+
+  Graph read(String path) throws IOException;
+
+  /**
+   * Reads the graph from a stream, e.g. a decompressing one.
+   *
+   * @param name name of the input for logging
+   */
+  Graph read(InputStream in, String name) throws IOException;
+
+  /**
+   * Converts the graph into the {@link BinaryGraphFormat}. The default implementation builds
+   * the graph on the heap first.
+   */
+  default void writeBinary(InputStream in, String name, String output) throws IOException {
+    BinaryGraphFormat.write(read(in, name), output);
+  }
+}
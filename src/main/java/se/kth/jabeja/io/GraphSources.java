@@ -0,0 +1,119 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphFormat;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Looks up the {@link GraphSource} for a file, either by the configured {@link GraphFormat}
+ * or by sniffing the first bytes of the file.
+ */
+public class GraphSources {
+
+  static final int HEAD_SIZE = 1 << 16;
+  private static final int STREAM_BUFFER_SIZE = 1 << 20;
+
+  private GraphSources() {
+  }
+
+  /**
+   * @return the built in sources followed by the ones registered through the ServiceLoader,
+   * in the order they are tried during detection
+   */
+  public static List<GraphSource> sources() {
+    List<GraphSource> sources = new ArrayList<GraphSource>();
+    sources.add(new BinaryGraphSource());
+    sources.add(new JostleGraphSource());
+    sources.add(new EdgeListGraphSource(true));
+    for (GraphSource source : ServiceLoader.load(GraphSource.class)) {
+      sources.add(source);
+    }
+    return sources;
+  }
+
+  public static GraphSource forFormat(GraphFormat format) {
+    switch (format) {
+      case JOSTLE: return new JostleGraphSource();
+      case EDGE_LIST: return new EdgeListGraphSource(true);
+      case EDGE_LIST_SYMMETRIC: return new EdgeListGraphSource(false);
+      case BINARY: return new BinaryGraphSource();
+      default: throw new IllegalArgumentException("No graph source for " + format);
+    }
+  }
+
+  /**
+   * @param format the configured format, {@link GraphFormat#AUTO} to detect it
+   * @return the source for the file, wrapped in a {@link GzipGraphSource} if it is compressed
+   */
+  public static GraphSource forFile(String path, GraphFormat format) throws IOException {
+    byte[] head = new byte[HEAD_SIZE];
+    int length;
+    try (InputStream in = new FileInputStream(path)) {
+      length = readFully(in, head);
+    }
+    if (isGzip(head, length)) {
+      return new GzipGraphSource(format);
+    }
+    return format == GraphFormat.AUTO ? detect(head, length, path) : forFormat(format);
+  }
+
+  /**
+   * Detects the format of an uncompressed stream without consuming it.
+   *
+   * @param in stream supporting mark, see {@link #open(String)}
+   */
+  static GraphSource detect(InputStream in, String name) throws IOException {
+    byte[] head = new byte[HEAD_SIZE];
+    in.mark(HEAD_SIZE);
+    int length = readFully(in, head);
+    in.reset();
+    return detect(head, length, name);
+  }
+
+  private static GraphSource detect(byte[] head, int length, String name) throws IOException {
+    for (GraphSource source : sources()) {
+      if (source.accepts(head, length)) {
+        return source;
+      }
+    }
+    throw new IOException("Unable to detect the format of " + name + ", set it explicitly");
+  }
+
+  static boolean isGzip(byte[] head, int length) {
+    return length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b;
+  }
+
+  /**
+   * Opens a file for streaming, decompressing it if it is gzip compressed. The stream supports mark.
+   */
+  public static InputStream open(String path) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(path), STREAM_BUFFER_SIZE);
+    byte[] magic = new byte[2];
+    in.mark(magic.length);
+    int length = readFully(in, magic);
+    in.reset();
+    if (isGzip(magic, length)) {
+      in = new BufferedInputStream(new GZIPInputStream(in, STREAM_BUFFER_SIZE), STREAM_BUFFER_SIZE);
+    }
+    return in;
+  }
+
+  private static int readFully(InputStream in, byte[] bytes) throws IOException {
+    int length = 0;
+    while (length < bytes.length) {
+      int read = in.read(bytes, length, bytes.length - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+}
@@ -0,0 +1,57 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Gzip compressed graphs. The file is decompressed while it is streamed into the source of
+ * the wrapped format, it is never inflated on disk or as a whole in memory.
+ */
+public class GzipGraphSource implements GraphSource {
+
+  private final GraphFormat format;
+
+  /**
+   * @param format format of the compressed content, {@link GraphFormat#AUTO} to detect it
+   */
+  public GzipGraphSource(GraphFormat format) {
+    this.format = format;
+  }
+
+  @Override
+  public GraphFormat getFormat() {
+    return format;
+  }
+
+  @Override
+  public boolean accepts(byte[] head, int length) {
+    return GraphSources.isGzip(head, length);
+  }
+
+  @Override
+  public Graph read(String path) throws IOException {
+    try (InputStream in = GraphSources.open(path)) {
+      return inner(in, path).read(in, path);
+    }
+  }
+
+  @Override
+  public Graph read(InputStream in, String name) throws IOException {
+    return inner(in, name).read(in, name);
+  }
+
+  @Override
+  public void writeBinary(InputStream in, String name, String output) throws IOException {
+    inner(in, name).writeBinary(in, name, output);
+  }
+
+  /**
+   * @param in the decompressed stream, must support mark
+   */
+  private GraphSource inner(InputStream in, String name) throws IOException {
+    return format == GraphFormat.AUTO ? GraphSources.detect(in, name) : GraphSources.forFormat(format);
+  }
+}
@@ -0,0 +1,98 @@
+package se.kth.jabeja.io;
+
+/**
+ * Tokenizes the complete, uncommented lines at the start of a file for format detection.
+ * Only lines made of non-negative integers are valid.
+ */
+class HeadLines {
+  private static final int MAX_TOKENS = 16;
+
+  private final byte[] head;
+  private final int length;
+  private final long[] values = new long[MAX_TOKENS];
+  private int pos;
+  private int count;
+  private long max;
+  private boolean valid = true;
+
+  HeadLines(byte[] head, int length) {
+    this.head = head;
+    this.length = length;
+  }
+
+  /**
+   * Advances to the next complete uncommented line.
+   *
+   * @return false at the end of the head or at the first invalid line
+   */
+  boolean next() {
+    while (valid) {
+      int end = pos;
+      while (end < length && head[end] != '\n') {
+        end++;
+      }
+      if (end == length) {
+        return false;
+      }
+      int start = pos;
+      pos = end + 1;
+      if (end > start && (head[start] == '%' || head[start] == '#')) {
+        continue;
+      }
+      if (tokenize(start, end)) {
+        return true;
+      }
+      valid = false;
+    }
+    return false;
+  }
+
+  private boolean tokenize(int pos, int end) {
+    count = 0;
+    max = 0;
+    while (true) {
+      while (pos < end && isSpace(head[pos])) {
+        pos++;
+      }
+      if (pos == end) {
+        return true;
+      }
+      long value = 0;
+      while (pos < end && !isSpace(head[pos])) {
+        byte b = head[pos++];
+        if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+          return false;
+        }
+        value = 10 * value + (b - '0');
+      }
+      if (count < MAX_TOKENS) {
+        values[count] = value;
+      }
+      count++;
+      max = Math.max(max, value);
+    }
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r';
+  }
+
+  int count() {
+    return count;
+  }
+
+  long value(int i) {
+    return values[i];
+  }
+
+  long max() {
+    return max;
+  }
+
+  /**
+   * @return false if a line that was not a list of integers was found
+   */
+  boolean valid() {
+    return valid;
+  }
+}
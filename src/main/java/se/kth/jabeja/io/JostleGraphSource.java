@@ -0,0 +1,48 @@
+package se.kth.jabeja.io;
+
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Jostle/METIS adjacency lists, parsed with the {@link JostleParser}.
+ */
+public class JostleGraphSource implements GraphSource {
+
+  @Override
+  public GraphFormat getFormat() {
+    return GraphFormat.JOSTLE;
+  }
+
+  /**
+   * The first line must be a header of 2 to 4 numbers and every following line may only
+   * refer to vertex ids in [1, nodes]. An edge list fails the latter almost immediately.
+   */
+  @Override
+  public boolean accepts(byte[] head, int length) {
+    HeadLines lines = new HeadLines(head, length);
+    if (!lines.next() || lines.count() < 2 || lines.count() > 4) {
+      return false;
+    }
+    long numNodes = lines.value(0);
+    boolean weighted = lines.count() > 2 && lines.value(2) != 0;
+    while (lines.next()) {
+      if (!weighted && lines.max() > numNodes) {
+        return false;
+      }
+    }
+    return lines.valid();
+  }
+
+  @Override
+  public Graph read(String path) throws IOException {
+    return new JostleParser().parse(path);
+  }
+
+  @Override
+  public Graph read(InputStream in, String name) throws IOException {
+    return new JostleParser().parse(in, name);
+  }
+}
@@ -0,0 +1,424 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.CsrAdjacency;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel parser for graphs in the Jostle/METIS text format.
+ *
+ * The body of the file is split into line aligned chunks that are read and parsed
+ * straight from bytes on a fork-join pool, without creating a String per line.
+ * The chunks are then stitched together into CSR arrays. Vertex ids are the 1-based
+ * line numbers of the vertex lines; comment lines (starting with % or #) are not
+ * counted. The result is the same as {@link GraphReader#readGraphSequential}.
+ */
+public class JostleParser {
+  final static Logger logger = Logger.getLogger(JostleParser.class);
+
+  static final int MIN_CHUNK_SIZE = 1 << 20;
+  private static final int MAX_CHUNK_SIZE = 64 << 20;
+  private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+  private final ForkJoinPool pool;
+
+  public JostleParser() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public JostleParser(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * @param path  graph file
+   * @return the parsed graph
+   */
+  public Graph parse(String path) throws IOException {
+    long start = System.nanoTime();
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      Header header = readHeader(channel, path);
+      logger.info(path + ". Nodes: " + header.numNodes + ", Edges: " + header.numEdges);
+
+      long bodySize = fileSize - header.bodyStart;
+      long chunkSize = Math.min(MAX_CHUNK_SIZE,
+              Math.max(MIN_CHUNK_SIZE, bodySize / (4L * pool.getParallelism()) + 1));
+      List<Chunk> chunks = new ArrayList<Chunk>();
+      long chunkStart = header.bodyStart;
+      while (chunkStart < fileSize) {
+        long chunkEnd = chunkStart + chunkSize >= fileSize ? fileSize : nextLineStart(channel, chunkStart + chunkSize);
+        chunks.add(new Chunk(channel, header, chunkStart, (int) (chunkEnd - chunkStart), bodySize));
+        chunkStart = chunkEnd;
+      }
+
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          ForkJoinTask.invokeAll(chunks);
+        }
+      });
+
+      int numVertices = 0;
+      long numTargets = 0;
+      for (Chunk chunk : chunks) {
+        chunk.lines.firstVertex = numVertices;
+        chunk.lines.firstTarget = (int) numTargets;
+        numVertices += chunk.lines.lines;
+        numTargets += chunk.lines.numValues;
+      }
+      if (numTargets > Integer.MAX_VALUE) {
+        throw new IOException(path + " has too many edges for the text reader, convert it to the binary format");
+      }
+
+      final int n = numVertices;
+      final int[] offsets = new int[n + 1];
+      final int[] targets = new int[(int) numTargets];
+      final int[] edgeWeights = header.hasEdgeWeights() ? new int[targets.length] : null;
+      final int[] vertexWeights = header.hasVertexWeights() ? new int[n] : null;
+      offsets[n] = targets.length;
+
+      List<RecursiveAction> copies = new ArrayList<RecursiveAction>();
+      for (final Chunk chunk : chunks) {
+        copies.add(new RecursiveAction() {
+          @Override
+          protected void compute() {
+            chunk.lines.copyTo(n, offsets, targets, edgeWeights, vertexWeights);
+          }
+        });
+      }
+      pool.invoke(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          ForkJoinTask.invokeAll(copies);
+        }
+      });
+
+      double seconds = (System.nanoTime() - start) / 1e9;
+      logger.info(String.format("Parsed %s (%d bytes) in %d chunks, %.0f ms, %.1f MB/s", path, fileSize,
+              chunks.size(), seconds * 1000, fileSize / 1e6 / seconds));
+
+      return new Graph(new CsrAdjacency(offsets, targets, edgeWeights), ids(n), vertexWeights);
+    }
+  }
+
+  private static class Header {
+    int numNodes;
+    int numEdges;
+    int format;
+    long bodyStart;
+
+    boolean hasEdgeWeights() {
+      return format % 10 == 1;
+    }
+
+    boolean hasVertexWeights() {
+      return (format / 10) % 10 == 1;
+    }
+  }
+
+  /**
+   * Reads the first uncommented line, containing the number of nodes, the number of edges and
+   * optionally the format (1 = edge weights, 10 = vertex weights).
+   */
+  private static Header readHeader(FileChannel channel, String path) throws IOException {
+    long lineStart = 0;
+    while (lineStart < channel.size()) {
+      long lineEnd = nextLineStart(channel, lineStart + 1);
+      byte[] line = read(channel, lineStart, (int) Math.min(lineEnd - lineStart, SCAN_BUFFER_SIZE));
+      lineStart = lineEnd;
+      if (line.length > 0 && (line[0] == '%' || line[0] == '#')) {
+        continue;
+      }
+
+      Header header = parseHeader(line, 0, line.length, path);
+      header.bodyStart = lineEnd;
+      return header;
+    }
+    throw new IOException(path + ": missing header");
+  }
+
+  private static Header parseHeader(byte[] line, int pos, int end, String name) throws IOException {
+    int[] values = new int[3];
+    int count = 0;
+    while (pos < end && count < values.length) {
+      while (pos < end && isSpace(line[pos])) {
+        pos++;
+      }
+      if (pos == end) {
+        break;
+      }
+      int value = 0;
+      while (pos < end && !isSpace(line[pos])) {
+        value = 10 * value + digit(line[pos++], 0);
+      }
+      values[count++] = value;
+    }
+    if (count < 2) {
+      throw new IOException(name + ": header must contain the number of nodes and edges");
+    }
+    Header header = new Header();
+    header.numNodes = values[0];
+    header.numEdges = values[1];
+    header.format = count > 2 ? values[2] : 0;
+    return header;
+  }
+
+  /**
+   * @return position of the first line start at or after pos, i.e. just past the next '\n' before it
+   */
+  private static long nextLineStart(FileChannel channel, long pos) throws IOException {
+    long size = channel.size();
+    ByteBuffer buf = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+    long readPos = pos - 1;
+    while (readPos < size) {
+      buf.clear();
+      int read = channel.read(buf, readPos);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buf.get(i) == '\n') {
+          return readPos + i + 1;
+        }
+      }
+      readPos += read;
+    }
+    return size;
+  }
+
+  private static byte[] read(FileChannel channel, long pos, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    ByteBuffer buf = ByteBuffer.wrap(bytes);
+    while (buf.hasRemaining()) {
+      if (channel.read(buf, pos + buf.position()) < 0) {
+        throw new IOException("Unexpected end of file at " + (pos + buf.position()));
+      }
+    }
+    return bytes;
+  }
+
+  private static boolean isSpace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  private static int digit(byte b, long pos) {
+    if (b < '0' || b > '9') {
+      throw new IllegalArgumentException("Unexpected character '" + (char) b + "' near byte " + pos);
+    }
+    return b - '0';
+  }
+
+  /**
+   * Parses a graph from a stream, e.g. a gzip compressed file, on the calling thread.
+   *
+   * @param in    graph in the Jostle format
+   * @param name  name of the input for logging
+   * @return the parsed graph
+   */
+  public Graph parse(InputStream in, String name) throws IOException {
+    long start = System.nanoTime();
+    ByteLineReader reader = new ByteLineReader(in);
+    Header header = null;
+    while (header == null && reader.next()) {
+      byte[] line = reader.buffer();
+      if (reader.end() > reader.start() && (line[reader.start()] == '%' || line[reader.start()] == '#')) {
+        continue;
+      }
+      header = parseHeader(line, reader.start(), reader.end(), name);
+    }
+    if (header == null) {
+      throw new IOException(name + ": missing header");
+    }
+    logger.info(name + ". Nodes: " + header.numNodes + ", Edges: " + header.numEdges);
+
+    Lines lines = new Lines(header, 1.0);
+    long bytes = 0;
+    while (reader.next()) {
+      byte[] line = reader.buffer();
+      bytes += reader.end() - reader.start() + 1;
+      if (reader.end() > reader.start() && (line[reader.start()] == '%' || line[reader.start()] == '#')) {
+        continue;
+      }
+      lines.parseLine(line, reader.start(), reader.end(), bytes);
+    }
+
+    int n = lines.lines;
+    int[] offsets = new int[n + 1];
+    int[] targets = new int[lines.numValues];
+    int[] edgeWeights = header.hasEdgeWeights() ? new int[targets.length] : null;
+    int[] vertexWeights = header.hasVertexWeights() ? new int[n] : null;
+    offsets[n] = targets.length;
+    lines.copyTo(n, offsets, targets, edgeWeights, vertexWeights);
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    logger.info(String.format("Parsed %s (%d bytes uncompressed), %.0f ms, %.1f MB/s", name, bytes,
+            seconds * 1000, bytes / 1e6 / seconds));
+    return new Graph(new CsrAdjacency(offsets, targets, edgeWeights), ids(n), vertexWeights);
+  }
+
+  private static int[] ids(int n) {
+    int[] ids = new int[n];
+    for (int v = 0; v < n; v++) {
+      ids[v] = v + 1;
+    }
+    return ids;
+  }
+
+  /**
+   * Vertex lines parsed into local arrays; the vertices and targets are later copied into
+   * the final arrays starting at firstVertex and firstTarget.
+   */
+  private static class Lines {
+    int lines;
+    int numValues;
+    int[] degrees;
+    int[] values;
+    int[] weights;
+    int[] vertexWeights;
+    int firstVertex;
+    int firstTarget;
+
+    /**
+     * @param share expected fraction of the body held by these lines, used to presize from the header
+     */
+    Lines(Header header, double share) {
+      degrees = new int[(int) (share * header.numNodes * 1.1) + 16];
+      values = new int[(int) (share * header.numEdges * 2 * 1.1) + 16];
+      weights = header.hasEdgeWeights() ? new int[values.length] : null;
+      vertexWeights = header.hasVertexWeights() ? new int[degrees.length] : null;
+    }
+
+    /**
+     * @param position file position of the line, for error messages
+     */
+    void parseLine(byte[] bytes, int pos, int end, long position) {
+      if (lines == degrees.length) {
+        degrees = Arrays.copyOf(degrees, 2 * degrees.length);
+        if (vertexWeights != null) {
+          vertexWeights = Arrays.copyOf(vertexWeights, degrees.length);
+        }
+      }
+
+      boolean expectVertexWeight = vertexWeights != null;
+      boolean expectEdgeWeight = false;
+      int degree = 0;
+      while (true) {
+        while (pos < end && isSpace(bytes[pos])) {
+          pos++;
+        }
+        if (pos == end) {
+          break;
+        }
+        int value = 0;
+        while (pos < end && !isSpace(bytes[pos])) {
+          value = 10 * value + digit(bytes[pos], position);
+          pos++;
+        }
+
+        if (expectVertexWeight) {
+          vertexWeights[lines] = value;
+          expectVertexWeight = false;
+        } else if (expectEdgeWeight) {
+          weights[numValues - 1] = value;
+          expectEdgeWeight = false;
+        } else {
+          if (numValues == values.length) {
+            values = Arrays.copyOf(values, 2 * values.length);
+            if (weights != null) {
+              weights = Arrays.copyOf(weights, values.length);
+            }
+          }
+          values[numValues++] = value;
+          degree++;
+          expectEdgeWeight = weights != null;
+        }
+      }
+      degrees[lines++] = degree;
+    }
+
+    /**
+     * Copies these lines into their slice of the final arrays, renumbering ids to dense indices.
+     */
+    void copyTo(int n, int[] offsets, int[] targets, int[] edgeWeights, int[] allVertexWeights) {
+      int offset = firstTarget;
+      for (int i = 0; i < lines; i++) {
+        offsets[firstVertex + i] = offset;
+        offset += degrees[i];
+      }
+      for (int i = 0; i < numValues; i++) {
+        int id = values[i];
+        if (id < 1 || id > n) {
+          throw new IllegalArgumentException("Edge to unknown vertex id: " + id);
+        }
+        targets[firstTarget + i] = id - 1;
+      }
+      if (edgeWeights != null) {
+        System.arraycopy(weights, 0, edgeWeights, firstTarget, numValues);
+      }
+      if (allVertexWeights != null) {
+        System.arraycopy(vertexWeights, 0, allVertexWeights, firstVertex, lines);
+      }
+    }
+  }
+
+  /**
+   * A line aligned range of the body of a file.
+   */
+  private static class Chunk extends RecursiveAction {
+    private final FileChannel channel;
+    private final Header header;
+    private final long start;
+    private final int length;
+    private final long bodySize;
+
+    Lines lines;
+
+    Chunk(FileChannel channel, Header header, long start, int length, long bodySize) {
+      this.channel = channel;
+      this.header = header;
+      this.start = start;
+      this.length = length;
+      this.bodySize = bodySize;
+    }
+
+    @Override
+    protected void compute() {
+      byte[] bytes;
+      try {
+        bytes = read(channel, start, length);
+      } catch (IOException e) {
+        throw new IllegalStateException("can not read from file at " + start, e);
+      }
+
+      // presize from the header: this chunk holds about its share of the lines and edges
+      lines = new Lines(header, bodySize == 0 ? 0 : (double) length / bodySize);
+
+      int pos = 0;
+      while (pos < length) {
+        int lineEnd = pos;
+        while (lineEnd < length && bytes[lineEnd] != '\n') {
+          lineEnd++;
+        }
+
+        if (bytes[pos] != '%' && bytes[pos] != '#') {
+          lines.parseLine(bytes, pos, lineEnd, start + pos);
+        }
+        pos = lineEnd + 1;
+      }
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package se.kth.jabeja.io;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Partition files in the METIS format: one line per vertex holding its partition, in the order
+ * of the original vertex ids, whatever the internal numbering of the graph.
+ *
+ * The binary equivalent (little endian) is a 24 byte header, magic "JBJPARTS", int version,
+ * int numPartitions, long numNodes, followed by int[numNodes] partitions in the same order.
+ */
+public class PartitionFile {
+
+  final static Logger logger = Logger.getLogger(PartitionFile.class);
+
+  public static final byte[] MAGIC = {'J', 'B', 'J', 'P', 'A', 'R', 'T', 'S'};
+  public static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 24;
+  /**
+   * Bytes mapped at once, text files larger than this are parsed segment by segment
+   */
+  private static final long SEGMENT_SIZE = 1L << 30;
+  /**
+   * Imbalance, the largest partition over the average, above which a read partition is reported
+   */
+  private static final double MAX_IMBALANCE = 1.05;
+
+  private PartitionFile() {
+  }
+
+  public static void write(Coloring coloring, String path) throws IOException {
+    Graph graph = coloring.getGraph();
+    int[] order = graph.originalOrder();
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.US_ASCII),
+            1 << 16)) {
+      for (int v : order) {
+        out.write(Integer.toString(coloring.getColor(v)));
+        out.write('\n');
+      }
+    }
+  }
+
+  public static void writeBinary(Coloring coloring, String path) throws IOException {
+    Graph graph = coloring.getGraph();
+    int[] order = graph.originalOrder();
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      buf.put(MAGIC).putInt(VERSION).putInt(coloring.getNumColors()).putLong(order.length);
+      for (int v : order) {
+        if (buf.remaining() < Integer.BYTES) {
+          flush(channel, buf);
+        }
+        buf.putInt(coloring.getColor(v));
+      }
+      flush(channel, buf);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buf) throws IOException {
+    buf.flip();
+    while (buf.hasRemaining()) {
+      channel.write(buf);
+    }
+    buf.clear();
+  }
+
+  /**
+   * Memory maps a text or binary partition file, told apart by the magic of the binary one, and
+   * checks that it has a partition in [0, numPartitions) for every vertex of the graph. Partitions
+   * more than 5% above the average size are reported, Jabeja keeps the sizes it starts from.
+   *
+   * @return the partition of every dense vertex index
+   */
+  public static int[] read(String path, Graph graph, int numPartitions) throws IOException {
+    long start = System.nanoTime();
+    int n = graph.size();
+    int[] partitions = new int[n];
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      if (isBinary(channel)) {
+        readBinary(channel, path, partitions, numPartitions);
+      } else {
+        readText(channel, path, partitions);
+      }
+    }
+
+    int[] order = graph.originalOrder();
+    int[] colors = new int[n];
+    int[] sizes = new int[numPartitions];
+    for (int i = 0; i < n; i++) {
+      int partition = partitions[i];
+      if (partition < 0 || partition >= numPartitions) {
+        throw new IOException(path + ": partition " + partition + " of vertex " + graph.getId(order[i])
+                + " is not in [0, " + numPartitions + ")");
+      }
+      colors[order[i]] = partition;
+      sizes[partition]++;
+    }
+    int largest = 0;
+    for (int size : sizes) {
+      largest = Math.max(largest, size);
+    }
+    double imbalance = (double) largest * numPartitions / n;
+    if (imbalance > MAX_IMBALANCE) {
+      logger.warn(String.format("%s is imbalanced: the largest partition is %.3f times the average", path, imbalance));
+    }
+    logger.info(String.format("Read %d partitions from %s in %d ms, imbalance %.3f", n, path,
+            (System.nanoTime() - start) / 1000000, imbalance));
+    return colors;
+  }
+
+  private static boolean isBinary(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) {
+      return false;
+    }
+    byte[] magic = new byte[MAGIC.length];
+    channel.map(FileChannel.MapMode.READ_ONLY, 0, MAGIC.length).get(magic);
+    return Arrays.equals(magic, MAGIC);
+  }
+
+  private static void readBinary(FileChannel channel, String path, int[] partitions, int numPartitions)
+          throws IOException {
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.position(MAGIC.length);
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException(path + " has unsupported version " + version);
+    }
+    int filePartitions = header.getInt();
+    long numNodes = header.getLong();
+    if (filePartitions > numPartitions) {
+      throw new IOException(path + " has " + filePartitions + " partitions, but the run has " + numPartitions);
+    }
+    if (numNodes != partitions.length) {
+      throw new IOException(path + " has partitions of " + numNodes + " vertices, but the graph has "
+              + partitions.length);
+    }
+    if (channel.size() != HEADER_SIZE + 4L * numNodes) {
+      throw new IOException(path + " should have " + (HEADER_SIZE + 4L * numNodes) + " bytes but has " + channel.size());
+    }
+    long segmentInts = SEGMENT_SIZE / 4;
+    for (long i = 0; i < numNodes; i += segmentInts) {
+      int length = (int) Math.min(segmentInts, numNodes - i);
+      channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + 4L * i, 4L * length)
+              .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(partitions, (int) i, length);
+    }
+  }
+
+  /**
+   * Parses whitespace separated non-negative numbers, a number may span two mapped segments.
+   */
+  private static void readText(FileChannel channel, String path, int[] partitions) throws IOException {
+    int count = 0;
+    long value = -1;
+    long size = channel.size();
+    for (long pos = 0; pos < size; pos += SEGMENT_SIZE) {
+      MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEGMENT_SIZE, size - pos));
+      while (segment.hasRemaining()) {
+        byte b = segment.get();
+        if (b >= '0' && b <= '9') {
+          value = (value == -1 ? 0 : 10 * value) + (b - '0');
+          if (value > Integer.MAX_VALUE) {
+            throw new IOException(path + ": partition of vertex " + (count + 1) + " is too large");
+          }
+        } else if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+          if (value != -1) {
+            count = add(partitions, count, (int) value, path);
+            value = -1;
+          }
+        } else {
+          throw new IOException(path + ": unexpected character '" + (char) b + "' in the partition of vertex "
+                  + (count + 1));
+        }
+      }
+    }
+    if (value != -1) {
+      count = add(partitions, count, (int) value, path);
+    }
+    if (count != partitions.length) {
+      throw new IOException(path + " has partitions of " + count + " vertices, but the graph has "
+              + partitions.length);
+    }
+  }
+
+  private static int add(int[] partitions, int count, int partition, String path) throws IOException {
+    if (count == partitions.length) {
+      throw new IOException(path + " has partitions of more than the " + partitions.length + " vertices of the graph");
+    }
+    partitions[count] = partition;
+    return count + 1;
+  }
+}
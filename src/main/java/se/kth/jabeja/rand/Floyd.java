@@ -0,0 +1,43 @@
+package se.kth.jabeja.rand;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Robert Floyd's algorithm for sampling without replacement. It draws exactly k random
+ * numbers, no matter how many collide, and writes the sample into a caller owned array,
+ * so nothing is allocated. The membership test is a linear scan, which beats hashing for
+ * the handful of candidates JaBeJa samples.
+ */
+public class Floyd {
+
+    private Floyd() {
+    }
+
+    /**
+     * Samples k distinct ints from [0, n) into out[offset, offset + k).
+     *
+     * @param nextInt uniform int in [0, bound) for a given bound
+     * @return k
+     */
+    public static int sample(IntUnaryOperator nextInt, int n, int k, int[] out, int offset) {
+        if (k > n) {
+            throw new IllegalArgumentException("Can not sample " + k + " distinct values out of " + n);
+        }
+        int end = offset;
+        for (int j = n - k; j < n; j++) {
+            int t = nextInt.applyAsInt(j + 1);
+            out[end] = contains(out, offset, end, t) ? j : t;
+            end++;
+        }
+        return k;
+    }
+
+    private static boolean contains(int[] values, int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,103 @@
+package se.kth.jabeja.rand;
+
+/**
+ * SplitMix64 generator (Steele, Lea and Flood). Its whole state is one long, so a
+ * generator can be cheaply re-seeded for every (seed, round, vertex), which makes the
+ * random numbers drawn for a vertex independent of the thread that evaluates it, and
+ * its state can be saved and restored.
+ *
+ * Every run and every thread of a run has a generator of its own, split from the
+ * generator of the seed, so runs neither contend on nor depend on a shared generator.
+ * As in {@link java.util.SplittableRandom}, a split generator gets an odd gamma (the
+ * increment of its state) of its own, so sibling streams are different sequences rather
+ * than shifted copies of one sequence that could overlap.
+ */
+public class SplitMix64 {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+    private final long gamma;
+
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMix64(long seed, long gamma) {
+        this.state = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Sets the state, keeping the gamma of the generator.
+     */
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * @return the state, from which {@link #setSeed(long)} continues the same sequence; the gamma of
+     * a split generator only depends on the state of its parent when it was split, so it is the same
+     * again when the parent is re-created and split in the same order
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * @return a new generator for an independent stream, its seed and gamma drawn from this one
+     */
+    public SplitMix64 split() {
+        long seed = nextLong();
+        state += gamma;
+        return new SplitMix64(seed, mixGamma(state));
+    }
+
+    /**
+     * Same as SplittableRandom#mixGamma: an odd gamma whose bits change often enough for the
+     * sequence to look random.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        return Long.bitCount(z ^ (z >>> 1)) < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    /**
+     * The SplitMix64 finaliser, a bijective mix of all the bits of z.
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        state += gamma;
+        return mix(state);
+    }
+
+    /**
+     * @return uniformly distributed int in [0, bound), without modulo bias
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33)) {
+        }
+        return r;
+    }
+
+    /**
+     * @return uniformly distributed double in [0, 1)
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,34 @@
+package se.kth.jabeja.shard;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of ints in which a shard collects the records of a batch.
+ */
+class IntList {
+  private int[] data = new int[16];
+  private int size;
+
+  void add(int value) {
+    if (size == data.length) {
+      data = Arrays.copyOf(data, 2 * data.length);
+    }
+    data[size++] = value;
+  }
+
+  int get(int index) {
+    return data[index];
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  int[] toArray() {
+    return Arrays.copyOf(data, size);
+  }
+}
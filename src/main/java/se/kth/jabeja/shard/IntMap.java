@@ -0,0 +1,85 @@
+package se.kth.jabeja.shard;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from vertex ids to ints, in which a shard keeps where the reply about a
+ * remote candidate starts. Its capacity follows the vertices queried in a round rather than the
+ * whole graph, and clearing it keeps the capacity for the next round.
+ */
+class IntMap {
+  private static final int EMPTY = -1;
+
+  private int[] keys;
+  private int[] values;
+  private int shift;
+  private int size;
+
+  IntMap() {
+    allocate(16);
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new int[capacity];
+    Arrays.fill(keys, EMPTY);
+    shift = Integer.numberOfLeadingZeros(capacity) + 1;
+  }
+
+  /**
+   * @return slot of the key, or of the empty entry where it would go
+   */
+  private int slot(int key) {
+    int mask = keys.length - 1;
+    // Fibonacci hashing, the high bits of the product mix all bits of the key
+    int i = (key * 0x9e3779b9) >>> shift;
+    while (keys[i] != key && keys[i] != EMPTY) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  /**
+   * @return the value of the key, -1 if there is none
+   */
+  int get(int key) {
+    int i = slot(key);
+    return keys[i] == EMPTY ? -1 : values[i];
+  }
+
+  /**
+   * @param key a vertex id, not negative
+   */
+  void put(int key, int value) {
+    int i = slot(key);
+    if (keys[i] == EMPTY) {
+      if (2 * (size + 1) > keys.length) {
+        grow();
+        i = slot(key);
+      }
+      keys[i] = key;
+      size++;
+    }
+    values[i] = value;
+  }
+
+  private void grow() {
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(2 * oldKeys.length);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int j = slot(oldKeys[i]);
+        keys[j] = oldKeys[i];
+        values[j] = oldValues[i];
+      }
+    }
+  }
+
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(keys, EMPTY);
+      size = 0;
+    }
+  }
+}
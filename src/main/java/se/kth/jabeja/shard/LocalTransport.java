@@ -0,0 +1,75 @@
+package se.kth.jabeja.shard;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process transport: the shards are threads of the same JVM and hand their batches over
+ * through shared mailboxes. Bytes are counted as if the batches had been framed on a socket.
+ */
+public class LocalTransport implements Transport {
+
+  /**
+   * mailbox[to][from] is the batch of the current superstep from shard from to shard to
+   */
+  private final int[][][] mailbox;
+  private final CyclicBarrier barrier;
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  public LocalTransport(int numShards) {
+    this.mailbox = new int[numShards][numShards][];
+    this.barrier = new CyclicBarrier(numShards);
+  }
+
+  @Override
+  public int[][] exchange(int shard, int[][] outgoing) throws IOException {
+    long sent = 0;
+    for (int to = 0; to < outgoing.length; to++) {
+      mailbox[to][shard] = outgoing[to];
+      if (to != shard) {
+        sent += Integer.BYTES * (1L + outgoing[to].length);
+      }
+    }
+    bytes.addAndGet(sent);
+    batches.addAndGet(outgoing.length - 1);
+
+    await();
+    int[][] incoming = mailbox[shard].clone();
+    // nobody may write the next superstep before everybody has read this one
+    await();
+    return incoming;
+  }
+
+  private void await() throws IOException {
+    try {
+      barrier.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while exchanging batches");
+    } catch (BrokenBarrierException e) {
+      throw new IOException("a shard failed while exchanging batches", e);
+    }
+  }
+
+  @Override
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public long getBatches() {
+    return batches.get();
+  }
+
+  /**
+   * Breaks the barrier, so shards waiting for a failed shard do not wait forever.
+   */
+  @Override
+  public void close() {
+    barrier.reset();
+  }
+}
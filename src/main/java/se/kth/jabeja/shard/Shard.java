@@ -0,0 +1,527 @@
+package se.kth.jabeja.shard;
+
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.rand.Floyd;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * One shard of a {@link ShardedEngine}: owns the colors of the vertices [lo, hi) and only
+ * learns about other vertices through messages. It keeps the colors of its ghosts (remote
+ * neighbours of its vertices), kept up to date by a batch of color updates after every round,
+ * and for every owned vertex the number of neighbours of each color. Its memory grows with its
+ * vertices, ghosts and candidates, not with the whole graph: the colors of the owned vertices are
+ * indexed from lo, the ghosts are kept in order of their ids and the replies about the remote
+ * candidates of a round in a map by id.
+ *
+ * A round takes six supersteps:
+ * <ol>
+ * <li>every owned vertex samples its candidates and queries the owners of remote candidates</li>
+ * <li>owners reply with the color and color counts of the queried vertices</li>
+ * <li>every owned vertex picks its best partner and sends a proposal to the partner's owner</li>
+ * <li>the owner of every proposed vertex accepts its best proposal, locking the vertex</li>
+ * <li>the owner of the proposer commits the swap, unless the proposer itself got locked</li>
+ * <li>the partner takes its new color, and every changed color is sent to the shards that hold it as a ghost</li>
+ * </ol>
+ * Colors only change in the last step, so all decisions of a round are taken on the same colors
+ * and a round does not depend on how the vertices are split into shards.
+ */
+class Shard {
+
+  private final int id;
+  private final ShardedEngine engine;
+  private final Adjacency adjacency;
+  private final Adjacency.Cursor cursor;
+  private final int numShards;
+  private final int numColors;
+  private final int lo;
+  private final int hi;
+  /**
+   * colors[v - lo] is the color of the owned vertex v
+   */
+  private final int[] colors;
+  private final int[] initColors;
+  /**
+   * the remote neighbours of the owned vertices in increasing order, and their colors
+   */
+  private final int[] ghosts;
+  private final int[] ghostColors;
+  /**
+   * rows[(v - lo) * numColors + c] is the number of neighbours of the owned vertex v with color c
+   */
+  private final int[] rows;
+  /**
+   * the shards holding owned vertex v as a ghost are haloShards[haloOffsets[v - lo] .. haloOffsets[v - lo + 1])
+   */
+  private final int[] haloOffsets;
+  private final int[] haloShards;
+
+  private final SplitMix64 random = new SplitMix64(0);
+  private final DoubleSupplier uniform = random::nextDouble;
+  private final IntUnaryOperator nextInt = random::nextInt;
+  private final int maxCandidates;
+  private final int[] candidates;
+  private final int[] numLocalCandidates;
+  private final int[] numCandidates;
+  /**
+   * the remote candidates queried in this round, and where their replies start in replies once they came
+   */
+  private final IntMap queried = new IntMap();
+  private final IntList replies = new IntList();
+  private final int[] proposed;
+  private final int[] bestProposer;
+  private final int[] bestBenefit;
+  private final int[] locked;
+  private final IntList changes = new IntList();
+
+  /**
+   * links from owned vertices to vertices of another color, i.e. cut edges counted from both ends
+   */
+  private long cutLinks;
+  private int migrations;
+  private long messages;
+
+  /**
+   * @param coloring initial colors, of which the shard copies those of its own vertices
+   */
+  Shard(int id, ShardedEngine engine, Coloring coloring) {
+    this.id = id;
+    this.engine = engine;
+    this.adjacency = engine.getAdjacency();
+    this.cursor = adjacency.cursor();
+    this.numShards = engine.getNumShards();
+    this.numColors = engine.getNumColors();
+    int n = adjacency.size();
+    this.lo = Math.min(n, id * engine.getShardSize());
+    this.hi = Math.min(n, lo + engine.getShardSize());
+    int owned = hi - lo;
+    this.colors = new int[owned];
+    this.initColors = new int[owned];
+    for (int v = lo; v < hi; v++) {
+      colors[v - lo] = coloring.getColor(v);
+      initColors[v - lo] = coloring.getInitColor(v);
+    }
+    this.rows = new int[owned * numColors];
+
+    this.haloOffsets = new int[owned + 1];
+    IntList halo = new IntList();
+    IntList remote = new IntList();
+    int[] seen = new int[numShards];
+    for (int v = lo; v < hi; v++) {
+      for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+        int u = cursor.next();
+        int s = engine.owner(u);
+        if (s != id) {
+          remote.add(u);
+          if (seen[s] != v + 1) {
+            seen[s] = v + 1;
+            halo.add(s);
+          }
+        }
+      }
+      haloOffsets[v - lo + 1] = halo.size();
+    }
+    this.haloShards = halo.toArray();
+    this.ghosts = Arrays.stream(remote.toArray()).sorted().distinct().toArray();
+    this.ghostColors = new int[ghosts.length];
+
+    this.maxCandidates = engine.getNeighbourSampleSize() + engine.getUniformSampleSize();
+    this.candidates = new int[owned * maxCandidates];
+    this.numLocalCandidates = new int[owned];
+    this.numCandidates = new int[owned];
+    this.proposed = new int[owned];
+    this.bestProposer = new int[owned];
+    this.bestBenefit = new int[owned];
+    this.locked = new int[owned];
+  }
+
+  private boolean owns(int v) {
+    return v >= lo && v < hi;
+  }
+
+  /**
+   * @return index of the ghost v in ghosts
+   */
+  private int ghost(int v) {
+    return Arrays.binarySearch(ghosts, v);
+  }
+
+  /**
+   * @return color of an owned vertex or a ghost
+   */
+  private int colorOf(int v) {
+    return owns(v) ? colors[v - lo] : ghostColors[ghost(v)];
+  }
+
+  private int[][] newBatches() {
+    return new int[numShards][];
+  }
+
+  private IntList[] newLists() {
+    IntList[] lists = new IntList[numShards];
+    for (int s = 0; s < numShards; s++) {
+      lists[s] = new IntList();
+    }
+    return lists;
+  }
+
+  /**
+   * Adds a record of one value to the batch for shard to, counting it as a message if it leaves
+   * this shard. Records have fixed arities rather than varargs, which would allocate an array per record.
+   */
+  private void send(IntList[] out, int to, int a) {
+    out[to].add(a);
+    count(to);
+  }
+
+  private void send(IntList[] out, int to, int a, int b) {
+    out[to].add(a);
+    out[to].add(b);
+    count(to);
+  }
+
+  private void send(IntList[] out, int to, int a, int b, int c) {
+    out[to].add(a);
+    out[to].add(b);
+    out[to].add(c);
+    count(to);
+  }
+
+  private void count(int to) {
+    if (to != id) {
+      messages++;
+    }
+  }
+
+  private int[][] exchange(IntList[] out) throws IOException {
+    int[][] batches = newBatches();
+    for (int s = 0; s < numShards; s++) {
+      batches[s] = out[s].toArray();
+    }
+    return engine.getTransport().exchange(id, batches);
+  }
+
+  /**
+   * Sends the colors of all owned vertices to the shards holding them as ghosts and builds the
+   * color counts and counters from the complete picture.
+   */
+  void init() throws IOException {
+    IntList[] out = newLists();
+    for (int v = lo; v < hi; v++) {
+      for (int h = haloOffsets[v - lo]; h < haloOffsets[v - lo + 1]; h++) {
+        send(out, haloShards[h], v, colors[v - lo]);
+      }
+    }
+    int[][] in = exchange(out);
+    for (int from = 0; from < numShards; from++) {
+      if (from != id) {
+        for (int r = 0; r < in[from].length; r += 2) {
+          ghostColors[ghost(in[from][r])] = in[from][r + 1];
+        }
+      }
+    }
+
+    for (int v = lo; v < hi; v++) {
+      int row = (v - lo) * numColors;
+      int degree = cursor.start(v);
+      for (int i = 0; i < degree; i++) {
+        rows[row + colorOf(cursor.next())]++;
+      }
+      cutLinks += degree - rows[row + colors[v - lo]];
+      if (colors[v - lo] != initColors[v - lo]) {
+        migrations++;
+      }
+    }
+  }
+
+  /**
+   * @return number of swaps committed by the proposers of this shard
+   */
+  int round(int round) throws IOException {
+    int stamp = round + 1;
+    long seed = SplitMix64.mix(engine.getSeed() + SplitMix64.mix(round));
+    NodeSelectionPolicy policy = engine.getNodeSelectionPolicy();
+    boolean local = policy == NodeSelectionPolicy.HYBRID || policy == NodeSelectionPolicy.LOCAL;
+    boolean uniformSample = policy == NodeSelectionPolicy.HYBRID || policy == NodeSelectionPolicy.RANDOM;
+
+    // 1. sample the candidates, query the owners of the remote ones
+    queried.clear();
+    IntList[] out = newLists();
+    for (int p = lo; p < hi; p++) {
+      random.setSeed(SplitMix64.mix(seed + p));
+      int base = (p - lo) * maxCandidates;
+      int count = 0;
+      if (local) {
+        count = sampleNeighbours(p, base);
+      }
+      numLocalCandidates[p - lo] = count;
+      if (uniformSample) {
+        count = sampleUniform(p, base, count);
+      }
+      numCandidates[p - lo] = count;
+      for (int i = 0; i < count; i++) {
+        int q = candidates[base + i];
+        if (!owns(q) && queried.get(q) == -1) {
+          queried.put(q, 0);
+          send(out, engine.owner(q), q);
+        }
+      }
+    }
+    int[][] in = exchange(out);
+
+    // 2. reply with the color and color counts of the queried vertices
+    out = newLists();
+    for (int from = 0; from < numShards; from++) {
+      for (int q : in[from]) {
+        IntList batch = out[from];
+        batch.add(q);
+        batch.add(colors[q - lo]);
+        int row = (q - lo) * numColors;
+        for (int c = 0; c < numColors; c++) {
+          batch.add(rows[row + c]);
+        }
+        if (from != id) {
+          messages++;
+        }
+      }
+    }
+    in = exchange(out);
+    replies.clear();
+    for (int[] batch : in) {
+      for (int r = 0; r < batch.length; r += numColors + 2) {
+        queried.put(batch[r], replies.size());
+        for (int i = 1; i < numColors + 2; i++) {
+          replies.add(batch[r + i]);
+        }
+      }
+    }
+
+    // 3. pick the best partner and propose to its owner
+    out = newLists();
+    for (int p = lo; p < hi; p++) {
+      // acceptance draws from a stream of its own, sampling took the first one
+      random.setSeed(SplitMix64.mix(seed + p) ^ 0x5deece66dL);
+      int base = (p - lo) * maxCandidates;
+      int partner = -1;
+      int benefit = 0;
+      if (local) {
+        long best = findPartner(p, base, base + numLocalCandidates[p - lo]);
+        partner = (int) best;
+        benefit = (int) (best >> 32);
+      }
+      if (uniformSample) {
+        long best = findPartner(p, base + numLocalCandidates[p - lo], base + numCandidates[p - lo]);
+        partner = (int) best;
+        benefit = (int) (best >> 32);
+      }
+      if (partner != -1) {
+        send(out, engine.owner(partner), p, partner, benefit);
+      }
+    }
+    in = exchange(out);
+
+    // 4. accept the best proposal of every proposed vertex: highest benefit, then lowest proposer
+    for (int[] batch : in) {
+      for (int r = 0; r < batch.length; r += 3) {
+        int p = batch[r];
+        int q = batch[r + 1] - lo;
+        int benefit = batch[r + 2];
+        if (proposed[q] != stamp || benefit > bestBenefit[q] || (benefit == bestBenefit[q] && p < bestProposer[q])) {
+          proposed[q] = stamp;
+          bestProposer[q] = p;
+          bestBenefit[q] = benefit;
+        }
+      }
+    }
+    out = newLists();
+    for (int q = lo; q < hi; q++) {
+      if (proposed[q - lo] == stamp) {
+        locked[q - lo] = stamp;
+        send(out, engine.owner(bestProposer[q - lo]), bestProposer[q - lo], q, colors[q - lo]);
+      }
+    }
+    in = exchange(out);
+
+    // 5. commit, unless the proposer has been locked as somebody's partner
+    changes.clear();
+    int swaps = 0;
+    out = newLists();
+    for (int[] batch : in) {
+      for (int r = 0; r < batch.length; r += 3) {
+        int p = batch[r];
+        int q = batch[r + 1];
+        if (locked[p - lo] == stamp) {
+          send(out, engine.owner(q), q, -1);
+        } else {
+          send(out, engine.owner(q), q, colors[p - lo]);
+          changes.add(p);
+          changes.add(batch[r + 2]);
+          swaps++;
+        }
+      }
+    }
+    in = exchange(out);
+
+    // 6. apply the swaps and send the changed colors to the shards holding them as ghosts
+    for (int[] batch : in) {
+      for (int r = 0; r < batch.length; r += 2) {
+        if (batch[r + 1] != -1) {
+          changes.add(batch[r]);
+          changes.add(batch[r + 1]);
+        }
+      }
+    }
+    out = newLists();
+    for (int i = 0; i < changes.size(); i += 2) {
+      int v = changes.get(i);
+      recolor(v, changes.get(i + 1));
+      for (int h = haloOffsets[v - lo]; h < haloOffsets[v - lo + 1]; h++) {
+        send(out, haloShards[h], v, colors[v - lo]);
+      }
+    }
+    in = exchange(out);
+    for (int from = 0; from < numShards; from++) {
+      if (from != id) {
+        for (int r = 0; r < in[from].length; r += 2) {
+          recolor(in[from][r], in[from][r + 1]);
+        }
+      }
+    }
+    return swaps;
+  }
+
+  /**
+   * Same sampling as Jabeja#getNeighbors
+   */
+  private int sampleNeighbours(int p, int base) {
+    int count = engine.getNeighbourSampleSize();
+    int degree = adjacency.degree(p);
+    if (degree <= count) {
+      cursor.start(p);
+      for (int i = 0; i < degree; i++) {
+        candidates[base + i] = cursor.next();
+      }
+      return degree;
+    }
+    Floyd.sample(nextInt, degree, count, candidates, base);
+    adjacency.neighboursAt(p, candidates, base, base + count);
+    return count;
+  }
+
+  /**
+   * Same sampling as Jabeja#getSample, appended after the first candidates
+   */
+  private int sampleUniform(int p, int base, int first) {
+    int n = adjacency.size();
+    int count = Math.min(engine.getUniformSampleSize(), n - 1);
+    Floyd.sample(nextInt, n - 1, count, candidates, base + first);
+    for (int i = base + first; i < base + first + count; i++) {
+      if (candidates[i] >= p) {
+        candidates[i]++;
+      }
+    }
+    return first + count;
+  }
+
+  /**
+   * @param reply where the reply about a remote candidate q starts, ignored if q is owned
+   */
+  private int candidateColor(int q, int reply) {
+    return owns(q) ? colors[q - lo] : replies.get(reply);
+  }
+
+  private int countColor(int q, int reply, int color) {
+    return owns(q) ? rows[(q - lo) * numColors + color] : replies.get(reply + 1 + color);
+  }
+
+  /**
+   * Same decision as Jabeja#findPartner over candidates[from, to)
+   *
+   * @return the benefit in the high and the partner (or -1) in the low 32 bits
+   */
+  private long findPartner(int p, int from, int to) {
+    int colorp = colors[p - lo];
+    int nodepDegree = countColor(p, 0, colorp);
+    int bestPartner = -1;
+    int highestBenefit = 0;
+    for (int i = from; i < to; i++) {
+      int q = candidates[i];
+      int reply = owns(q) ? 0 : queried.get(q);
+      int colorq = candidateColor(q, reply);
+      int previousBenefit = nodepDegree + countColor(q, reply, colorq);
+      int potentialBenefit = countColor(p, 0, colorq) + countColor(q, reply, colorp);
+      if (engine.getAcceptance().accept(previousBenefit, potentialBenefit, uniform)
+              && potentialBenefit > highestBenefit) {
+        bestPartner = q;
+        highestBenefit = potentialBenefit;
+      }
+    }
+    return ((long) highestBenefit << 32) | (bestPartner & 0xffffffffL);
+  }
+
+  /**
+   * Recolors an owned vertex or a ghost, updating the color counts of the owned neighbours and the counters
+   */
+  private void recolor(int v, int color) {
+    int old = colorOf(v);
+    if (old == color) {
+      return;
+    }
+    if (owns(v)) {
+      colors[v - lo] = color;
+      int row = (v - lo) * numColors;
+      cutLinks += rows[row + old] - rows[row + color];
+      if (old == initColors[v - lo]) {
+        migrations++;
+      } else if (color == initColors[v - lo]) {
+        migrations--;
+      }
+    } else {
+      ghostColors[ghost(v)] = color;
+    }
+    for (int i = 0, degree = cursor.start(v); i < degree; i++) {
+      int u = cursor.next();
+      if (owns(u)) {
+        int row = (u - lo) * numColors;
+        rows[row + old]--;
+        rows[row + color]++;
+        // the link from u to v
+        if (colors[u - lo] == old) {
+          cutLinks++;
+        } else if (colors[u - lo] == color) {
+          cutLinks--;
+        }
+      }
+    }
+  }
+
+  int getColor(int v) {
+    return colors[v - lo];
+  }
+
+  int getLo() {
+    return lo;
+  }
+
+  int getHi() {
+    return hi;
+  }
+
+  long getCutLinks() {
+    return cutLinks;
+  }
+
+  int getMigrations() {
+    return migrations;
+  }
+
+  long getMessages() {
+    return messages;
+  }
+}
@@ -0,0 +1,225 @@
+package se.kth.jabeja.shard;
+
+import org.apache.log4j.Logger;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.NodeSelectionPolicy;
+import se.kth.jabeja.config.TransportType;
+import se.kth.jabeja.graph.Adjacency;
+import se.kth.jabeja.graph.Coloring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decentralised execution of JaBeJa: the vertices are split into contiguous ranges owned by
+ * {@link Shard}s, each running on a thread of its own and talking to the others only through a
+ * {@link Transport}. The topology is replicated read-only, as every node of a deployment would
+ * hold the neighbour lists of its vertices. The engine only drives the rounds and sums up what
+ * the shards report: counters, swaps and the messages and bytes they exchanged.
+ */
+public class ShardedEngine implements Closeable {
+  final static Logger logger = Logger.getLogger(ShardedEngine.class);
+
+  /**
+   * Simulated annealing acceptance of a swap, see Jabeja#acceptance
+   */
+  public interface Acceptance {
+    boolean accept(double oldBenefit, double newBenefit, DoubleSupplier uniform);
+  }
+
+  private final Adjacency adjacency;
+  private final int numShards;
+  private final int shardSize;
+  private final int numColors;
+  private final long seed;
+  private final NodeSelectionPolicy nodeSelectionPolicy;
+  private final int neighbourSampleSize;
+  private final int uniformSampleSize;
+  private final Acceptance acceptance;
+  private final Transport transport;
+  private final Shard[] shards;
+  private final ExecutorService executor;
+
+  /**
+   * @param coloring   initial colors, read once; see {@link #copyColorsTo(Coloring)} for the result
+   * @param seed       seed of the per (round, vertex) generators of the run
+   * @param acceptance acceptance of the swaps, called concurrently by all shards
+   */
+  public ShardedEngine(Coloring coloring, Config config, long seed, Acceptance acceptance) throws IOException {
+    this.adjacency = coloring.getGraph().getAdjacency();
+    int n = adjacency.size();
+    this.numShards = config.getShards();
+    this.shardSize = Math.max(1, (n + numShards - 1) / numShards);
+    this.numColors = coloring.getNumColors();
+    this.seed = seed;
+    this.nodeSelectionPolicy = config.getNodeSelectionPolicy();
+    this.neighbourSampleSize = config.getRandomNeighborSampleSize();
+    this.uniformSampleSize = config.getUniformRandomSampleSize();
+    this.acceptance = acceptance;
+    this.transport = config.getTransport() == TransportType.SOCKET
+            ? new SocketTransport(numShards) : new LocalTransport(numShards);
+    this.executor = Executors.newFixedThreadPool(numShards);
+
+    this.shards = new Shard[numShards];
+    for (int s = 0; s < numShards; s++) {
+      shards[s] = new Shard(s, this, coloring);
+    }
+
+    onAllShards(shard -> {
+      shard.init();
+      return 0;
+    });
+    logger.info(String.format("%d shards of %d vertices over %s transport, %d bytes for the initial ghost colors",
+            numShards, shardSize, config.getTransport(), transport.getBytes()));
+  }
+
+  private interface ShardTask {
+    int run(Shard shard) throws IOException;
+  }
+
+  /**
+   * Runs the task on all shards concurrently, as they wait for each other in every exchange.
+   * If a shard fails, the transport is closed so the others do not wait for it forever.
+   *
+   * @return sum of the results
+   */
+  private int onAllShards(ShardTask task) throws IOException {
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (Shard shard : shards) {
+      Callable<Integer> call = () -> task.run(shard);
+      futures.add(executor.submit(call));
+    }
+    int sum = 0;
+    try {
+      for (Future<Integer> future : futures) {
+        sum += future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      transport.close();
+      throw new IOException("interrupted while waiting for the shards", e);
+    } catch (ExecutionException e) {
+      transport.close();
+      throw new IOException("shard failed", e.getCause());
+    }
+    return sum;
+  }
+
+  /**
+   * Runs one round on all shards.
+   *
+   * @return number of swaps
+   */
+  public int round(int round) {
+    try {
+      return onAllShards(shard -> shard.round(round));
+    } catch (IOException e) {
+      throw new UncheckedIOException("round " + round + " failed", e);
+    }
+  }
+
+  public int getEdgeCut() {
+    long cutLinks = 0;
+    for (Shard shard : shards) {
+      cutLinks += shard.getCutLinks();
+    }
+    return (int) (cutLinks / 2);
+  }
+
+  public int getMigrations() {
+    int migrations = 0;
+    for (Shard shard : shards) {
+      migrations += shard.getMigrations();
+    }
+    return migrations;
+  }
+
+  /**
+   * @return records sent between different shards so far
+   */
+  public long getMessages() {
+    long messages = 0;
+    for (Shard shard : shards) {
+      messages += shard.getMessages();
+    }
+    return messages;
+  }
+
+  public long getBytes() {
+    return transport.getBytes();
+  }
+
+  public long getBatches() {
+    return transport.getBatches();
+  }
+
+  /**
+   * Writes the colors owned by every shard to the coloring.
+   */
+  public void copyColorsTo(Coloring coloring) {
+    for (Shard shard : shards) {
+      for (int v = shard.getLo(); v < shard.getHi(); v++) {
+        coloring.setColor(v, shard.getColor(v));
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    transport.close();
+  }
+
+  int owner(int v) {
+    return v / shardSize;
+  }
+
+  Adjacency getAdjacency() {
+    return adjacency;
+  }
+
+  Transport getTransport() {
+    return transport;
+  }
+
+  int getNumShards() {
+    return numShards;
+  }
+
+  int getShardSize() {
+    return shardSize;
+  }
+
+  int getNumColors() {
+    return numColors;
+  }
+
+  long getSeed() {
+    return seed;
+  }
+
+  NodeSelectionPolicy getNodeSelectionPolicy() {
+    return nodeSelectionPolicy;
+  }
+
+  int getNeighbourSampleSize() {
+    return neighbourSampleSize;
+  }
+
+  int getUniformSampleSize() {
+    return uniformSampleSize;
+  }
+
+  Acceptance getAcceptance() {
+    return acceptance;
+  }
+}
@@ -0,0 +1,159 @@
+package se.kth.jabeja.shard;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport over TCP connections on the loopback interface, one between every two shards, as a
+ * local stand-in for shards on separate machines. Every shard writes its batches on a thread of
+ * its own while it reads the batches of its peers, so two shards sending large batches to each
+ * other can not block on full socket buffers.
+ */
+public class SocketTransport implements Transport {
+  final static Logger logger = Logger.getLogger(SocketTransport.class);
+
+  private final int numShards;
+  private final Socket[][] sockets;
+  private final DataOutputStream[][] outputs;
+  private final DataInputStream[][] inputs;
+  private final ExecutorService[] writers;
+  private final AtomicLong bytes = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  public SocketTransport(int numShards) throws IOException {
+    this.numShards = numShards;
+    this.sockets = new Socket[numShards][numShards];
+    this.outputs = new DataOutputStream[numShards][numShards];
+    this.inputs = new DataInputStream[numShards][numShards];
+    this.writers = new ExecutorService[numShards];
+
+    InetAddress loopback = InetAddress.getLoopbackAddress();
+    for (int to = 0; to < numShards; to++) {
+      try (ServerSocket server = new ServerSocket(0, numShards, loopback)) {
+        for (int from = 0; from < to; from++) {
+          Socket client = new Socket(loopback, server.getLocalPort());
+          Socket accepted = server.accept();
+          open(from, to, client);
+          open(to, from, accepted);
+        }
+      }
+    }
+    for (int shard = 0; shard < numShards; shard++) {
+      writers[shard] = Executors.newSingleThreadExecutor();
+    }
+    logger.info("Connected " + numShards + " shards over " + numShards * (numShards - 1) / 2
+            + " loopback connections");
+  }
+
+  private void open(int shard, int peer, Socket socket) throws IOException {
+    socket.setTcpNoDelay(true);
+    sockets[shard][peer] = socket;
+    outputs[shard][peer] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    inputs[shard][peer] = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+  }
+
+  @Override
+  public int[][] exchange(int shard, int[][] outgoing) throws IOException {
+    Future<?> written = writers[shard].submit(() -> {
+      try {
+        for (int to = 0; to < numShards; to++) {
+          if (to != shard) {
+            write(outputs[shard][to], outgoing[to]);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    int[][] incoming = new int[numShards][];
+    incoming[shard] = outgoing[shard];
+    for (int from = 0; from < numShards; from++) {
+      if (from != shard) {
+        incoming[from] = read(inputs[shard][from]);
+      }
+    }
+
+    try {
+      written.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while sending batches", e);
+    } catch (ExecutionException e) {
+      throw new IOException("failed to send batches", e.getCause());
+    }
+    return incoming;
+  }
+
+  private void write(DataOutputStream out, int[] batch) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * batch.length).order(ByteOrder.BIG_ENDIAN);
+    buffer.asIntBuffer().put(batch);
+    out.writeInt(batch.length);
+    out.write(buffer.array());
+    out.flush();
+    bytes.addAndGet(Integer.BYTES * (1L + batch.length));
+    batches.incrementAndGet();
+  }
+
+  private int[] read(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    byte[] bytes = new byte[Integer.BYTES * length];
+    in.readFully(bytes);
+    int[] batch = new int[length];
+    ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(batch);
+    return batch;
+  }
+
+  @Override
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public long getBatches() {
+    return batches.get();
+  }
+
+  /**
+   * Closes all connections, which also fails shards blocked on a read.
+   */
+  @Override
+  public void close() throws IOException {
+    for (ExecutorService writer : writers) {
+      if (writer != null) {
+        writer.shutdownNow();
+      }
+    }
+    IOException failure = null;
+    for (Socket[] row : sockets) {
+      for (Socket socket : row) {
+        if (socket != null) {
+          try {
+            socket.close();
+          } catch (IOException e) {
+            failure = e;
+          }
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package se.kth.jabeja.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Moves the batches of messages between the shards of a {@link ShardedEngine}. A batch is an
+ * array of int records; its layout is known to the sending and receiving step of the protocol.
+ * On the wire a batch is its length followed by its ints, both counted in {@link #getBytes()}.
+ */
+public interface Transport extends Closeable {
+
+  /**
+   * Sends one batch to every shard and receives one batch from every shard. Blocks until the
+   * batches of all shards for this shard have arrived, so it is also the barrier between two
+   * supersteps. The batch a shard sends to itself is handed back without being transported.
+   *
+   * @param shard    the calling shard
+   * @param outgoing batch for every shard, outgoing[shard] included
+   * @return the batch from every shard
+   */
+  int[][] exchange(int shard, int[][] outgoing) throws IOException;
+
+  /**
+   * @return bytes sent between different shards so far
+   */
+  long getBytes();
+
+  /**
+   * @return batches sent between different shards so far
+   */
+  long getBatches();
+}
@@ -0,0 +1,108 @@
+package se.kth.jabeja;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The round loop of a sequential run does not allocate once it has warmed up: the heap allocated
+ * by the thread of the run is read after the warm-up rounds and again after the measured rounds,
+ * from the round listener, which does not allocate itself. The log line of every round is
+ * switched off, as logging allocates.
+ */
+class AllocationTest {
+
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int MEASURED_ROUNDS = 100;
+
+  private static final Logger jabejaLogger = Logger.getLogger(Jabeja.class);
+  private static Level level;
+
+  @BeforeAll
+  static void quiet() {
+    level = jabejaLogger.getLevel();
+    jabejaLogger.setLevel(Level.WARN);
+  }
+
+  @AfterAll
+  static void restore() {
+    jabejaLogger.setLevel(level);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"3elt", "add20"})
+  void sequential(String graph) throws IOException {
+    assertEquals(0, allocatedBytes(graph));
+  }
+
+  @Test
+  void shuffledVisitOrder() throws IOException {
+    assertEquals(0, allocatedBytes("3elt", "-visitOrder", "SHUFFLED"));
+  }
+
+  @Test
+  void exponentialAnnealingAndMigrationPenalty() throws IOException {
+    assertEquals(0, allocatedBytes("3elt", "-annealingType", "EXPONENTIAL", "-alpha", "0.99",
+            "-migrationPenalty", "0.5"));
+  }
+
+  @Test
+  void activeSetAndGainBuckets() throws IOException {
+    assertEquals(0, allocatedBytes("3elt", "-activeSet", "-fullSweepEvery", "10", "-gainBuckets"));
+  }
+
+  @Test
+  void bsp() throws IOException {
+    assertEquals(0, allocatedBytes("3elt", "-mode", "BSP"));
+  }
+
+  @Test
+  void compressedAdjacency() throws IOException {
+    assertEquals(0, allocatedBytes("add20", "-adjacency", "COMPRESSED"));
+  }
+
+  /**
+   * @return bytes allocated by the measured rounds
+   */
+  private static long allocatedBytes(String graph, String... args) throws IOException {
+    String[] all = Arrays.copyOf(new String[]{"-graph", "graphs/" + graph + ".graph",
+            "-rounds", String.valueOf(WARMUP_ROUNDS + MEASURED_ROUNDS)}, 4 + args.length);
+    System.arraycopy(args, 0, all, 4, args.length);
+    Config config = new CLI().parseArgs(all);
+    GraphReader reader = new GraphReader();
+    Graph read = reader.readGraph(config.getGraphFilePath(), config.getGraphFormat(), config.getVertexOrdering(),
+            config.getAdjacencyLayout());
+    SplitMix64 random = new SplitMix64(config.getSeed());
+    Coloring coloring = reader.colorGraph(read, config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+            random);
+    Jabeja jabeja = new Jabeja(coloring, config, 0, random);
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long[] allocated = new long[2];
+    jabeja.setRoundListener(round -> {
+      if (round == WARMUP_ROUNDS - 1) {
+        allocated[0] = threads.getCurrentThreadAllocatedBytes();
+      } else if (round == WARMUP_ROUNDS + MEASURED_ROUNDS - 1) {
+        allocated[1] = threads.getCurrentThreadAllocatedBytes();
+      }
+    });
+    jabeja.startJabeja(null);
+    return allocated[1] - allocated[0];
+  }
+}
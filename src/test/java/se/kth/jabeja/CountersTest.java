@@ -0,0 +1,291 @@
+package se.kth.jabeja;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import se.kth.jabeja.config.AdjacencyLayout;
+import se.kth.jabeja.config.Config;
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.config.VertexOrdering;
+import se.kth.jabeja.graph.Coarsening;
+import se.kth.jabeja.graph.Coloring;
+import se.kth.jabeja.graph.DynamicGraph;
+import se.kth.jabeja.graph.Graph;
+import se.kth.jabeja.graph.GraphDelta;
+import se.kth.jabeja.io.CLI;
+import se.kth.jabeja.io.GraphReader;
+import se.kth.jabeja.rand.SplitMix64;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The edge cut and migrations are kept up to date swap by swap; checks them against a recount
+ * after every round of every engine, and after every change and refinement of a dynamic graph,
+ * whose refinements also keep the sizes of the colors over the vertices still in the graph.
+ */
+class CountersTest {
+
+  private static final int ROUNDS = 30;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"3elt", "add20"})
+  void sequential(String graph) throws IOException {
+    run(graph, AdjacencyLayout.CSR);
+  }
+
+  @Test
+  void sequentialCompressed() throws IOException {
+    run("add20", AdjacencyLayout.COMPRESSED);
+  }
+
+  @Test
+  void activeSetAndGainBuckets() throws IOException {
+    run("3elt", AdjacencyLayout.CSR, "-activeSet", "-fullSweepEvery", "10", "-gainBuckets",
+            "-migrationPenalty", "0.5");
+  }
+
+  @Test
+  void exponentialAnnealing() throws IOException {
+    run("add20", AdjacencyLayout.CSR, "-annealingType", "EXPONENTIAL", "-alpha", "0.9");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1", "4"})
+  void bsp(String threads) throws IOException {
+    run("3elt", AdjacencyLayout.CSR, "-mode", "BSP", "-threads", threads);
+  }
+
+  @Test
+  void threads() throws IOException {
+    run("add20", AdjacencyLayout.CSR, "-threads", "4");
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"1", "4"})
+  void weightedCoarseGraph(String threads) throws IOException {
+    Config config = config("3elt", "-threads", threads);
+    Coloring coloring = coarsen(config);
+    run(coloring, config);
+  }
+
+  @Test
+  void multilevel() throws IOException {
+    // the levels are internal to the run, -verifyCounters makes every one of them recount every round
+    Config config = config("3elt", "-multilevel", "-coarsenTo", "200", "-refineRounds", "5", "-verifyCounters");
+    new Multilevel(color(config, AdjacencyLayout.CSR), config, new SplitMix64(config.getSeed())).run();
+  }
+
+  @Test
+  void sharded() throws IOException {
+    // the counters of the shards are only compared with those of the coloring by -verifyCounters
+    Config config = config("3elt", "-mode", "SHARDED", "-shards", "3", "-verifyCounters");
+    new Jabeja(color(config, AdjacencyLayout.CSR), config, 0).startJabeja(null);
+  }
+
+  @Test
+  void dynamicGraph() throws IOException {
+    Config config = config("3elt", "-deltaRounds", "10", "-migrationPenalty", "0.5");
+    Coloring coloring = color(config, AdjacencyLayout.CSR);
+    new Jabeja(coloring, config, 0).startJabeja(null);
+    refine(coloring, config);
+  }
+
+  @Test
+  void weightedDynamicGraph() throws IOException {
+    Config config = config("3elt", "-deltaRounds", "10", "-verifyCounters");
+    Coloring coloring = coarsen(config);
+    new Jabeja(coloring, config, 0).startJabeja(null);
+    refine(coloring, config);
+  }
+
+  @Test
+  void removeQueuedVertices() throws IOException {
+    // a single round leaves vertices queued in the active set for the next refinement, which must
+    // not swap those of them that were removed in between
+    Config config = config("3elt", "-deltaRounds", "1", "-verifyCounters");
+    Coloring colored = color(config, AdjacencyLayout.CSR);
+    new Jabeja(colored, config, 0).startJabeja(null);
+    DynamicGraph dynamic = new DynamicGraph(colored);
+    Coloring coloring = dynamic.getColoring();
+    Jabeja refiner = new Jabeja(coloring, config, 0);
+    SplitMix64 random = new SplitMix64(1);
+    int n = colored.size();
+    int nextId = 0;
+    for (int v = 0; v < n; v++) {
+      nextId = Math.max(nextId, colored.getGraph().getId(v) + 1);
+    }
+    for (int batch = 0; batch < 3; batch++) {
+      GraphDelta delta = new GraphDelta();
+      for (int i = 0; i < 50; i++) {
+        int id = nextId++;
+        delta.add(GraphDelta.Op.ADD_VERTEX, id, 0, 1);
+        delta.add(GraphDelta.Op.ADD_EDGE, id, colored.getGraph().getId(random.nextInt(n)), 1);
+      }
+      refiner.refine(dynamic.apply(delta), config.getDeltaRounds());
+      assertCounters(coloring, "batch " + batch);
+    }
+    GraphDelta delta = new GraphDelta();
+    for (int v = 0; v < n; v += 3) {
+      delta.add(GraphDelta.Op.REMOVE_VERTEX, colored.getGraph().getId(v), 0, 0);
+    }
+    int[] affected = dynamic.apply(delta);
+    int[] sizes = coloring.colorSizes();
+    refiner.refine(affected, config.getDeltaRounds());
+    assertCounters(coloring, "removal");
+    assertArrayEquals(sizes, coloring.colorSizes(), "removal: color sizes");
+    for (int v = 0; v < n; v += 3) {
+      assertEquals(-1, coloring.getColor(v), "color of removed " + v);
+    }
+  }
+
+  private static Config config(String graph, String... args) throws IOException {
+    String[] all = Arrays.copyOf(new String[]{"-graph", "graphs/" + graph + ".graph", "-rounds", String.valueOf(ROUNDS),
+            "-graphInitColorSelectionPolicy", "ROUND_ROBIN"}, 6 + args.length);
+    System.arraycopy(args, 0, all, 6, args.length);
+    return new CLI().parseArgs(all);
+  }
+
+  private static Coloring color(Config config, AdjacencyLayout layout) {
+    GraphReader reader = new GraphReader();
+    Graph graph = reader.readGraph(config.getGraphFilePath(), GraphFormat.AUTO, VertexOrdering.NONE, layout);
+    return reader.colorGraph(graph, config.getGraphInitialColorPolicy(), config.getNumPartitions(),
+            new SplitMix64(config.getSeed()));
+  }
+
+  /**
+   * @return the graph of the config coarsened twice, with vertex and edge weights, colored round robin
+   */
+  private static Coloring coarsen(Config config) {
+    Graph graph = color(config, AdjacencyLayout.CSR).getGraph();
+    for (int level = 0; level < 2; level++) {
+      int[] order = new int[graph.size()];
+      for (int v = 0; v < order.length; v++) {
+        order[v] = v;
+      }
+      graph = Coarsening.heavyEdgeMatching(graph, order, 4).getCoarse();
+    }
+    int[] colors = new int[graph.size()];
+    for (int v = 0; v < colors.length; v++) {
+      colors[v] = v % config.getNumPartitions();
+    }
+    return new Coloring(graph, colors, config.getNumPartitions());
+  }
+
+  private static void run(String graph, AdjacencyLayout layout, String... args) throws IOException {
+    Config config = config(graph, args);
+    run(color(config, layout), config);
+  }
+
+  private static void run(Coloring coloring, Config config) throws IOException {
+    Jabeja jabeja = new Jabeja(coloring, config, 0);
+    int[] rounds = new int[1];
+    jabeja.setRoundListener(round -> {
+      assertCounters(coloring, "round " + round);
+      rounds[0]++;
+    });
+    jabeja.startJabeja(null);
+    assertEquals(config.getRounds(), rounds[0]);
+  }
+
+  /**
+   * Applies batches of random changes to the colored graph, each followed by a refinement, and
+   * checks the counters after every change and every refinement.
+   */
+  private static void refine(Coloring colored, Config config) {
+    DynamicGraph dynamic = new DynamicGraph(colored);
+    Coloring coloring = dynamic.getColoring();
+    Jabeja refiner = new Jabeja(coloring, config, 0);
+    SplitMix64 random = new SplitMix64(1);
+    Set<Integer> removed = new HashSet<>();
+    int nextId = 0;
+    for (int v = 0; v < colored.size(); v++) {
+      nextId = Math.max(nextId, colored.getGraph().getId(v) + 1);
+    }
+
+    for (int batch = 0; batch < 5; batch++) {
+      Graph graph = dynamic.getGraph();
+      GraphDelta delta = new GraphDelta();
+      Set<Long> edges = new HashSet<>();
+      for (int i = 0; i < 20; i++) {
+        int v = live(graph, removed, random);
+        if (graph.degree(v) > 0) {
+          int u = graph.neighbour(v, random.nextInt(graph.degree(v)));
+          if (edges.add(edge(v, u))) {
+            delta.add(GraphDelta.Op.REMOVE_EDGE, graph.getId(v), graph.getId(u), 0);
+          }
+        }
+      }
+      for (int i = 0; i < 20; i++) {
+        int u = live(graph, removed, random);
+        int v = live(graph, removed, random);
+        if (u != v && !adjacent(graph, u, v) && edges.add(edge(u, v))) {
+          delta.add(GraphDelta.Op.ADD_EDGE, graph.getId(u), graph.getId(v), 1 + random.nextInt(3));
+        }
+      }
+      for (int i = 0; i < 10; i++) {
+        int id = nextId++;
+        delta.add(GraphDelta.Op.ADD_VERTEX, id, 0, 1 + random.nextInt(3));
+        Set<Integer> neighbours = new HashSet<>();
+        for (int j = 0; j < 3; j++) {
+          int u = live(graph, removed, random);
+          if (neighbours.add(u)) {
+            delta.add(GraphDelta.Op.ADD_EDGE, id, graph.getId(u), 1 + random.nextInt(3));
+          }
+        }
+      }
+      for (int i = 0; i < 5; i++) {
+        int v = live(graph, removed, random);
+        removed.add(v);
+        delta.add(GraphDelta.Op.REMOVE_VERTEX, graph.getId(v), 0, 0);
+      }
+
+      int[] affected = dynamic.apply(delta);
+      assertCounters(coloring, "delta " + batch);
+      int[] sizes = coloring.colorSizes();
+      assertEquals(coloring.size() - removed.size(), Arrays.stream(sizes).sum(), "delta " + batch + ": colored vertices");
+      refiner.refine(affected, config.getDeltaRounds());
+      assertCounters(coloring, "refinement " + batch);
+      // removed vertices stay uncolored, so the refinement cannot move them into a color
+      assertArrayEquals(sizes, coloring.colorSizes(), "refinement " + batch + ": color sizes");
+      for (int v : removed) {
+        assertEquals(-1, coloring.getColor(v), "refinement " + batch + ": color of removed " + v);
+      }
+    }
+  }
+
+  /**
+   * @return a random vertex of the graph that was not removed, only from those the graph had before the batch
+   */
+  private static int live(Graph graph, Set<Integer> removed, SplitMix64 random) {
+    while (true) {
+      int v = random.nextInt(graph.size());
+      if (!removed.contains(v)) {
+        return v;
+      }
+    }
+  }
+
+  private static boolean adjacent(Graph graph, int u, int v) {
+    for (int i = 0; i < graph.degree(u); i++) {
+      if (graph.neighbour(u, i) == v) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long edge(int u, int v) {
+    return ((long) Math.min(u, v) << 32) | Math.max(u, v);
+  }
+
+  private static void assertCounters(Coloring coloring, String when) {
+    assertArrayEquals(coloring.recount(), new int[]{coloring.getEdgeCut(), coloring.getMigrations()},
+            when + ": incremental edge cut and migrations differ from the recount");
+  }
+}
@@ -0,0 +1,86 @@
+package se.kth.jabeja.graph;
+
+import org.junit.jupiter.api.Test;
+import se.kth.jabeja.config.AdjacencyLayout;
+import se.kth.jabeja.config.GraphFormat;
+import se.kth.jabeja.config.VertexOrdering;
+import se.kth.jabeja.io.GraphReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The cursors and {@link Adjacency#neighboursAt(int, int[], int, int)} of every layout return the
+ * same neighbours and weights as {@link Adjacency#neighbour(int, int)} and {@link Adjacency#weight(int, int)}.
+ */
+class AdjacencyTest {
+
+  @Test
+  void csr() {
+    check(read(AdjacencyLayout.CSR).getAdjacency());
+  }
+
+  @Test
+  void compressed() {
+    check(read(AdjacencyLayout.COMPRESSED).getAdjacency());
+  }
+
+  @Test
+  void weightedCompressed() {
+    check(CompressedAdjacency.of(coarse().getAdjacency()));
+  }
+
+  @Test
+  void delta() {
+    Graph graph = coarse();
+    DeltaAdjacency delta = new DeltaAdjacency(CompressedAdjacency.of(graph.getAdjacency()));
+    for (int v = 0; v + 1 < graph.size(); v += 7) {
+      if (delta.degree(v) > 0) {
+        delta.removeEdge(v, delta.neighbour(v, 0));
+      }
+      int u = delta.addVertex();
+      delta.addEdge(u, v, 5);
+      delta.addEdge(v + 1, u, 3);
+    }
+    check(delta);
+  }
+
+  private static Graph read(AdjacencyLayout layout) {
+    return new GraphReader().readGraph("graphs/add20.graph", GraphFormat.AUTO, VertexOrdering.NONE, layout);
+  }
+
+  private static Graph coarse() {
+    Graph graph = read(AdjacencyLayout.CSR);
+    int[] order = new int[graph.size()];
+    for (int v = 0; v < order.length; v++) {
+      order[v] = order.length - 1 - v;
+    }
+    return Coarsening.heavyEdgeMatching(graph, order, 3).getCoarse();
+  }
+
+  private static void check(Adjacency adjacency) {
+    Adjacency.Cursor cursor = adjacency.cursor();
+    int[] positions = new int[8];
+    for (int v = 0; v < adjacency.size(); v++) {
+      int degree = cursor.start(v);
+      assertEquals(adjacency.degree(v), degree, "degree of " + v);
+      for (int i = 0; i < degree; i++) {
+        assertEquals(adjacency.neighbour(v, i), cursor.next(), "neighbour " + i + " of " + v);
+        assertEquals(adjacency.weight(v, i), cursor.weight(), "weight " + i + " of " + v);
+      }
+
+      // positions in any order, after an offset
+      int count = Math.min(degree, positions.length - 2);
+      for (int j = 0; j < count; j++) {
+        positions[2 + j] = (degree - 1 - 3 * j % degree + degree) % degree;
+      }
+      int[] expected = new int[count];
+      for (int j = 0; j < count; j++) {
+        expected[j] = adjacency.neighbour(v, positions[2 + j]);
+      }
+      adjacency.neighboursAt(v, positions, 2, 2 + count);
+      for (int j = 0; j < count; j++) {
+        assertEquals(expected[j], positions[2 + j], "neighbour at position " + j + " of " + v);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package se.kth.jabeja.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import se.kth.jabeja.graph.Graph;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The parallel {@link JostleParser} reads every graph exactly like {@link GraphReader#readGraphSequential}:
+ * the same vertex ids, neighbour lists in the same order, edge and vertex weights.
+ */
+class JostleParserTest {
+
+  @TempDir
+  File dir;
+
+  @ParameterizedTest
+  @ValueSource(strings = {"3elt", "add20", "twitter", "vibrobox"})
+  void bundled(String graph) throws IOException {
+    check("graphs/" + graph + ".graph");
+  }
+
+  @Test
+  void commentsAndWeightsInSeveralChunks() throws IOException {
+    // comment lines are not vertices, so the ids of the vertices after them must not count them
+    File file = new File(dir, "commented.graph");
+    int n = 60000;
+    int[] offsets = {1, 2, 3, 4};
+    try (Writer out = new BufferedWriter(new FileWriter(file))) {
+      out.write("% a ring in which every vertex is linked to the next four\n# in either direction\n");
+      out.write(n + " " + n * offsets.length + " 11\n");
+      for (int v = 1; v <= n; v++) {
+        if (v % 1000 == 0) {
+          out.write(v % 2000 == 0 ? "% comment\n" : "# comment\n");
+        }
+        out.write(String.valueOf(v % 5 + 1));
+        for (int offset : offsets) {
+          for (int u : new int[]{(v - 1 + offset) % n + 1, (v - 1 - offset + n) % n + 1}) {
+            out.write(" " + u + " " + ((Math.min(u, v) + Math.max(u, v)) % 7 + 1));
+          }
+        }
+        out.write('\n');
+      }
+    }
+    assertTrue(file.length() > 3 * JostleParser.MIN_CHUNK_SIZE, "the body is split into several chunks");
+    Graph graph = check(file.getPath());
+    assertEquals(n, graph.size());
+    assertEquals(n, graph.getId(n - 1));
+    assertTrue(graph.hasVertexWeights());
+  }
+
+  /**
+   * @return the graph read by the parser, after checking it against the sequential reader and the parser of streams
+   */
+  private static Graph check(String path) throws IOException {
+    Graph expected = new GraphReader().readGraphSequential(path);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Graph parsed;
+    try {
+      parsed = new JostleParser(pool).parse(path);
+    } finally {
+      pool.shutdown();
+    }
+    assertSame(expected, parsed, path);
+    try (InputStream in = new FileInputStream(path)) {
+      assertSame(expected, new JostleParser().parse(in, path), path + " as a stream");
+    }
+    return parsed;
+  }
+
+  private static void assertSame(Graph expected, Graph actual, String name) {
+    assertEquals(expected.size(), actual.size(), name + ": vertices");
+    assertEquals(expected.numTargets(), actual.numTargets(), name + ": targets");
+    assertEquals(expected.hasVertexWeights(), actual.hasVertexWeights(), name + ": vertex weights");
+    long offset = 0;
+    for (int v = 0; v < expected.size(); v++) {
+      assertEquals(expected.getId(v), actual.getId(v), name + ": id of " + v);
+      assertEquals(expected.vertexWeight(v), actual.vertexWeight(v), name + ": weight of " + v);
+      assertEquals(expected.degree(v), actual.degree(v), name + ": degree of " + v + " at offset " + offset);
+      for (int i = 0; i < expected.degree(v); i++) {
+        assertEquals(expected.neighbour(v, i), actual.neighbour(v, i), name + ": target " + (offset + i));
+        assertEquals(expected.edgeWeight(v, i), actual.edgeWeight(v, i), name + ": edge weight " + (offset + i));
+      }
+      offset += expected.degree(v);
+    }
+  }
+}